@@ -0,0 +1,56 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ResponseUtility;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Measures serialization of the transaction response body with an {@code ObjectMapper} configured
+ * the way the application's message converter configures it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseTemplateSerializationBenchmark {
+  private ObjectWriter objectWriter;
+  private ResponseTemplate<TransactionResponse> response;
+
+  @Setup
+  public void setUp() {
+    objectWriter =
+        Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build()
+            .writer();
+    response =
+        ResponseUtility.generateResponse(
+            new TransactionResponse(UUID.randomUUID(), TransactionStatus.COMPLETED, Instant.now()),
+            200,
+            "");
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return objectWriter.writeValueAsBytes(response);
+  }
+}
@@ -0,0 +1,104 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.AMOUNT;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.CUSTOMER_ID;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.DESCRIPTION;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.ID;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.REFERENCE_ID;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.TRANSACTION_DATE;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.TRANSACTION_STATUS;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.TRANSACTION_TYPE;
+import static com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AbstractBaseRepository.UID;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+/**
+ * Compares the per-insert work of {@link TransactionRepository#claimTransaction}, which now only
+ * builds {@link AbstractBaseRepository#tnxSqlParameters} for a constant statement, against the
+ * previous behaviour of building a null-omitting parameter map and rendering the statement from
+ * its keys on every call. The {@code gc} profiler reports the allocations per insert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionSqlParametersBenchmark {
+  private final AbstractBaseRepository repository = new AbstractBaseRepository();
+
+  private Transaction transaction;
+
+  @Setup
+  public void setUp() {
+    transaction =
+        new Transaction(
+            UUID.randomUUID(),
+            1L,
+            TransactionType.PURCHASE,
+            new BigDecimal("25.50"),
+            TransactionType.PURCHASE.toString(),
+            Instant.now(),
+            TransactionStatus.PENDING,
+            null);
+  }
+
+  @Benchmark
+  public SqlParameterSource precompiledInsert() {
+    return repository.tnxSqlParameters(transaction);
+  }
+
+  @Benchmark
+  public String dynamicInsert() {
+    Map<String, Object> params = dynamicSqlParameters(transaction);
+    String sql =
+        """
+            INSERT INTO transactions (%s) VALUES (%s) RETURNING uid, status, transaction_date
+            """
+            .formatted(
+                String.join(", ", params.keySet()),
+                params.keySet().stream().map(":"::concat).collect(Collectors.joining(", ")));
+    return sql;
+  }
+
+  private static Map<String, Object> dynamicSqlParameters(Transaction transaction) {
+    Map<String, Object> params = new HashMap<>();
+    putIfNotNull(params, ID, transaction.id());
+    putIfNotNull(params, UID, transaction.uid());
+    putIfNotNull(params, CUSTOMER_ID, transaction.customerId());
+    putIfNotNull(params, REFERENCE_ID, transaction.referenceUid());
+    putIfNotNull(params, TRANSACTION_STATUS, transaction.status().toString());
+    putIfNotNull(params, TRANSACTION_TYPE, transaction.type().toString());
+    putIfNotNull(params, DESCRIPTION, transaction.description());
+    putIfNotNull(params, AMOUNT, transaction.amount());
+    putIfNotNull(params, TRANSACTION_DATE, Timestamp.from(transaction.transactionDate()));
+    return params;
+  }
+
+  private static void putIfNotNull(Map<String, Object> params, String key, Object value) {
+    if (value != null) {
+      params.put(key, value);
+    }
+  }
+}
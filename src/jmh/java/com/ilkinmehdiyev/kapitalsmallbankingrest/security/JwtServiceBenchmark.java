@@ -0,0 +1,101 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.security;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.JwtProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.JwtProperties.RefreshToken;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.Management;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.TokenRevocation;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl.CustomUserDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link JwtService} with its cached key and parser against the previous behaviour of
+ * decoding the secret and building a parser on every call (the {@code *PerCallKey} benchmarks).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+  private static final String SECRET_KEY =
+      "423F4528482B4D6251655468576D597133743677397A24432646294A404E635266556A586E327234753778214125442A472D4B6150645367566B597033733676";
+  private static final Duration TOKEN_VALIDITY = Duration.ofDays(1);
+
+  private JwtService jwtService;
+  private CustomUserDetails userDetails;
+  private String token;
+
+  @Setup
+  public void setUp() {
+    var securityProperties =
+        new SecurityProperties(
+            new JwtProperties(
+                SECRET_KEY, TOKEN_VALIDITY, Duration.ofDays(3), new RefreshToken(604800000)),
+            new TokenRevocation(false, 0),
+            new Management("operator", ""));
+    jwtService = new JwtService(securityProperties);
+    userDetails =
+        new CustomUserDetails(
+            1L, UUID.fromString("019630c5-eccf-7b24-b814-a39c97c64b8b"), "", "+994501234567");
+    token = jwtService.generateAccessToken(userDetails);
+  }
+
+  @Benchmark
+  public Claims parse() {
+    return jwtService.parseToken(token);
+  }
+
+  @Benchmark
+  public String sign() {
+    return jwtService.generateAccessToken(userDetails);
+  }
+
+  @Benchmark
+  public Claims parsePerCallKey() {
+    return Jwts.parser()
+        .verifyWith(perCallKey())
+        .clockSkewSeconds(5)
+        .build()
+        .parseSignedClaims(token)
+        .getPayload();
+  }
+
+  @Benchmark
+  public String signPerCallKey() {
+    return Jwts.builder()
+        .subject(userDetails.getUsername())
+        .issuedAt(new Date())
+        .expiration(Date.from(Instant.now().plus(TOKEN_VALIDITY)))
+        .header()
+        .add(Map.of("type", "JWT"))
+        .and()
+        .signWith(perCallKey())
+        .claims(Map.of("username", userDetails.getUsername()))
+        .compact();
+  }
+
+  private static SecretKey perCallKey() {
+    return Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+  }
+}
@@ -0,0 +1,195 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AsyncAuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.CustomerLockMonitor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TriggerAuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ArchiveProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.AuditProperties.AuditMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Batch;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.GroupCommit;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Lock;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Posting;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.PostingMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Serialization;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AuditLogRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Measures {@link TransactionService#processTransaction} end to end against PostgreSQL 17 in a
+ * container. The service is wired by hand instead of booting the application context, and the
+ * {@code @Transactional} boundary is reproduced with a {@link TransactionTemplate}. {@code
+ * auditMode} compares the log triggers with the batched {@link AsyncAuditLog}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransactionServiceBenchmark {
+  private static final UUID CUSTOMER_UID = UUID.fromString("019630c5-eccf-7b24-b814-a39c97c64b8b");
+  private static final SessionUser SESSION_USER =
+      new SessionUser(1L, CUSTOMER_UID, "+994501234567");
+  private static final TransactionRequest TOP_UP =
+      new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("10.00"));
+  private static final TransactionRequest PURCHASE =
+      new TransactionRequest(TransactionType.PURCHASE, new BigDecimal("0.01"));
+
+  @Param({"STANDARD", "SINGLE_STATEMENT"})
+  public PostingMode postingMode;
+
+  @Param({"TRIGGER", "ASYNC"})
+  public AuditMode auditMode;
+
+  private PostgreSQLContainer<?> postgres;
+  private HikariDataSource dataSource;
+  private TransactionTemplate transactionTemplate;
+  private TransactionService transactionService;
+  private AsyncAuditLog asyncAuditLog;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    postgres = new PostgreSQLContainer<>("postgres:17");
+    postgres.start();
+
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl(postgres.getJdbcUrl());
+    dataSource.setUsername(postgres.getUsername());
+    dataSource.setPassword(postgres.getPassword());
+    migrate();
+
+    JdbcClient jdbcClient = JdbcClient.create(dataSource);
+    jdbcClient
+        .sql("UPDATE customers SET balance = 1000000000 WHERE uid = :uid")
+        .param("uid", CUSTOMER_UID)
+        .update();
+
+    var meterRegistry = new SimpleMeterRegistry();
+    var transactionMetrics = new TransactionMetrics(meterRegistry);
+    var namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    var transactionManager = new DataSourceTransactionManager(dataSource);
+    AuditLog auditLog = new TriggerAuditLog();
+    if (AuditMode.ASYNC.equals(auditMode)) {
+      asyncAuditLog =
+          new AsyncAuditLog(
+              new AuditLogRepository(namedParameterJdbcTemplate),
+              transactionManager,
+              meterRegistry,
+              10000,
+              500,
+              Duration.ofMillis(200),
+              Duration.ofSeconds(10));
+      asyncAuditLog.start();
+      auditLog = asyncAuditLog;
+    }
+    var customerRepository = new CustomerRepository(jdbcClient, auditLog);
+    var transactionRepository =
+        new TransactionRepository(
+            jdbcClient,
+            namedParameterJdbcTemplate,
+            customerRepository,
+            transactionMetrics,
+            auditLog,
+            new ArchiveProperties("-", Duration.ofDays(400), 1000));
+    var transactionProperties =
+        new TransactionProperties(
+            new Posting(postingMode),
+            new Batch(500),
+            new Lock(Duration.ofSeconds(2), 1000),
+            new Serialization(false, 1),
+            new GroupCommit(false, 100));
+    transactionService =
+        new TransactionService(
+            customerRepository,
+            transactionRepository,
+            transactionProperties,
+            transactionMetrics,
+            new CustomerLockMonitor(meterRegistry, transactionProperties),
+            auditLog);
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (Objects.nonNull(asyncAuditLog)) {
+      asyncAuditLog.stop();
+    }
+    dataSource.close();
+    postgres.stop();
+  }
+
+  @Benchmark
+  public TransactionResponse topUp() {
+    return process(TOP_UP);
+  }
+
+  @Benchmark
+  public TransactionResponse purchase() {
+    return process(PURCHASE);
+  }
+
+  private TransactionResponse process(TransactionRequest request) {
+    return transactionTemplate.execute(
+        status -> {
+          ThreadLocalStorage.setSessionUser(SESSION_USER);
+          return transactionService.processTransaction(request, UUID.randomUUID());
+        });
+  }
+
+  private void migrate() throws Exception {
+    try (Connection connection = dataSource.getConnection()) {
+      Database database =
+          DatabaseFactory.getInstance()
+              .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+      try (Liquibase liquibase =
+          new Liquibase(
+              "db/changelog/db.changelog-master.yaml",
+              new ClassLoaderResourceAccessor(),
+              database)) {
+        liquibase.update(new Contexts(), new LabelExpression());
+      }
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.AuditEvent;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AuditLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Collects the audit events of a taken-over transaction in memory and queues them once it
+ * commits, so that rolled back postings leave no events. A background writer inserts queued events
+ * in batches. Queue space is reserved before commit; when there is none, or the writer is stopped,
+ * the transaction writes its own events before it commits, which slows the callers down instead of
+ * dropping events. Events still queued when the process dies, or when shutdown times out, are
+ * lost.
+ */
+@Slf4j
+public class AsyncAuditLog implements AuditLog, SmartLifecycle {
+  static final String EVENTS_COUNTER = "audit.events";
+  static final String FLUSH_TIMER = "audit.flush";
+  static final String QUEUE_SIZE_GAUGE = "audit.queue.size";
+  private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+  private final AuditLogRepository auditLogRepository;
+  private final TransactionTemplate writeTransaction;
+  private final BlockingQueue<AuditEvent> queue;
+  private final int queueCapacity;
+  // Queue space of events queued, being written or about to be queued by a committing transaction.
+  private final Semaphore freeCapacity;
+  private final int batchSize;
+  private final Duration flushInterval;
+  private final Duration shutdownTimeout;
+  private final Counter queuedEvents;
+  private final Counter directEvents;
+  private final Timer flushTimer;
+
+  private volatile boolean running;
+  private Thread writer;
+
+  public AsyncAuditLog(
+      AuditLogRepository auditLogRepository,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry,
+      int queueCapacity,
+      int batchSize,
+      Duration flushInterval,
+      Duration shutdownTimeout) {
+    this.auditLogRepository = auditLogRepository;
+    // A batch is written in one transaction, so a retry cannot duplicate part of it.
+    this.writeTransaction = new TransactionTemplate(transactionManager);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.queueCapacity = queueCapacity;
+    this.freeCapacity = new Semaphore(queueCapacity);
+    this.batchSize = batchSize;
+    this.flushInterval = flushInterval;
+    this.shutdownTimeout = shutdownTimeout;
+    this.queuedEvents = meterRegistry.counter(EVENTS_COUNTER, "path", "queued");
+    this.directEvents = meterRegistry.counter(EVENTS_COUNTER, "path", "direct");
+    this.flushTimer = meterRegistry.timer(FLUSH_TIMER);
+    meterRegistry.gaugeCollectionSize(QUEUE_SIZE_GAUGE, Tags.empty(), queue);
+  }
+
+  @Override
+  public boolean takeOverCurrentTransaction() {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      return false;
+    }
+    if (!TransactionSynchronizationManager.hasResource(this)) {
+      var events = new TransactionEvents();
+      TransactionSynchronizationManager.bindResource(this, events);
+      TransactionSynchronizationManager.registerSynchronization(events);
+    }
+    return true;
+  }
+
+  @Override
+  public void transactionInserted(UUID transactionUid, TransactionStatus status) {
+    TransactionEvents events = currentTransactionEvents();
+    if (Objects.nonNull(events)) {
+      events.statuses.put(transactionUid, status);
+      events.add(AuditEvent.transactionInserted(transactionUid, status));
+    }
+  }
+
+  @Override
+  public void transactionStatusUpdated(UUID transactionUid, TransactionStatus status) {
+    TransactionEvents events = currentTransactionEvents();
+    if (Objects.nonNull(events)) {
+      TransactionStatus previousStatus = events.statuses.put(transactionUid, status);
+      // Like the trigger, only status changes are logged.
+      if (!Objects.equals(previousStatus, status)) {
+        events.add(AuditEvent.transactionUpdated(transactionUid, previousStatus, status));
+      }
+    }
+  }
+
+  @Override
+  public void customerUpdated(UUID customerUid) {
+    TransactionEvents events = currentTransactionEvents();
+    if (Objects.nonNull(events)) {
+      events.add(AuditEvent.customerUpdated(customerUid));
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    writer = Thread.ofPlatform().name("audit-log-writer").daemon().start(this::writeQueued);
+  }
+
+  /**
+   * Stops after the web server, so that in-flight requests can still queue their events, and
+   * returns once every queued event is written or the shutdown timeout has passed.
+   */
+  @Override
+  public void stop() {
+    running = false;
+    if (Objects.isNull(writer)) {
+      return;
+    }
+    try {
+      if (!writer.join(shutdownTimeout)) {
+        logUnwrittenEvents();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logUnwrittenEvents();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return SmartLifecycle.DEFAULT_PHASE - 4096;
+  }
+
+  private TransactionEvents currentTransactionEvents() {
+    return (TransactionEvents) TransactionSynchronizationManager.getResource(this);
+  }
+
+  private void logUnwrittenEvents() {
+    log.error(
+        "{} audit events were not written before shutdown",
+        queueCapacity - freeCapacity.availablePermits());
+  }
+
+  private void write(List<AuditEvent> events) {
+    auditLogRepository.insert(events);
+  }
+
+  private void writeQueued() {
+    List<AuditEvent> batch = new ArrayList<>(batchSize);
+    // Reserved space that is not free yet belongs to events still to be queued or written.
+    while (running || freeCapacity.availablePermits() < queueCapacity) {
+      try {
+        AuditEvent first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        if (Objects.isNull(first)) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        if (!writeWithRetry(batch)) {
+          logUnwrittenEvents();
+          return;
+        }
+        freeCapacity.release(batch.size());
+        batch.clear();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /** Retries the batch until it is written or the log is stopped; returns whether it is written. */
+  private boolean writeWithRetry(List<AuditEvent> batch) throws InterruptedException {
+    while (true) {
+      try {
+        flushTimer.record(() -> writeTransaction.executeWithoutResult(status -> write(batch)));
+        return true;
+      } catch (RuntimeException e) {
+        if (!running) {
+          log.error("Could not write {} audit events during shutdown", batch.size(), e);
+          return false;
+        }
+        log.warn("Could not write {} audit events, retrying", batch.size(), e);
+        Thread.sleep(RETRY_DELAY);
+      }
+    }
+  }
+
+  /** Events of one transaction and the last known status of the transactions it wrote. */
+  private final class TransactionEvents implements TransactionSynchronization {
+    private final List<AuditEvent> events = new ArrayList<>();
+    private final Map<UUID, TransactionStatus> statuses = new HashMap<>();
+    private boolean queueSpaceReserved;
+
+    private void add(AuditEvent event) {
+      events.add(event);
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      if (events.isEmpty()) {
+        return;
+      }
+      queueSpaceReserved = running && freeCapacity.tryAcquire(events.size());
+      if (!queueSpaceReserved) {
+        write(events);
+        directEvents.increment(events.size());
+      }
+    }
+
+    @Override
+    public void afterCommit() {
+      if (queueSpaceReserved) {
+        queue.addAll(events);
+        queuedEvents.increment(events.size());
+      }
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+      if (queueSpaceReserved && status != STATUS_COMMITTED) {
+        freeCapacity.release(events.size());
+      }
+      TransactionSynchronizationManager.unbindResourceIfPossible(AsyncAuditLog.this);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import java.util.UUID;
+
+/**
+ * Records the row changes of postings in {@code customers_log} and {@code transactions_log}.
+ * Repositories report every change; only changes made in a transaction the log has taken over are
+ * recorded, the others are left to the log triggers.
+ */
+public interface AuditLog {
+
+  /**
+   * Takes over auditing of the current database transaction.
+   *
+   * @return whether the caller must turn the log triggers off for the transaction
+   */
+  boolean takeOverCurrentTransaction();
+
+  void transactionInserted(UUID transactionUid, TransactionStatus status);
+
+  void transactionStatusUpdated(UUID transactionUid, TransactionStatus status);
+
+  void customerUpdated(UUID customerUid);
+}
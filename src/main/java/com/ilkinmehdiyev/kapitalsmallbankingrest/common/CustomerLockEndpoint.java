@@ -0,0 +1,29 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.CustomerLockMonitor.HotCustomer;
+import java.util.List;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/customerlocks?limit=N}: the customers with the most customer lock wait. It names
+ * customers, so it is only served on the management port.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "customerlocks")
+public class CustomerLockEndpoint {
+  private static final int DEFAULT_LIMIT = 10;
+
+  private final CustomerLockMonitor customerLockMonitor;
+
+  @ReadOperation
+  public List<HotCustomer> hottestCustomers(@Nullable Integer limit) {
+    return customerLockMonitor.hottestCustomers(
+        Objects.isNull(limit) ? DEFAULT_LIMIT : Math.max(limit, 1));
+  }
+}
@@ -0,0 +1,97 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how long postings wait for the customer row lock. Waits go to the {@code
+ * customer.lock.wait} histogram, tagged by whether the lock was acquired or timed out, and are
+ * accumulated per customer for the hottest customers report. Per-customer statistics are bounded
+ * to {@code transaction.lock.trackedCustomers} entries; the size-based eviction keeps frequently
+ * locked customers and drops rarely seen ones.
+ */
+@Component
+public class CustomerLockMonitor {
+  public static final String LOCK_WAIT_TIMER = "customer.lock.wait";
+
+  private final Timer acquiredTimer;
+  private final Timer timedOutTimer;
+  private final Cache<UUID, LockStatistics> statistics;
+
+  public CustomerLockMonitor(
+      MeterRegistry meterRegistry, TransactionProperties transactionProperties) {
+    this.acquiredTimer = lockWaitTimer(meterRegistry, "acquired");
+    this.timedOutTimer = lockWaitTimer(meterRegistry, "timeout");
+    this.statistics =
+        Caffeine.newBuilder()
+            .maximumSize(transactionProperties.getLock().trackedCustomers())
+            .executor(Runnable::run)
+            .build();
+  }
+
+  public void recordAcquired(UUID customerUid, long waitNanos) {
+    acquiredTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    statisticsOf(customerUid).record(waitNanos, false);
+  }
+
+  public void recordTimedOut(UUID customerUid, long waitNanos) {
+    timedOutTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    statisticsOf(customerUid).record(waitNanos, true);
+  }
+
+  /** Customers with the highest total lock wait, longest first. */
+  public List<HotCustomer> hottestCustomers(int limit) {
+    return statistics.asMap().entrySet().stream()
+        .map(entry -> entry.getValue().snapshot(entry.getKey()))
+        .sorted(Comparator.comparing(HotCustomer::totalWait).reversed())
+        .limit(limit)
+        .toList();
+  }
+
+  private LockStatistics statisticsOf(UUID customerUid) {
+    return statistics.get(customerUid, uid -> new LockStatistics());
+  }
+
+  private static Timer lockWaitTimer(MeterRegistry meterRegistry, String outcome) {
+    return Timer.builder(LOCK_WAIT_TIMER)
+        .description("Time spent waiting for a customer row lock")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  public record HotCustomer(
+      UUID customerUid, long acquisitions, long timeouts, Duration totalWait, Duration maxWait) {}
+
+  private static final class LockStatistics {
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    void record(long waitNanos, boolean timedOut) {
+      (timedOut ? timeouts : acquisitions).increment();
+      totalWaitNanos.add(waitNanos);
+      maxWaitNanos.accumulate(waitNanos);
+    }
+
+    HotCustomer snapshot(UUID customerUid) {
+      return new HotCustomer(
+          customerUid,
+          acquisitions.sum(),
+          timeouts.sum(),
+          Duration.ofNanos(totalWaitNanos.sum()),
+          Duration.ofNanos(maxWaitNanos.get()));
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code DELETE /actuator/customersessions/{customerUid}}: ends the sessions of a customer whose
+ * password or phone number was changed, or who was disabled or deleted, outside this service.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "customersessions")
+public class CustomerSessionEndpoint {
+  private final CustomerServiceImpl customerService;
+
+  @DeleteOperation
+  public void endSessions(@Selector UUID customerUid) {
+    customerService.customerCredentialsChanged(customerUid);
+  }
+}
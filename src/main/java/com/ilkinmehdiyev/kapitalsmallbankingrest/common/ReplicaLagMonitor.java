@@ -0,0 +1,101 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Tells whether the replica may serve reads. The replica is usable while it answers, streams from
+ * the primary and its replay lag is at most {@code replica.maxLag}; until the first check, and
+ * while it is down, disconnected or behind, reads go to the primary. The last measured lag is the
+ * {@code replica.lag} gauge, -1 when unknown. The replica user needs {@code pg_read_all_stats} to
+ * see the state of the WAL receiver.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+  static final String LAG_GAUGE = "replica.lag";
+
+  private static final String PRIMARY_LSN_SQL = "SELECT pg_current_wal_lsn()::TEXT";
+
+  // A server that is not in recovery is the primary itself. Without a streaming WAL receiver the
+  // lag is unknown: replay stops where the connection broke, so it can never look behind. A replica
+  // that has replayed up to the primary's position is not behind, however long ago the last
+  // transaction was.
+  private static final String REPLAY_LAG_MILLIS_SQL =
+      """
+          SELECT CASE
+              WHEN NOT pg_is_in_recovery() THEN 0
+              WHEN NOT EXISTS (SELECT FROM pg_stat_wal_receiver WHERE status = 'streaming')
+                  THEN NULL
+              WHEN pg_last_wal_replay_lsn() >= CAST(:primaryLsn AS PG_LSN) THEN 0
+              ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::BIGINT
+              END
+          """;
+
+  private final JdbcClient primaryJdbcClient;
+  private final JdbcClient replicaJdbcClient;
+  private final Duration maxLag;
+  private final AtomicLong lagMillis = new AtomicLong(-1);
+  private volatile boolean replicaUsable;
+
+  public ReplicaLagMonitor(
+      JdbcClient primaryJdbcClient,
+      JdbcClient replicaJdbcClient,
+      Duration maxLag,
+      MeterRegistry registry) {
+    this.primaryJdbcClient = primaryJdbcClient;
+    this.replicaJdbcClient = replicaJdbcClient;
+    this.maxLag = maxLag;
+    Gauge.builder(LAG_GAUGE, lagMillis, AtomicLong::get)
+        .description("Replay lag of the read replica")
+        .baseUnit("milliseconds")
+        .register(registry);
+  }
+
+  public boolean isReplicaUsable() {
+    return replicaUsable;
+  }
+
+  public long getLagMillis() {
+    return lagMillis.get();
+  }
+
+  @Scheduled(fixedDelayString = "${replica.lagCheckInterval}")
+  public void checkLag() {
+    Optional<Duration> lag;
+    try {
+      String primaryLsn = primaryJdbcClient.sql(PRIMARY_LSN_SQL).query(String.class).single();
+      lag =
+          replicaJdbcClient
+              .sql(REPLAY_LAG_MILLIS_SQL)
+              .param("primaryLsn", primaryLsn)
+              .query(Long.class)
+              .optional()
+              .map(Duration::ofMillis);
+    } catch (DataAccessException e) {
+      lagMillis.set(-1);
+      if (replicaUsable) {
+        log.warn("Replica is unavailable, reads go to the primary", e);
+      }
+      replicaUsable = false;
+      return;
+    }
+
+    lagMillis.set(lag.map(Duration::toMillis).orElse(-1L));
+    boolean usable = lag.filter(replayLag -> replayLag.compareTo(maxLag) <= 0).isPresent();
+    if (usable && !replicaUsable) {
+      log.info("Replica lag is {}, reads go to the replica", lag.get());
+    } else if (!usable && replicaUsable) {
+      log.warn(
+          "Replica lag is {}, reads go to the primary",
+          lag.map(Object::toString).orElse("unknown"));
+    }
+    replicaUsable = usable;
+  }
+}
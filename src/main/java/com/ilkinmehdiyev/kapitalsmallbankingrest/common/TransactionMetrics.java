@@ -0,0 +1,96 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Timers for transaction posting. {@code transaction.processing} covers a whole request and {@code
+ * transaction.stage} each step of it, so that latency can be attributed to lock waits, writes or
+ * validation. Both are tagged by transaction type and outcome; the outcome of a failed step is the
+ * simple name of the exception it threw.
+ */
+@Component
+public class TransactionMetrics {
+  public static final String PROCESSING_TIMER = "transaction.processing";
+  public static final String STAGE_TIMER = "transaction.stage";
+  public static final String BATCH_TYPE = "BATCH";
+  public static final String OUTCOME_SUCCESS = "success";
+
+  private final MeterRegistry meterRegistry;
+  private final Meter.MeterProvider<Timer> processingTimers;
+  private final Meter.MeterProvider<Timer> stageTimers;
+
+  public TransactionMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.processingTimers =
+        Timer.builder(PROCESSING_TIMER)
+            .description("Time to process a transaction request")
+            .withRegistry(meterRegistry);
+    this.stageTimers =
+        Timer.builder(STAGE_TIMER)
+            .description("Time spent in one stage of transaction posting")
+            .withRegistry(meterRegistry);
+  }
+
+  public <T> T recordProcessing(TransactionType type, Supplier<T> action) {
+    return record(processingTimers, Tags.of("type", type.name()), action);
+  }
+
+  public <T> T recordBatchProcessing(Supplier<T> action) {
+    return record(processingTimers, Tags.of("type", BATCH_TYPE), action);
+  }
+
+  public <T> T recordStage(Stage stage, TransactionType type, Supplier<T> action) {
+    return record(stageTimers, Tags.of("stage", stage.tag, "type", type.name()), action);
+  }
+
+  public void recordStage(Stage stage, TransactionType type, Runnable action) {
+    recordStage(
+        stage,
+        type,
+        () -> {
+          action.run();
+          return null;
+        });
+  }
+
+  public <T> T recordBatchStage(Stage stage, Supplier<T> action) {
+    return record(stageTimers, Tags.of("stage", stage.tag, "type", BATCH_TYPE), action);
+  }
+
+  private <T> T record(Meter.MeterProvider<Timer> timers, Tags tags, Supplier<T> action) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = OUTCOME_SUCCESS;
+    try {
+      return action.get();
+    } catch (RuntimeException e) {
+      outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      sample.stop(timers.withTags(tags.and("outcome", outcome)));
+    }
+  }
+
+  public enum Stage {
+    IDEMPOTENCY_LOOKUP("idempotency_lookup"),
+    CUSTOMER_LOCK("customer_lock"),
+    REFUND_VALIDATION("refund_validation"),
+    REFUNDED_AMOUNT_UPDATE("refunded_amount_update"),
+    INSERT("insert"),
+    BALANCE_UPDATE("balance_update"),
+    STATUS_UPDATE("status_update"),
+    OUTBOX("outbox"),
+    SINGLE_STATEMENT_POSTING("single_statement_posting");
+
+    private final String tag;
+
+    Stage(String tag) {
+      this.tag = tag;
+    }
+  }
+}
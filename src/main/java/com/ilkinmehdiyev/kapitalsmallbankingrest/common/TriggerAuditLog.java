@@ -0,0 +1,22 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import java.util.UUID;
+
+/** Leaves all auditing to the log triggers. */
+public class TriggerAuditLog implements AuditLog {
+
+  @Override
+  public boolean takeOverCurrentTransaction() {
+    return false;
+  }
+
+  @Override
+  public void transactionInserted(UUID transactionUid, TransactionStatus status) {}
+
+  @Override
+  public void transactionStatusUpdated(UUID transactionUid, TransactionStatus status) {}
+
+  @Override
+  public void customerUpdated(UUID customerUid) {}
+}
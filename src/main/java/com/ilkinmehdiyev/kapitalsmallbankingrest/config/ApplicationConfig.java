@@ -1,18 +1,98 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AsyncAuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TriggerAuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.AuditProperties.AuditMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.OutboxProperties.SinkType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AuditLogRepository;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerDetailsCache;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.IdempotencyStore;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.InMemoryCustomerDetailsCache;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.InMemoryIdempotencyStore;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.InMemoryOutboxSink;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.NdjsonFileOutboxSink;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.OutboxSink;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
-@EnableConfigurationProperties({SecurityProperties.class})
+@EnableConfigurationProperties({
+  SecurityProperties.class,
+  TransactionProperties.class,
+  CachingProperties.class,
+  StatementProperties.class,
+  BalanceProperties.class,
+  ReconciliationProperties.class,
+  AuditProperties.class,
+  OutboxProperties.class,
+  PartitionProperties.class,
+  ArchiveProperties.class,
+  ReplicaProperties.class
+})
 public class ApplicationConfig {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
     return new BCryptPasswordEncoder();
   }
+
+  @Bean
+  @ConditionalOnMissingBean(CustomerDetailsCache.class)
+  public CustomerDetailsCache customerDetailsCache(
+      CachingProperties cachingProperties, MeterRegistry meterRegistry) {
+    var customerDetails = cachingProperties.getCustomerDetails();
+    var cache =
+        new InMemoryCustomerDetailsCache(customerDetails.maximumSize(), customerDetails.ttl());
+    cache.bindTo(meterRegistry);
+    return cache;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean(IdempotencyStore.class)
+  public IdempotencyStore idempotencyStore(
+      CachingProperties cachingProperties, MeterRegistry meterRegistry) {
+    var idempotency = cachingProperties.getIdempotency();
+    var store = new InMemoryIdempotencyStore(idempotency.maximumSize(), idempotency.ttl());
+    store.bindTo(meterRegistry);
+    return store;
+  }
+
+  @Bean
+  public AuditLog auditLog(
+      AuditProperties auditProperties,
+      AuditLogRepository auditLogRepository,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
+    if (AuditMode.TRIGGER.equals(auditProperties.getMode())) {
+      return new TriggerAuditLog();
+    }
+    return new AsyncAuditLog(
+        auditLogRepository,
+        transactionManager,
+        meterRegistry,
+        auditProperties.getQueueCapacity(),
+        auditProperties.getBatchSize(),
+        auditProperties.getFlushInterval(),
+        auditProperties.getShutdownTimeout());
+  }
+
+  @Bean
+  public OutboxSink outboxSink(OutboxProperties outboxProperties, ObjectMapper objectMapper)
+      throws IOException {
+    var sink = outboxProperties.getSink();
+    if (SinkType.MEMORY.equals(sink.type())) {
+      return new InMemoryOutboxSink();
+    }
+    return new NdjsonFileOutboxSink(objectMapper, sink.file());
+  }
 }
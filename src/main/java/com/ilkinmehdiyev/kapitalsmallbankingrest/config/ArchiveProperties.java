@@ -0,0 +1,17 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "archive")
+public class ArchiveProperties {
+  private final String cron;
+  // A monthly partition is archived once all of its month is older than this.
+  private final Duration retention;
+  // Rows moved per database transaction when rows are moved one by one.
+  private final int chunkSize;
+}
@@ -0,0 +1,31 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "audit")
+public class AuditProperties {
+  private final AuditMode mode;
+  // Events buffered for the background writer; when it is full, postings write their events in
+  // their own transaction.
+  private final int queueCapacity;
+  // Most events the background writer inserts per round trip.
+  private final int batchSize;
+  private final Duration flushInterval;
+  // How long shutdown waits for the background writer to write the queued events.
+  private final Duration shutdownTimeout;
+
+  public enum AuditMode {
+    /** The log triggers insert a row per change inside the posting transaction. */
+    TRIGGER,
+    /**
+     * Postings turn the log triggers off for their transaction; the changes are queued on commit
+     * and inserted in batches by a background writer.
+     */
+    ASYNC,
+  }
+}
@@ -0,0 +1,22 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "balance")
+public class BalanceProperties {
+  private final Snapshot snapshot;
+
+  /**
+   * @param enabled whether this instance takes snapshots
+   * @param cron when the snapshot job runs, in UTC; runs after the first one of a day are no-ops
+   * @param grace how long after midnight a day's snapshot waits, so that postings dated before
+   *     midnight have committed
+   * @param chunkSize customers snapshotted per statement
+   */
+  public record Snapshot(boolean enabled, String cron, Duration grace, int chunkSize) {}
+}
@@ -0,0 +1,22 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "cache")
+public class CachingProperties {
+  private final CustomerDetails customerDetails;
+  private final Idempotency idempotency;
+
+  public record CustomerDetails(int maximumSize, Duration ttl) {}
+
+  /**
+   * @param maximumSize most completed postings remembered
+   * @param ttl how long a completed posting is replayed from memory
+   */
+  public record Idempotency(int maximumSize, Duration ttl) {}
+}
@@ -0,0 +1,34 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxProperties {
+  private final Relay relay;
+  private final Sink sink;
+
+  /**
+   * @param enabled whether this instance publishes outbox events; any number of instances may
+   * @param pollInterval pause between two runs of the relay
+   * @param batchSize events published per sink call and database transaction
+   */
+  public record Relay(boolean enabled, Duration pollInterval, int batchSize) {}
+
+  /**
+   * @param type where published events go
+   * @param file the file {@link SinkType#FILE} appends events to, one JSON object per line
+   */
+  public record Sink(SinkType type, Path file) {}
+
+  public enum SinkType {
+    FILE,
+    /** Keeps events in memory; for tests and local development. */
+    MEMORY,
+  }
+}
@@ -0,0 +1,16 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "partitioning")
+public class PartitionProperties {
+  private final boolean enabled;
+  private final String cron;
+  // Months after the current one that must already have a partition, which is how long a failed
+  // run has to be noticed.
+  private final int monthsAhead;
+}
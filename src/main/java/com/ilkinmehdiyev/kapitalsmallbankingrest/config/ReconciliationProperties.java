@@ -0,0 +1,19 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.math.BigDecimal;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "reconciliation")
+public class ReconciliationProperties {
+  private final boolean enabled;
+  private final String cron;
+  // Balance every customer starts with, the customers.balance column default.
+  private final BigDecimal openingBalance;
+  private final int chunkSize;
+  // Chunks reconciled at once; keep it well below the pool size.
+  private final int parallelism;
+}
@@ -0,0 +1,97 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.jdbc.DataSourceHealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Sends read-only transactions to a streaming replica with a pool of its own, so that statements,
+ * history, past balances and reconciliation do not take connections from postings. Everything else,
+ * Liquibase included, stays on the primary pool configured under {@code spring.datasource}. Reads
+ * on the replica may miss postings of the last {@code replica.maxLag}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replica", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+    return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public HikariDataSource replicaDataSource(ReplicaProperties replicaProperties) {
+    HikariDataSource replica =
+        DataSourceBuilder.create()
+            .type(HikariDataSource.class)
+            .url(replicaProperties.getUrl())
+            .username(replicaProperties.getUsername())
+            .password(replicaProperties.getPassword())
+            .build();
+    replica.setPoolName("HikariCP-replica");
+    replica.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+    replica.setConnectionTimeout(replicaProperties.getConnectionTimeout().toMillis());
+    replica.setReadOnly(true);
+    // Starts even while the replica is down; the lag monitor keeps reads on the primary meanwhile.
+    replica.setInitializationFailTimeout(-1);
+    return replica;
+  }
+
+  @Bean
+  public ReplicaLagMonitor replicaLagMonitor(
+      @Qualifier("primaryDataSource") DataSource primaryDataSource,
+      @Qualifier("replicaDataSource") DataSource replicaDataSource,
+      ReplicaProperties replicaProperties,
+      MeterRegistry meterRegistry) {
+    return new ReplicaLagMonitor(
+        JdbcClient.create(primaryDataSource),
+        JdbcClient.create(replicaDataSource),
+        replicaProperties.getMaxLag(),
+        meterRegistry);
+  }
+
+  // Replaces the auto-configured db indicator, which would check every pool and report the
+  // application down with the replica.
+  @Bean
+  public HealthContributor dbHealthContributor(
+      @Qualifier("primaryDataSource") DataSource primaryDataSource) {
+    return new DataSourceHealthIndicator(primaryDataSource);
+  }
+
+  // Reads fall back to the primary without the replica, so it only shows up in the details.
+  @Bean
+  public HealthIndicator replicaHealthIndicator(ReplicaLagMonitor replicaLagMonitor) {
+    return () ->
+        Health.up()
+            .withDetail("usable", replicaLagMonitor.isReplicaUsable())
+            .withDetail("lagMillis", replicaLagMonitor.getLagMillis())
+            .build();
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(
+      @Qualifier("primaryDataSource") DataSource primaryDataSource,
+      @Qualifier("replicaDataSource") DataSource replicaDataSource,
+      ReplicaLagMonitor replicaLagMonitor) {
+    return new LazyConnectionDataSourceProxy(
+        new ReplicaRoutingDataSource(
+            primaryDataSource, replicaDataSource, replicaLagMonitor::isReplicaUsable));
+  }
+}
@@ -0,0 +1,21 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "replica")
+public class ReplicaProperties {
+  private final boolean enabled;
+  private final String url;
+  private final String username;
+  private final String password;
+  private final int maximumPoolSize;
+  private final Duration connectionTimeout;
+  // Replay lag past which reads go back to the primary.
+  private final Duration maxLag;
+  private final Duration lagCheckInterval;
+}
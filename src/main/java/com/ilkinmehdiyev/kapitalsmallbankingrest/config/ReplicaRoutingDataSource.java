@@ -0,0 +1,38 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out replica connections inside read-only transactions while the replica is usable, and
+ * primary connections otherwise. The transaction is only known to be read-only once it has begun,
+ * so this must sit behind a {@code LazyConnectionDataSourceProxy}, which defers fetching the
+ * connection to the first statement.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+  enum Target {
+    PRIMARY,
+    REPLICA
+  }
+
+  private final BooleanSupplier replicaUsable;
+
+  ReplicaRoutingDataSource(DataSource primary, DataSource replica, BooleanSupplier replicaUsable) {
+    this.replicaUsable = replicaUsable;
+    setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+            && replicaUsable.getAsBoolean()
+        ? Target.REPLICA
+        : Target.PRIMARY;
+  }
+}
@@ -0,0 +1,13 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "statement")
+public class StatementProperties {
+  // Rows read per query of a statement export, and so the most rows held in memory at once.
+  private final int pageSize;
+}
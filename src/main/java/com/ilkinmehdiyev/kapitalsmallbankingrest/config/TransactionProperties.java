@@ -0,0 +1,49 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@RequiredArgsConstructor
+@ConfigurationProperties(prefix = "transaction")
+public class TransactionProperties {
+  private final Posting posting;
+  private final Batch batch;
+  private final Lock lock;
+  private final Serialization serialization;
+  private final GroupCommit groupCommit;
+
+  public record Posting(PostingMode mode) {}
+
+  public record Batch(int maxSize) {}
+
+  /**
+   * @param timeout how long a posting waits for the customer row lock before failing with a
+   *     retryable error; zero waits indefinitely
+   * @param trackedCustomers how many customers the lock contention report keeps statistics for
+   */
+  public record Lock(Duration timeout, int trackedCustomers) {}
+
+  /**
+   * @param enabled whether postings of the same customer are serialized in the JVM before they
+   *     take a database connection
+   * @param stripes number of in-JVM locks customers are hashed onto
+   */
+  public record Serialization(boolean enabled, int stripes) {}
+
+  /**
+   * @param enabled whether concurrent postings of the same customer are committed together in one
+   *     database transaction
+   * @param maxSize most postings committed in one group
+   */
+  public record GroupCommit(boolean enabled, int maxSize) {}
+
+  public enum PostingMode {
+    /** Lock, validate, insert PENDING, update balance, then update status. */
+    STANDARD,
+    /** Lock, balance check, balance update and insert in a single data-modifying statement. */
+    SINGLE_STATEMENT,
+  }
+}
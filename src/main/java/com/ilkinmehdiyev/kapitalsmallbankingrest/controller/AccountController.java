@@ -0,0 +1,32 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.controller;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.ResponseTemplate;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BalanceResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.BalanceService;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ResponseUtility;
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/v1/account")
+public class AccountController {
+  private final BalanceService balanceService;
+
+  @GetMapping("/balance")
+  public ResponseEntity<ResponseTemplate<BalanceResponse>> getBalance(
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant at) {
+    var response = balanceService.getBalance(at);
+
+    return new ResponseEntity<>(
+        ResponseUtility.generateResponse(response, HttpStatus.OK.value(), ""), HttpStatus.OK);
+  }
+}
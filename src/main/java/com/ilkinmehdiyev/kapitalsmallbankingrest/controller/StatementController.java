@@ -0,0 +1,43 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.controller;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.StatementFormat;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.StatementService;
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/v1/account/statement")
+public class StatementController {
+  private final StatementService statementService;
+
+  @GetMapping
+  public ResponseEntity<StreamingResponseBody> exportStatement(
+      @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
+      @RequestParam @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+      @RequestParam(defaultValue = "NDJSON") StatementFormat format) {
+    log.info("Requested {} statement", format);
+    var body = statementService.exportStatement(from, to, format);
+    var contentDisposition =
+        ContentDisposition.attachment()
+            .filename("statement." + format.getFileExtension())
+            .build();
+
+    return ResponseEntity.ok()
+        .contentType(format.getMediaType())
+        .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString())
+        .body(body);
+  }
+}
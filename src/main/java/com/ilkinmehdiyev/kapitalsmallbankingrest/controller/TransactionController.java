@@ -3,20 +3,34 @@ package com.ilkinmehdiyev.kapitalsmallbankingrest.controller;
 import static com.ilkinmehdiyev.kapitalsmallbankingrest.common.HttpHeaders.X_IDEMPOTENCY_KEY;
 
 import com.ilkinmehdiyev.kapitalsmallbankingrest.common.ResponseTemplate;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItemResult;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryPage;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
-import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionService;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.PostingCoordinator;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionHistoryService;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ResponseUtility;
 import jakarta.validation.Valid;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @Slf4j
@@ -24,14 +38,47 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/api/v1/account/transactions")
 public class TransactionController {
-  private final TransactionService transactionService;
+  private final PostingCoordinator postingCoordinator;
+  private final TransactionHistoryService transactionHistoryService;
+  private final TransactionMetrics transactionMetrics;
 
   @PostMapping
   public ResponseEntity<ResponseTemplate<TransactionResponse>> makeTransaction(
       @RequestHeader(X_IDEMPOTENCY_KEY) UUID idempotencyKey,
       @Valid @RequestBody TransactionRequest request) {
     log.info("Requested {} transaction", request.transactionType());
-    var response = transactionService.processTransaction(request, idempotencyKey);
+    var response =
+        transactionMetrics.recordProcessing(
+            request.transactionType(),
+            () -> postingCoordinator.processTransaction(request, idempotencyKey));
+
+    return new ResponseEntity<>(
+        ResponseUtility.generateResponse(response, HttpStatus.OK.value(), ""), HttpStatus.OK);
+  }
+
+  @PostMapping("/batch")
+  public ResponseEntity<ResponseTemplate<List<BatchTransactionItemResult>>> makeBatchTransaction(
+      @Valid @RequestBody BatchTransactionRequest request) {
+    log.info("Requested batch of {} transactions", request.items().size());
+    var response =
+        transactionMetrics.recordBatchProcessing(
+            () -> postingCoordinator.processBatch(request.items()));
+
+    return new ResponseEntity<>(
+        ResponseUtility.generateResponse(response, HttpStatus.OK.value(), ""), HttpStatus.OK);
+  }
+
+  @GetMapping
+  public ResponseEntity<ResponseTemplate<TransactionHistoryPage>> getTransactionHistory(
+      @RequestParam(required = false) TransactionType type,
+      @RequestParam(required = false) TransactionStatus status,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int limit) {
+    var response =
+        transactionHistoryService.getHistory(
+            new TransactionHistoryFilter(type, status, from, to), cursor, limit);
 
     return new ResponseEntity<>(
         ResponseUtility.generateResponse(response, HttpStatus.OK.value(), ""), HttpStatus.OK);
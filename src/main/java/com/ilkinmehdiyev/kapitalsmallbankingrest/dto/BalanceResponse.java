@@ -0,0 +1,6 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record BalanceResponse(BigDecimal balance, Instant at) {}
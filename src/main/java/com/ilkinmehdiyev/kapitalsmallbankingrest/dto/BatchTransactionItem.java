@@ -0,0 +1,23 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record BatchTransactionItem(
+    @NotNull UUID idempotencyKey,
+    @NotNull TransactionType transactionType,
+    @NotNull @Positive(message = "{topup.amount}") BigDecimal amount,
+    UUID referenceUid) {
+
+  public static BatchTransactionItem of(UUID idempotencyKey, TransactionRequest request) {
+    return new BatchTransactionItem(
+        idempotencyKey, request.transactionType(), request.amount(), request.referenceUid());
+  }
+
+  public TransactionRequest toTransactionRequest() {
+    return new TransactionRequest(transactionType, amount, referenceUid);
+  }
+}
@@ -0,0 +1,16 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import java.util.UUID;
+
+public record BatchTransactionItemResult(
+    UUID idempotencyKey, TransactionResponse transaction, String error) {
+
+  public static BatchTransactionItemResult success(
+      UUID idempotencyKey, TransactionResponse transaction) {
+    return new BatchTransactionItemResult(idempotencyKey, transaction, null);
+  }
+
+  public static BatchTransactionItemResult failure(UUID idempotencyKey, String error) {
+    return new BatchTransactionItemResult(idempotencyKey, null, error);
+  }
+}
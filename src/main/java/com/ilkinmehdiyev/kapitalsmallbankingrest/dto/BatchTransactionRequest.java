@@ -0,0 +1,7 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+public record BatchTransactionRequest(@NotEmpty List<@Valid BatchTransactionItem> items) {}
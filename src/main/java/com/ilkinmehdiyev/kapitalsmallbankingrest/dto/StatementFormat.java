@@ -0,0 +1,15 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+
+@Getter
+@RequiredArgsConstructor
+public enum StatementFormat {
+  NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+  CSV(new MediaType("text", "csv"), "csv");
+
+  private final MediaType mediaType;
+  private final String fileExtension;
+}
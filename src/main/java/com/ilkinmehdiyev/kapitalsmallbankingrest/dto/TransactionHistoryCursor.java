@@ -0,0 +1,33 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last transaction of a history page. Clients get it as an opaque string and send
+ * it back to continue right after that transaction.
+ */
+public record TransactionHistoryCursor(Instant transactionDate, long id) {
+  private static final String SEPARATOR = "|";
+
+  public String encode() {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString((transactionDate + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static TransactionHistoryCursor decode(String cursor) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = decoded.lastIndexOf(SEPARATOR);
+      return new TransactionHistoryCursor(
+          Instant.parse(decoded.substring(0, separator)),
+          Long.parseLong(decoded.substring(separator + 1)));
+    } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+      throw new TransferRequestException("Invalid cursor: [%s]".formatted(cursor));
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import java.time.Instant;
+
+/**
+ * Optional criteria of the transaction history; {@code null} fields do not filter.
+ *
+ * @param from inclusive lower bound of the transaction date
+ * @param to exclusive upper bound of the transaction date
+ */
+public record TransactionHistoryFilter(
+    TransactionType type, TransactionStatus status, Instant from, Instant to) {}
@@ -0,0 +1,27 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record TransactionHistoryItem(
+    UUID transactionUid,
+    TransactionType type,
+    BigDecimal amount,
+    TransactionStatus status,
+    Instant transactionDate,
+    UUID referenceUid) {
+
+  public static TransactionHistoryItem of(Transaction transaction) {
+    return new TransactionHistoryItem(
+        transaction.uid(),
+        transaction.type(),
+        transaction.amount(),
+        transaction.status(),
+        transaction.transactionDate(),
+        transaction.referenceUid());
+  }
+}
@@ -0,0 +1,8 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
+
+import java.util.List;
+
+/**
+ * @param nextCursor cursor of the following page, or {@code null} on the last page
+ */
+public record TransactionHistoryPage(List<TransactionHistoryItem> items, String nextCursor) {}
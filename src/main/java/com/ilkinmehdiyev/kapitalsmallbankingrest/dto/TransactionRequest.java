@@ -1,5 +1,6 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.dto;
 
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -14,4 +15,16 @@ public record TransactionRequest(
   public TransactionRequest(TransactionType transactionType, BigDecimal amount) {
     this(transactionType, amount, null);
   }
+
+  /** The change this request makes to the customer balance: purchases are debited. */
+  public BigDecimal balanceDelta() {
+    return TransactionType.PURCHASE.equals(transactionType) ? amount.negate() : amount;
+  }
+
+  /** The status a successfully posted transaction of this request ends up in. */
+  public TransactionStatus completedStatus() {
+    return TransactionType.PARTIAL_REFUND.equals(transactionType)
+        ? TransactionStatus.REFUNDED
+        : TransactionStatus.COMPLETED;
+  }
 }
@@ -0,0 +1,8 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.exception;
+
+/** The customer row lock was not acquired within the lock timeout; the request can be retried. */
+public class CustomerLockTimeoutException extends RuntimeException {
+  public CustomerLockTimeoutException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
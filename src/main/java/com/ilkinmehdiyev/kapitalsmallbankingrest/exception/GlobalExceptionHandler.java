@@ -3,6 +3,8 @@ package com.ilkinmehdiyev.kapitalsmallbankingrest.exception;
 import java.net.URI;
 import java.time.Instant;
 import java.util.List;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -58,6 +60,34 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         "INVALID_REQUEST_BODY");
   }
 
+  @ExceptionHandler(CustomerLockTimeoutException.class)
+  ResponseEntity<ProblemDetail> handleCustomerLockTimeoutException(CustomerLockTimeoutException e) {
+    return retryable(e.getMessage(), "Customer Is Busy", "errors/customer-busy");
+  }
+
+  /**
+   * A statement that timed out waiting for a row lock other than the customer's, such as a claim
+   * of an idempotency key that a concurrent request is still inserting.
+   */
+  @ExceptionHandler(CannotAcquireLockException.class)
+  ResponseEntity<ProblemDetail> handleCannotAcquireLockException(CannotAcquireLockException e) {
+    return retryable(
+        "Transaction is being posted concurrently, please retry",
+        "Transaction Is Busy",
+        "errors/transaction-busy");
+  }
+
+  @ExceptionHandler(IdempotencyKeyConflictException.class)
+  ProblemDetail handleIdempotencyKeyConflictException(IdempotencyKeyConflictException e) {
+    return idempotencyKeyConflict(e.getMessage());
+  }
+
+  /** Last line of defence for an insert that loses the race on the transaction uid. */
+  @ExceptionHandler(DuplicateKeyException.class)
+  ProblemDetail handleDuplicateKeyException(DuplicateKeyException e) {
+    return idempotencyKeyConflict("Idempotency key is already used, please retry with a new key");
+  }
+
   @Override
   public ResponseEntity<Object> handleMethodArgumentNotValid(
       MethodArgumentNotValidException ex,
@@ -79,6 +109,23 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     return new ResponseEntity<>(problemDetail, headers, status);
   }
 
+  private ResponseEntity<ProblemDetail> retryable(String message, String title, String uri) {
+    ProblemDetail problemDetail =
+        asProblemDetail(message, HttpStatus.SERVICE_UNAVAILABLE, title, uri, "RETRYABLE");
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(problemDetail);
+  }
+
+  private ProblemDetail idempotencyKeyConflict(String message) {
+    return asProblemDetail(
+        message,
+        HttpStatus.CONFLICT,
+        "Idempotency Key Conflict",
+        "errors/idempotency-conflict",
+        "CONFLICT");
+  }
+
   private ProblemDetail asProblemDetail(
       String message, HttpStatus httpStatus, String title, String uri, String errorCategory) {
     ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(httpStatus, message);
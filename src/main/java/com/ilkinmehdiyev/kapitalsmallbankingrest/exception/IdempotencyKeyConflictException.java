@@ -0,0 +1,8 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.exception;
+
+/** The idempotency key is already taken by a transaction that the caller cannot replay. */
+public class IdempotencyKeyConflictException extends RuntimeException {
+  public IdempotencyKeyConflictException(String message) {
+    super(message);
+  }
+}
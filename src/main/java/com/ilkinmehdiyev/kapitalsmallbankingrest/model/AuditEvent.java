@@ -0,0 +1,45 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.model;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A row change the log triggers would have recorded.
+ *
+ * @param uid uid of the changed customer or transaction
+ * @param previousStatus status before a transaction update, if known
+ */
+public record AuditEvent(
+    Kind kind,
+    UUID uid,
+    TransactionStatus previousStatus,
+    TransactionStatus newStatus,
+    Instant loggedAt) {
+
+  public static AuditEvent transactionInserted(UUID uid, TransactionStatus status) {
+    return new AuditEvent(Kind.TRANSACTION_INSERT, uid, null, status, Instant.now());
+  }
+
+  public static AuditEvent transactionUpdated(
+      UUID uid, TransactionStatus previousStatus, TransactionStatus status) {
+    return new AuditEvent(Kind.TRANSACTION_UPDATE, uid, previousStatus, status, Instant.now());
+  }
+
+  public static AuditEvent customerUpdated(UUID uid) {
+    return new AuditEvent(Kind.CUSTOMER_UPDATE, uid, null, null, Instant.now());
+  }
+
+  public enum Kind {
+    TRANSACTION_INSERT("I"),
+    TRANSACTION_UPDATE("U"),
+    CUSTOMER_UPDATE("U");
+
+    /** The {@code operation} letter of the log tables. */
+    public final String operation;
+
+    Kind(String operation) {
+      this.operation = operation;
+    }
+  }
+}
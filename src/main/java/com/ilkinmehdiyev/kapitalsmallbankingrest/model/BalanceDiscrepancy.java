@@ -0,0 +1,10 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.model;
+
+import java.math.BigDecimal;
+
+/**
+ * @param recordedBalance {@code customers.balance}
+ * @param ledgerBalance opening balance plus the customer's COMPLETED and REFUNDED transactions
+ */
+public record BalanceDiscrepancy(
+    Long customerId, BigDecimal recordedBalance, BigDecimal ledgerBalance) {}
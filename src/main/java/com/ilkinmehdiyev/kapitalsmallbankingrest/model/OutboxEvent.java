@@ -0,0 +1,23 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.model;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A posted transaction as published to downstream systems.
+ *
+ * @param id outbox row id, unique per event, so that consumers can drop the duplicates of an
+ *     at-least-once delivery
+ */
+public record OutboxEvent(
+    Long id,
+    UUID transactionUid,
+    Long customerId,
+    TransactionType type,
+    BigDecimal amount,
+    TransactionStatus status,
+    Instant transactionDate,
+    UUID referenceUid) {}
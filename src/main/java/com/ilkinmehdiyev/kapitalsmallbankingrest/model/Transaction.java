@@ -19,7 +19,8 @@ public record Transaction(
     UUID referenceUid,
     TransactionStatus status,
     Instant createdAt,
-    String createdBy) {
+    String createdBy,
+    BigDecimal refundedAmount) {
 
   public Transaction(
       UUID uid,
@@ -41,6 +42,7 @@ public record Transaction(
         referenceUid,
         status,
         null,
-        null);
+        null,
+        BigDecimal.ZERO);
   }
 }
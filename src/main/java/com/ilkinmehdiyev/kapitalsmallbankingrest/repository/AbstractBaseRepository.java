@@ -1,13 +1,11 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
 
-import static com.ilkinmehdiyev.kapitalsmallbankingrest.utils.RepositoryUtils.nullSafePut;
-
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
 import jakarta.validation.constraints.NotNull;
 import java.sql.Timestamp;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Types;
 import java.util.Optional;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 
 public class AbstractBaseRepository {
   public static final String ID = "id";
@@ -20,24 +18,34 @@ public class AbstractBaseRepository {
   public static final String TRANSACTION_STATUS = "status";
   public static final String REFERENCE_ID = "reference_uid";
 
-  protected Map<String, Object> tnxSqlParameters(@NotNull Transaction transaction) {
-    final Map<String, Object> params = new HashMap<>();
-
-    nullSafePut(params, ID, transaction.id());
-    nullSafePut(params, UID, transaction.uid());
-    nullSafePut(params, CUSTOMER_ID, transaction.customerId());
-    nullSafePut(params, REFERENCE_ID, transaction.referenceUid());
-    nullSafePut(
-        params, TRANSACTION_STATUS, Optional.ofNullable(transaction.status()).map(Enum::toString));
-    nullSafePut(
-        params, TRANSACTION_TYPE, Optional.ofNullable(transaction.type()).map(Enum::toString));
-    nullSafePut(params, DESCRIPTION, transaction.description());
-    nullSafePut(params, AMOUNT, transaction.amount());
-    nullSafePut(
-        params,
-        TRANSACTION_DATE,
-        Optional.ofNullable(transaction.transactionDate()).map(Timestamp::from));
+  /**
+   * The change a transaction {@code t} made to its customer's balance. Only committed postings end
+   * up COMPLETED or REFUNDED (refunds); anything else never touched the balance.
+   */
+  protected static final String BALANCE_DELTA =
+      """
+          CASE WHEN t.status NOT IN ('COMPLETED', 'REFUNDED') THEN 0
+               WHEN t.type = 'PURCHASE' THEN -t.amount
+               ELSE t.amount END
+          """;
 
-    return params;
+  /**
+   * Binds every insert column, including nulls, so that every insert uses the same statement text
+   * and the driver can reuse its server-side prepared statement. Nulls carry an explicit SQL type
+   * so that binding them needs no parameter metadata round trip.
+   */
+  protected MapSqlParameterSource tnxSqlParameters(@NotNull Transaction transaction) {
+    return new MapSqlParameterSource()
+        .addValue(UID, transaction.uid(), Types.OTHER)
+        .addValue(CUSTOMER_ID, transaction.customerId(), Types.BIGINT)
+        .addValue(TRANSACTION_TYPE, transaction.type().toString(), Types.VARCHAR)
+        .addValue(AMOUNT, transaction.amount(), Types.NUMERIC)
+        .addValue(DESCRIPTION, transaction.description(), Types.VARCHAR)
+        .addValue(
+            TRANSACTION_DATE,
+            Optional.ofNullable(transaction.transactionDate()).map(Timestamp::from).orElse(null),
+            Types.TIMESTAMP)
+        .addValue(REFERENCE_ID, transaction.referenceUid(), Types.OTHER)
+        .addValue(TRANSACTION_STATUS, transaction.status().toString(), Types.VARCHAR);
   }
 }
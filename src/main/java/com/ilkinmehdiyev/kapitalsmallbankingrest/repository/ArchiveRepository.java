@@ -0,0 +1,144 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class ArchiveRepository {
+  private final JdbcClient jdbcClient;
+
+  /**
+   * Months that have a partition of {@code transactions}, oldest first, including partitions an
+   * interrupted run detached but did not attach to the archive.
+   */
+  public List<YearMonth> findTransactionsPartitionMonths() {
+    return jdbcClient
+        .sql(
+            """
+                SELECT to_date(substring(c.relname FROM 14), 'YYYY_MM')
+                FROM pg_class c
+                         LEFT JOIN pg_inherits i ON i.inhrelid = c.oid
+                WHERE c.relname ~ '^transactions_[0-9]{4}_[0-9]{2}$'
+                  AND c.relkind = 'r'
+                  AND c.relnamespace = current_schema()::regnamespace
+                  AND (i.inhparent IS NULL OR i.inhparent = 'transactions'::regclass)
+                ORDER BY 1
+                """)
+        .query(LocalDate.class)
+        .list()
+        .stream()
+        .map(YearMonth::from)
+        .toList();
+  }
+
+  /**
+   * Detaches the partition of the UTC month from {@code transactions} with {@code CONCURRENTLY}, so
+   * postings are not blocked, and finishes a detach an earlier run left pending. Cannot run in a
+   * transaction.
+   *
+   * @return false if {@code transactions} has no partition for the month
+   */
+  public boolean detachTransactionsPartition(YearMonth month) {
+    String partition = "transactions_%04d_%02d".formatted(month.getYear(), month.getMonthValue());
+    Optional<Boolean> detachPending =
+        jdbcClient
+            .sql(
+                """
+                    SELECT inhdetachpending
+                    FROM pg_inherits
+                    WHERE inhrelid = to_regclass(:partition)
+                      AND inhparent = 'transactions'::regclass
+                    """)
+            .param("partition", partition)
+            .query(Boolean.class)
+            .optional();
+    if (detachPending.isEmpty()) {
+      return false;
+    }
+    jdbcClient
+        .sql(
+            "ALTER TABLE transactions DETACH PARTITION %s %s"
+                .formatted(partition, detachPending.get() ? "FINALIZE" : "CONCURRENTLY"))
+        .update();
+    return true;
+  }
+
+  /**
+   * Attaches the detached partition of the UTC month to {@code transactions_archive}.
+   *
+   * @return false if there is no detached partition for the month
+   */
+  public boolean archiveTransactionsPartition(YearMonth month) {
+    return jdbcClient
+        .sql("SELECT archive_transactions_partition(:month)")
+        .param("month", month.atDay(1))
+        .query(Boolean.class)
+        .single();
+  }
+
+  /**
+   * Moves up to {@code limit} rows of {@code transactions_before} dated before {@code cutoff} to
+   * the archive. The rows are not changed, so the log trigger is turned off for the deletes; must
+   * run in a transaction.
+   *
+   * @return the number of rows moved
+   */
+  public int archiveBeforePartitionTransactions(Instant cutoff, int limit) {
+    jdbcClient
+        .sql("SELECT set_config('audit.skip_triggers', 'on', true)")
+        .query(String.class)
+        .single();
+    return jdbcClient
+        .sql(
+            """
+                WITH moved AS (
+                    DELETE FROM transactions_before
+                    WHERE ctid = ANY (ARRAY(SELECT ctid
+                                            FROM transactions_before
+                                            WHERE transaction_date < :cutoff
+                                            LIMIT :limit))
+                    RETURNING *
+                )
+                INSERT INTO transactions_archive
+                SELECT * FROM moved
+                """)
+        .param("cutoff", Timestamp.from(cutoff))
+        .param("limit", limit)
+        .update();
+  }
+
+  /**
+   * Moves up to {@code limit} of the oldest {@code transactions_log} rows logged before {@code
+   * cutoff} to {@code transactions_log_archive}.
+   *
+   * @return the number of rows moved
+   */
+  public int archiveTransactionLogs(Instant cutoff, int limit) {
+    return jdbcClient
+        .sql(
+            """
+                WITH moved AS (
+                    DELETE FROM transactions_log
+                    WHERE id IN (SELECT id
+                                 FROM transactions_log
+                                 WHERE log_created < :cutoff
+                                 ORDER BY log_created
+                                 LIMIT :limit)
+                    RETURNING *
+                )
+                INSERT INTO transactions_log_archive
+                SELECT * FROM moved
+                """)
+        .param("cutoff", Timestamp.from(cutoff))
+        .param("limit", limit)
+        .update();
+  }
+}
@@ -0,0 +1,75 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.AuditEvent;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.AuditEvent.Kind;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+/** Writes the log rows of audit events as the log triggers would have. */
+@Repository
+@RequiredArgsConstructor
+public class AuditLogRepository {
+  private static final String INSERT_TRANSACTIONS_LOG_SQL =
+      """
+          INSERT INTO transactions_log
+              (id, log_created, operation, transaction_id, changed_by, previous_status, new_status)
+          SELECT nextval('transactions_log_id_sequence'), :logCreated, :operation, id, 'system',
+                 :previousStatus, :newStatus
+          FROM transactions
+          WHERE uid = :uid
+              AND transaction_date =
+                  (SELECT transaction_date FROM transaction_keys WHERE uid = :uid)
+          """;
+  private static final String INSERT_CUSTOMERS_LOG_SQL =
+      """
+          INSERT INTO customers_log (id, log_created, operation, customer_id)
+          SELECT nextval('customers_log_id_seq'), :logCreated, :operation, id
+          FROM customers
+          WHERE uid = :uid
+          """;
+
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  /** Inserts the rows with one JDBC batch per log table. */
+  public void insert(List<AuditEvent> events) {
+    Map<Boolean, List<AuditEvent>> byTable =
+        events.stream()
+            .collect(Collectors.partitioningBy(event -> event.kind() == Kind.CUSTOMER_UPDATE));
+
+    batchInsert(INSERT_TRANSACTIONS_LOG_SQL, byTable.get(false));
+    batchInsert(INSERT_CUSTOMERS_LOG_SQL, byTable.get(true));
+  }
+
+  private void batchInsert(String sql, List<AuditEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+
+    SqlParameterSource[] batchParams =
+        events.stream()
+            .map(
+                event ->
+                    new MapSqlParameterSource()
+                        .addValue("logCreated", Timestamp.from(event.loggedAt()), Types.TIMESTAMP)
+                        .addValue("operation", event.kind().operation, Types.VARCHAR)
+                        .addValue("uid", event.uid(), Types.OTHER)
+                        .addValue("previousStatus", name(event.previousStatus()), Types.VARCHAR)
+                        .addValue("newStatus", name(event.newStatus()), Types.VARCHAR))
+            .toArray(SqlParameterSource[]::new);
+
+    namedParameterJdbcTemplate.batchUpdate(sql, batchParams);
+  }
+
+  private static String name(Enum<?> value) {
+    return Objects.isNull(value) ? null : value.name();
+  }
+}
@@ -0,0 +1,96 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+@RequiredArgsConstructor
+public class BalanceSnapshotRepository extends AbstractBaseRepository {
+  private final JdbcClient jdbcClient;
+
+  /**
+   * Snapshots the balance at {@code takenAt} of customers with ids in {@code [fromId, toId]} by
+   * taking their current balance back past the transactions dated at or after {@code takenAt}. It
+   * is one statement, so balance and transactions are read from the same MVCC snapshot. Customers
+   * already snapshotted at {@code takenAt} are skipped.
+   *
+   * @return the number of snapshots written
+   */
+  public int insertSnapshots(Instant takenAt, long fromId, long toId) {
+    return jdbcClient
+        .sql(
+            """
+                INSERT INTO balance_snapshots (customer_id, taken_at, balance)
+                SELECT c.id, :takenAt, c.balance - COALESCE(SUM(%s), 0)
+                FROM customers c
+                         LEFT JOIN transactions t
+                                   ON t.customer_id = c.id AND t.transaction_date >= :takenAt
+                WHERE c.id BETWEEN :fromId AND :toId
+                GROUP BY c.id, c.balance
+                ON CONFLICT (customer_id, taken_at) DO NOTHING
+                """
+                .formatted(BALANCE_DELTA))
+        .param("takenAt", Timestamp.from(takenAt))
+        .param("fromId", fromId)
+        .param("toId", toId)
+        .update();
+  }
+
+  /**
+   * Balance at {@code at} from the latest snapshot taken at or before it plus the transactions
+   * dated in between, or empty when the customer has no such snapshot. Read-only, so a replica
+   * serves it when one is configured.
+   */
+  @Transactional(readOnly = true)
+  public Optional<BigDecimal> findBalanceFromSnapshot(Long customerId, Instant at) {
+    return jdbcClient
+        .sql(
+            """
+                SELECT s.balance + COALESCE((SELECT SUM(%s)
+                                             FROM transactions_with_archive t
+                                             WHERE t.customer_id = s.customer_id
+                                               AND t.transaction_date >= s.taken_at
+                                               AND t.transaction_date < :at), 0)
+                FROM (SELECT customer_id, taken_at, balance
+                      FROM balance_snapshots
+                      WHERE customer_id = :customerId
+                        AND taken_at <= :at
+                      ORDER BY taken_at DESC
+                      LIMIT 1) s
+                """
+                .formatted(BALANCE_DELTA))
+        .param("customerId", customerId)
+        .param("at", Timestamp.from(at))
+        .query(BigDecimal.class)
+        .optional();
+  }
+
+  /**
+   * Balance at {@code at} from the current balance minus the transactions dated at or after it;
+   * used when {@code at} precedes every snapshot of the customer. Read-only, like the above.
+   */
+  @Transactional(readOnly = true)
+  public Optional<BigDecimal> findBalanceFromCurrent(Long customerId, Instant at) {
+    return jdbcClient
+        .sql(
+            """
+                SELECT c.balance - COALESCE((SELECT SUM(%s)
+                                             FROM transactions_with_archive t
+                                             WHERE t.customer_id = c.id
+                                               AND t.transaction_date >= :at), 0)
+                FROM customers c
+                WHERE c.id = :customerId
+                """
+                .formatted(BALANCE_DELTA))
+        .param("customerId", customerId)
+        .param("at", Timestamp.from(at))
+        .query(BigDecimal.class)
+        .optional();
+  }
+}
@@ -1,8 +1,11 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
 
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AuditLog;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransactionException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
@@ -15,7 +18,45 @@ import org.springframework.stereotype.Repository;
 @RequiredArgsConstructor
 public class CustomerRepository {
   private final JdbcClient jdbcClient;
+  private final AuditLog auditLog;
 
+  /**
+   * Limits how long lock acquisitions of the current transaction may wait, after which PostgreSQL
+   * fails the statement with {@code lock_not_available}.
+   */
+  public void setLocalLockTimeout(Duration timeout) {
+    jdbcClient
+        .sql("SELECT set_config('lock_timeout', :timeout, true)")
+        .param("timeout", timeout.toMillis() + "ms")
+        .query(String.class)
+        .single();
+  }
+
+  /**
+   * Sets the lock timeout like {@link #setLocalLockTimeout} and turns the log triggers off for the
+   * current transaction in the same round trip, for transactions audited by {@link AuditLog}. A
+   * timeout that is not positive leaves the lock timeout as it is.
+   */
+  public void setLocalLockTimeoutSkippingAuditTriggers(Duration timeout) {
+    jdbcClient
+        .sql(
+            """
+                        SELECT set_config('lock_timeout',
+                                          CASE WHEN :timeoutMs > 0 THEN :timeoutMs || 'ms'
+                                               ELSE current_setting('lock_timeout') END,
+                                          true),
+                               set_config('audit.skip_triggers', 'on', true)
+                        """)
+        .param("timeoutMs", timeout.toMillis())
+        .query((rs, rowNum) -> rowNum)
+        .single();
+  }
+
+  /**
+   * Locking read reserved for the posting path; authentication and profile reads use the
+   * non-locking {@link #findByPhoneNumber} and {@link #findByUid} so they never queue behind an
+   * in-flight transfer of the same customer.
+   */
   public Optional<Customer> getCustomerByUidForUpdate(UUID accountUid) {
     return jdbcClient
         .sql(
@@ -41,7 +82,11 @@ public class CustomerRepository {
               .param("uid", customerUid)
               .update();
 
-      return updCount == 1;
+      if (updCount != 1) {
+        return false;
+      }
+      auditLog.customerUpdated(customerUid);
+      return true;
     } catch (Exception e) {
       log.error("Could not update customer balance.Customer uid {}.", customerUid, e);
       throw new TransactionException(
@@ -55,10 +100,31 @@ public class CustomerRepository {
             """
                         SELECT * FROM customers
                         WHERE phone_number = :phoneNumber
-                        FOR UPDATE
                         """)
         .param("phoneNumber", phoneNumber)
         .query(Customer.class)
         .optional();
   }
+
+  /** Next {@code limit} customer ids after {@code afterId}, for jobs that walk all customers. */
+  public List<Long> findIdsAfter(long afterId, int limit) {
+    return jdbcClient
+        .sql("SELECT id FROM customers WHERE id > :afterId ORDER BY id LIMIT :limit")
+        .param("afterId", afterId)
+        .param("limit", limit)
+        .query(Long.class)
+        .list();
+  }
+
+  public Optional<Customer> findByUid(UUID uid) {
+    return jdbcClient
+        .sql(
+            """
+                        SELECT * FROM customers
+                        WHERE uid = :uid
+                        """)
+        .param("uid", uid)
+        .query(Customer.class)
+        .optional();
+  }
 }
@@ -0,0 +1,40 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+  private final JdbcClient jdbcClient;
+
+  /**
+   * Locks the oldest {@code limit} events for publishing. Events locked by another relay are
+   * skipped instead of waited for, so relays on several instances drain disjoint batches.
+   */
+  public List<OutboxEvent> lockOldest(int limit) {
+    return jdbcClient
+        .sql(
+            """
+                SELECT id, transaction_uid, customer_id, type, amount, status, transaction_date,
+                       reference_uid
+                FROM transaction_outbox
+                ORDER BY id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+                """)
+        .param("limit", limit)
+        .query(OutboxEvent.class)
+        .list();
+  }
+
+  public int delete(List<Long> ids) {
+    return jdbcClient
+        .sql("DELETE FROM transaction_outbox WHERE id IN (:ids)")
+        .param("ids", ids)
+        .update();
+  }
+}
@@ -0,0 +1,41 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import java.time.YearMonth;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+  private final JdbcClient jdbcClient;
+
+  /**
+   * Creates the partition of {@code transactions} for the UTC month.
+   *
+   * @return false if the partition already existed
+   */
+  public boolean createTransactionsPartition(YearMonth month) {
+    return jdbcClient
+        .sql("SELECT create_transactions_partition(:month)")
+        .param("month", month.atDay(1))
+        .query(Boolean.class)
+        .single();
+  }
+
+  /** Whether the partition of {@code transactions} for the UTC month exists and is attached. */
+  public boolean hasTransactionsPartition(YearMonth month) {
+    String partition = "transactions_%04d_%02d".formatted(month.getYear(), month.getMonthValue());
+    return jdbcClient
+        .sql(
+            """
+                SELECT EXISTS (SELECT
+                               FROM pg_inherits
+                               WHERE inhparent = 'transactions'::REGCLASS
+                                 AND inhrelid = to_regclass(:partition))
+                """)
+        .param("partition", partition)
+        .query(Boolean.class)
+        .single();
+  }
+}
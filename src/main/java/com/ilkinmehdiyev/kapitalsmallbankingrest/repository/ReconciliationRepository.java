@@ -0,0 +1,69 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.BalanceDiscrepancy;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationRepository extends AbstractBaseRepository {
+  private final JdbcClient jdbcClient;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  /**
+   * Customers with ids in {@code [fromId, toId]} whose balance differs from the one implied by
+   * their transactions, archived ones included. Balance and transactions are compared in one
+   * statement, so a posting is either wholly in both or in neither; the comparison happens in the
+   * database and only mismatches are sent back.
+   */
+  public List<BalanceDiscrepancy> findDiscrepancies(
+      long fromId, long toId, BigDecimal openingBalance) {
+    return jdbcClient
+        .sql(
+            """
+                SELECT c.id AS customer_id,
+                       c.balance AS recorded_balance,
+                       :openingBalance + COALESCE(SUM(%s), 0) AS ledger_balance
+                FROM customers c
+                         LEFT JOIN transactions_with_archive t ON t.customer_id = c.id
+                WHERE c.id BETWEEN :fromId AND :toId
+                GROUP BY c.id, c.balance
+                HAVING c.balance <> :openingBalance + COALESCE(SUM(%1$s), 0)
+                """
+                .formatted(BALANCE_DELTA))
+        .param("openingBalance", openingBalance)
+        .param("fromId", fromId)
+        .param("toId", toId)
+        .query(BalanceDiscrepancy.class)
+        .list();
+  }
+
+  public void insertDiscrepancies(List<BalanceDiscrepancy> discrepancies, Instant detectedAt) {
+    SqlParameterSource[] batchParams =
+        discrepancies.stream()
+            .map(
+                discrepancy ->
+                    new MapSqlParameterSource()
+                        .addValue(CUSTOMER_ID, discrepancy.customerId())
+                        .addValue("recorded_balance", discrepancy.recordedBalance())
+                        .addValue("ledger_balance", discrepancy.ledgerBalance())
+                        .addValue("detected_at", Timestamp.from(detectedAt)))
+            .toArray(SqlParameterSource[]::new);
+
+    namedParameterJdbcTemplate.batchUpdate(
+        """
+            INSERT INTO balance_discrepancies
+                (customer_id, recorded_balance, ledger_balance, detected_at)
+            VALUES (:customer_id, :recorded_balance, :ledger_balance, :detected_at)
+            """,
+        batchParams);
+  }
+}
@@ -0,0 +1,41 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class StatementRepository {
+  private final JdbcClient jdbcClient;
+
+  /**
+   * Returns up to {@code limit} of the customer's transactions before {@code to} that come after
+   * the given position in {@code (transaction_date, id)} order, archived ones included. Passing the
+   * date and id of the last row of a page reads the next one.
+   */
+  public List<Transaction> findStatementPage(
+      Long customerId, Instant afterDate, long afterId, Instant to, int limit) {
+    return jdbcClient
+        .sql(
+            """
+                        SELECT * FROM transactions_with_archive
+                        WHERE customer_id = :customerId
+                          AND (transaction_date, id) > (:afterDate, :afterId)
+                          AND transaction_date < :to
+                        ORDER BY transaction_date, id
+                        LIMIT :limit
+                        """)
+        .param("customerId", customerId)
+        .param("afterDate", Timestamp.from(afterDate))
+        .param("afterId", afterId)
+        .param("to", Timestamp.from(to))
+        .param("limit", limit)
+        .query(Transaction.class)
+        .list();
+  }
+}
@@ -1,10 +1,14 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
 
-import static com.ilkinmehdiyev.kapitalsmallbankingrest.utils.RepositoryUtils.columnNamesFrom;
-import static com.ilkinmehdiyev.kapitalsmallbankingrest.utils.RepositoryUtils.columnValuesFrom;
-
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics.Stage;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ArchiveProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryCursor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.IdempotencyKeyConflictException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransactionException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
@@ -12,39 +16,163 @@ import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
 import jakarta.validation.constraints.NotNull;
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.Instant;
-import java.util.Map;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.JdbcClient;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class TransactionRepository extends AbstractBaseRepository {
+  private static final String TRANSACTIONS = "transactions";
+  private static final String TRANSACTIONS_ARCHIVE = "transactions_archive";
+  private static final String TRANSACTIONS_WITH_ARCHIVE = "transactions_with_archive";
+
+  /**
+   * Registers the uid in {@code transaction_keys}, which keeps uids unique across partitions, and
+   * inserts the transaction with the same date; nothing is inserted if the uid is taken.
+   */
+  private static final String CLAIM_TRANSACTION_SQL =
+      """
+          WITH transaction_key AS (
+              INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+              VALUES (:uid, :customer_id, COALESCE(:transaction_date, now()))
+              ON CONFLICT (uid) DO NOTHING
+              RETURNING uid, customer_id, transaction_date
+          )
+          INSERT INTO transactions
+              (uid, customer_id, type, amount, description, transaction_date, reference_uid, status)
+          SELECT uid, customer_id, :type, CAST(:amount AS DECIMAL), :description, transaction_date,
+                 CAST(:reference_uid AS UUID), :status
+          FROM transaction_key
+          RETURNING uid
+          """;
+  private static final String INSERT_CLAIMED_TRANSACTION_SQL =
+      """
+          INSERT INTO transactions
+              (uid, customer_id, type, amount, description, transaction_date, reference_uid, status)
+          SELECT uid, customer_id, :type, CAST(:amount AS DECIMAL), :description, transaction_date,
+                 CAST(:reference_uid AS UUID), :status
+          FROM transaction_keys
+          WHERE uid = :uid
+          """;
+  private static final String INSERT_OUTBOX_EVENT_SQL =
+      """
+          INSERT INTO transaction_outbox
+              (transaction_uid, customer_id, type, amount, status, transaction_date, reference_uid)
+          VALUES (:uid, :customer_id, :type, :amount, :status,
+                  COALESCE(:transaction_date, now()), :reference_uid)
+          """;
+
   private final JdbcClient jdbcClient;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
   private final CustomerRepository customerRepository;
+  private final TransactionMetrics transactionMetrics;
+  private final AuditLog auditLog;
+  private final ArchiveProperties archiveProperties;
+
+  /**
+   * Inserts the transaction unless its uid, the idempotency key, is already taken. A concurrent
+   * insert of the same uid makes this one wait for it to commit or roll back instead of failing on
+   * the unique constraint.
+   *
+   * @return the uid, or empty if another transaction holds it
+   */
+  public Optional<UUID> claimTransaction(Transaction transaction) {
+    Optional<UUID> claimedUid =
+        jdbcClient
+            .sql(CLAIM_TRANSACTION_SQL)
+            .paramSource(tnxSqlParameters(transaction))
+            .query(UUID.class)
+            .optional();
+    claimedUid.ifPresent(uid -> auditLog.transactionInserted(uid, transaction.status()));
+    return claimedUid;
+  }
 
-  public UUID insertTransaction(Transaction transaction) {
-    var params = tnxSqlParameters(transaction);
-    KeyHolder holder = new GeneratedKeyHolder();
+  /**
+   * Registers the uids in {@code transaction_keys} with one statement, skipping uids that are
+   * already taken; like {@link #claimTransaction}, a concurrent insert of the same uid makes this
+   * wait for it. Claimed uids get their transactions from {@link #insertClaimedTransactions} or are
+   * given back with {@link #releaseKeys}.
+   *
+   * @return the uids claimed by this call
+   */
+  public Set<UUID> claimKeys(Collection<UUID> uids, Long customerId, Instant transactionDate) {
+    if (uids.isEmpty()) {
+      return Set.of();
+    }
 
-    String formatted =
-        """
-            INSERT INTO transactions (%s) VALUES (%s) RETURNING uid, status, transaction_date
-            """
-            .formatted(columnNamesFrom(params), columnValuesFrom(params));
+    return new HashSet<>(
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+                    SELECT uid, :customerId, :transactionDate
+                    FROM unnest(CAST(ARRAY[:uids] AS UUID[])) AS uid
+                    ON CONFLICT (uid) DO NOTHING
+                    RETURNING uid
+                    """)
+            .param("uids", uids)
+            .param("customerId", customerId)
+            .param("transactionDate", Timestamp.from(transactionDate), Types.TIMESTAMP)
+            .query(UUID.class)
+            .list());
+  }
+
+  /**
+   * Inserts the transactions of uids claimed with {@link #claimKeys} with a single JDBC batch;
+   * each takes the date of its key.
+   */
+  public void insertClaimedTransactions(List<Transaction> transactions) {
+    SqlParameterSource[] batchParams =
+        transactions.stream()
+            .map(this::tnxSqlParameters)
+            .toArray(SqlParameterSource[]::new);
+
+    namedParameterJdbcTemplate.batchUpdate(INSERT_CLAIMED_TRANSACTION_SQL, batchParams);
+    transactions.forEach(
+        transaction -> auditLog.transactionInserted(transaction.uid(), transaction.status()));
+  }
+
+  /** Gives back claimed uids that got no transaction, so that they can be posted again. */
+  public void releaseKeys(Collection<UUID> uids) {
+    if (uids.isEmpty()) {
+      return;
+    }
+
+    jdbcClient
+        .sql("DELETE FROM transaction_keys WHERE uid IN (:uids)")
+        .param("uids", uids)
+        .update();
+  }
 
-    jdbcClient.sql(formatted).params(params).update(holder);
+  /**
+   * Adds the outbox events of posted transactions with a single JDBC batch. Called in the posting's
+   * own database transaction, so an event exists exactly when its posting committed.
+   */
+  public void insertOutboxEvents(List<Transaction> transactions) {
+    SqlParameterSource[] batchParams =
+        transactions.stream()
+            .map(this::tnxSqlParameters)
+            .toArray(SqlParameterSource[]::new);
 
-    Map<String, Object> keys = holder.getKeys();
-    return (UUID) Objects.requireNonNull(keys).get(UID);
+    namedParameterJdbcTemplate.batchUpdate(INSERT_OUTBOX_EVENT_SQL, batchParams);
   }
 
   public boolean updateTransactionStatusBy(UUID transactionUid, TransactionStatus status) {
@@ -52,13 +180,20 @@ public class TransactionRepository extends AbstractBaseRepository {
         jdbcClient
             .sql(
                 """
-                        UPDATE transactions SET status = :status WHERE uid = :uid
+                        UPDATE transactions SET status = :status
+                        WHERE uid = :uid
+                            AND transaction_date =
+                                (SELECT transaction_date FROM transaction_keys WHERE uid = :uid)
                         """)
             .param("status", status.toString())
             .param("uid", transactionUid)
             .update();
 
-    return updateCount == 1;
+    if (updateCount != 1) {
+      return false;
+    }
+    auditLog.transactionStatusUpdated(transactionUid, status);
+    return true;
   }
 
   public Optional<Transaction> findByUid(@NotNull UUID uid, UUID customerUid) {
@@ -66,9 +201,11 @@ public class TransactionRepository extends AbstractBaseRepository {
         .sql(
             """
                     SELECT *
-                    FROM transactions
+                    FROM transactions_with_archive
                     WHERE uid = :uid
                         AND customer_id = (SELECT id FROM customers WHERE uid = :customerUid)
+                        AND transaction_date =
+                            (SELECT transaction_date FROM transaction_keys WHERE uid = :uid)
                     """)
         .param("uid", uid)
         .param("customerUid", customerUid)
@@ -76,32 +213,131 @@ public class TransactionRepository extends AbstractBaseRepository {
         .optional();
   }
 
-  public BigDecimal getTotalRefundedAmountBy(UUID referenceUid, UUID customerUid) {
+  public List<Transaction> findAllByUids(Collection<UUID> uids, Long customerId) {
+    if (uids.isEmpty()) {
+      return List.of();
+    }
+
     return jdbcClient
         .sql(
             """
-                SELECT COALESCE(SUM(amount), 0)
-                FROM transactions
-                WHERE reference_uid = :referenceId
-                  AND type = 'PARTIAL_REFUND'
-                  AND status IN ('COMPLETED', 'REFUNDED', 'PENDING')
-                  AND customer_id = (SELECT id FROM customers WHERE uid = :customerUid)
-            """)
-        .param("referenceId", referenceUid)
-        .param("customerUid", customerUid)
-        .query(BigDecimal.class)
-        .optional()
-        .orElse(BigDecimal.ZERO);
+                    SELECT t.*
+                    FROM transaction_keys k
+                        JOIN transactions_with_archive t
+                            ON t.uid = k.uid AND t.transaction_date = k.transaction_date
+                    WHERE k.uid IN (:uids)
+                        AND t.customer_id = :customerId
+                    """)
+        .param("uids", uids)
+        .param("customerId", customerId)
+        .query(Transaction.class)
+        .list();
+  }
+
+  /**
+   * Reads one page of the customer's transactions, newest first, using keyset pagination: the page
+   * starts right after {@code after} in {@code (transaction_date, id)} order, so it is an index
+   * range scan on {@code idx_transactions_customer_history} however deep the page is. A date filter
+   * also limits the scan to the monthly partitions it covers. Only the predicates of the filters in
+   * use are added, which keeps the number of distinct statements small. A range starting past the
+   * retention reads the hot table only; any other range also reads the archive. Read-only, so a
+   * replica serves it when one is configured.
+   */
+  @Transactional(readOnly = true)
+  public List<Transaction> findHistory(
+      Long customerId,
+      TransactionHistoryFilter filter,
+      @Nullable TransactionHistoryCursor after,
+      int limit) {
+    Instant retentionCutoff = Instant.now().minus(archiveProperties.getRetention());
+    String table =
+        Objects.nonNull(filter.from()) && !filter.from().isBefore(retentionCutoff)
+            ? TRANSACTIONS
+            : TRANSACTIONS_WITH_ARCHIVE;
+    StringBuilder sql =
+        new StringBuilder("SELECT * FROM " + table + " WHERE customer_id = :customerId");
+    var params = new MapSqlParameterSource("customerId", customerId).addValue("limit", limit);
+
+    if (Objects.nonNull(filter.type())) {
+      sql.append(" AND type = :type");
+      params.addValue("type", filter.type().toString());
+    }
+    if (Objects.nonNull(filter.status())) {
+      sql.append(" AND status = :status");
+      params.addValue("status", filter.status().toString());
+    }
+    if (Objects.nonNull(filter.from())) {
+      sql.append(" AND transaction_date >= :from");
+      params.addValue("from", Timestamp.from(filter.from()), Types.TIMESTAMP);
+    }
+    if (Objects.nonNull(filter.to())) {
+      sql.append(" AND transaction_date < :to");
+      params.addValue("to", Timestamp.from(filter.to()), Types.TIMESTAMP);
+    }
+    if (Objects.nonNull(after)) {
+      sql.append(" AND (transaction_date, id) < (:afterDate, :afterId)");
+      params
+          .addValue("afterDate", Timestamp.from(after.transactionDate()), Types.TIMESTAMP)
+          .addValue("afterId", after.id());
+    }
+    sql.append(" ORDER BY transaction_date DESC, id DESC LIMIT :limit");
+
+    return jdbcClient
+        .sql(sql.toString())
+        .paramSource(params)
+        .query(Transaction.class)
+        .list();
+  }
+
+  /**
+   * Locks the transaction for a refund. Purchases past the retention are looked up in the archive,
+   * which only costs a second query when the transaction is not in the hot table.
+   */
+  public Optional<Transaction> findByUidForUpdate(@NotNull UUID uid, Long customerId) {
+    return findByUidForUpdate(TRANSACTIONS, uid, customerId)
+        .or(() -> findByUidForUpdate(TRANSACTIONS_ARCHIVE, uid, customerId));
+  }
+
+  /** Adds a refund to the purchase's refunded amount, in the archive if it is archived. */
+  public boolean incrementRefundedAmount(UUID purchaseUid, Long customerId, BigDecimal amount) {
+    return incrementRefundedAmount(TRANSACTIONS, purchaseUid, customerId, amount)
+        || incrementRefundedAmount(TRANSACTIONS_ARCHIVE, purchaseUid, customerId, amount);
   }
 
   public TransactionResponse processTransactionByCustomerId(
       Long customerId, TransactionRequest transactionRequest, UUID idempotencyKey) {
-    BigDecimal amount = getTransactionAmount(transactionRequest);
+    TransactionType type = transactionRequest.transactionType();
+    BigDecimal amount = transactionRequest.balanceDelta();
     UUID customerUid = ThreadLocalStorage.getSessionUser().uid();
     var tnx = getTransaction(customerId, transactionRequest, idempotencyKey);
-    var tnxUid = insertTransaction(tnx);
+    Optional<UUID> claimedUid =
+        transactionMetrics.recordStage(Stage.INSERT, type, () -> claimTransaction(tnx));
+    if (claimedUid.isEmpty()) {
+      log.warn("Transaction with x-idempotency [{}] already exists", idempotencyKey);
+      return findPostedResponse(idempotencyKey, customerUid, type);
+    }
+    UUID tnxUid = claimedUid.get();
 
-    boolean balanceUpdated = customerRepository.updateCustomerBalance(customerUid, amount);
+    if (Objects.equals(type, TransactionType.PARTIAL_REFUND)
+        && !transactionMetrics.recordStage(
+            Stage.REFUNDED_AMOUNT_UPDATE,
+            type,
+            () ->
+                incrementRefundedAmount(
+                    transactionRequest.referenceUid(), customerId, transactionRequest.amount()))) {
+      log.error(
+          "Refund would exceed refundable amount of Transaction: [{}]",
+          transactionRequest.referenceUid());
+      throw new TransactionException(
+          "Refund would exceed refundable amount of Transaction: [%s]"
+              .formatted(transactionRequest.referenceUid()));
+    }
+
+    boolean balanceUpdated =
+        transactionMetrics.recordStage(
+            Stage.BALANCE_UPDATE,
+            type,
+            () -> customerRepository.updateCustomerBalance(customerUid, amount));
     if (!balanceUpdated) {
       updateTransactionStatusBy(tnxUid, TransactionStatus.FAILED);
       log.error(
@@ -111,26 +347,174 @@ public class TransactionRepository extends AbstractBaseRepository {
       throw new TransactionException("Could not update Transaction: [%s]".formatted(tnxUid));
     }
 
-    var newTnxStatus =
-        Objects.equals(transactionRequest.transactionType(), TransactionType.PARTIAL_REFUND)
-            ? TransactionStatus.REFUNDED
-            : TransactionStatus.COMPLETED;
+    var newTnxStatus = transactionRequest.completedStatus();
 
-    boolean tnxUpdated = updateTransactionStatusBy(tnxUid, newTnxStatus);
+    boolean tnxUpdated =
+        transactionMetrics.recordStage(
+            Stage.STATUS_UPDATE, type, () -> updateTransactionStatusBy(tnxUid, newTnxStatus));
     if (!tnxUpdated) {
       log.error("Could not update Transaction: [{}]", tnxUid);
       throw new TransactionException("Could not update Transaction: [%s]".formatted(tnxUid));
     }
+    transactionMetrics.recordStage(
+        Stage.OUTBOX,
+        type,
+        () -> insertOutboxEvents(List.of(tnx.toBuilder().status(newTnxStatus).build())));
 
     return new TransactionResponse(tnxUid, newTnxStatus, tnx.transactionDate());
   }
 
-  private static BigDecimal getTransactionAmount(TransactionRequest transactionRequest) {
-    if (TransactionType.PURCHASE.equals(transactionRequest.transactionType())) {
-      return transactionRequest.amount().negate();
-    } else {
-      return transactionRequest.amount();
-    }
+  /**
+   * Posts a TOP_UP or PURCHASE in one round trip: the customer row is locked, the balance is
+   * checked, the transaction is inserted directly in its final status, the balance is updated and
+   * the outbox event is added by a single data-modifying statement. An empty result means the
+   * customer does not exist; a result without a response means that nothing was written, because
+   * either the balance check failed or the idempotency key is already taken.
+   */
+  public Optional<PostingResult> postTransaction(
+      UUID customerUid, TransactionRequest transactionRequest, UUID idempotencyKey) {
+    TransactionType type = transactionRequest.transactionType();
+    BigDecimal requiredBalance =
+        TransactionType.TOP_UP.equals(type) ? BigDecimal.ZERO : transactionRequest.amount();
+
+    Optional<PostingResult> result =
+        jdbcClient
+            .sql(
+                """
+                WITH customer AS (
+                    SELECT id, balance FROM customers WHERE uid = :customerUid FOR UPDATE
+                ),
+                transaction_key AS (
+                    INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+                    SELECT CAST(:uid AS UUID), customer.id, CAST(:transactionDate AS TIMESTAMPTZ)
+                    FROM customer
+                    WHERE customer.balance >= :requiredBalance
+                    ON CONFLICT (uid) DO NOTHING
+                    RETURNING uid, customer_id, transaction_date
+                ),
+                inserted AS (
+                    INSERT INTO transactions
+                        (uid, customer_id, type, amount, description, transaction_date, reference_uid, status)
+                    SELECT uid,
+                           customer_id,
+                           :type,
+                           CAST(:amount AS DECIMAL),
+                           :description,
+                           transaction_date,
+                           CAST(:referenceUid AS UUID),
+                           :status
+                    FROM transaction_key
+                    RETURNING customer_id, uid, type, amount, status, transaction_date, reference_uid
+                ),
+                outbox AS (
+                    INSERT INTO transaction_outbox
+                        (transaction_uid, customer_id, type, amount, status, transaction_date, reference_uid)
+                    SELECT uid, customer_id, type, amount, status, transaction_date, reference_uid
+                    FROM inserted
+                ),
+                updated AS (
+                    UPDATE customers SET balance = customers.balance + :balanceDelta
+                    FROM inserted
+                    WHERE customers.id = inserted.customer_id
+                )
+                SELECT customer.balance, inserted.uid, inserted.status, inserted.transaction_date
+                FROM customer LEFT JOIN inserted ON true
+                """)
+            .param("customerUid", customerUid)
+            .param("uid", idempotencyKey)
+            .param("type", type.toString())
+            .param("amount", transactionRequest.amount())
+            .param("description", type.toString())
+            .param("transactionDate", Timestamp.from(Instant.now()))
+            .param("referenceUid", transactionRequest.referenceUid())
+            .param("status", TransactionStatus.COMPLETED.toString())
+            .param("requiredBalance", requiredBalance)
+            .param("balanceDelta", transactionRequest.balanceDelta())
+            .query(
+                (rs, rowNum) -> {
+                  UUID uid = rs.getObject(UID, UUID.class);
+                  TransactionResponse response =
+                      Objects.isNull(uid)
+                          ? null
+                          : new TransactionResponse(
+                              uid,
+                              TransactionStatus.valueOf(rs.getString(TRANSACTION_STATUS)),
+                              rs.getTimestamp(TRANSACTION_DATE).toInstant());
+                  return new PostingResult(rs.getBigDecimal("balance"), response);
+                })
+            .optional();
+
+    result
+        .map(PostingResult::response)
+        .ifPresent(
+            response -> {
+              auditLog.transactionInserted(response.transactionUid(), response.status());
+              auditLog.customerUpdated(customerUid);
+            });
+    return result;
+  }
+
+  /**
+   * Answers a request whose idempotency key was already posted with the stored transaction. A key
+   * taken by another customer cannot be replayed and is reported as a conflict.
+   */
+  public TransactionResponse findPostedResponse(
+      UUID idempotencyKey, UUID customerUid, TransactionType type) {
+    return transactionMetrics
+        .recordStage(Stage.IDEMPOTENCY_LOOKUP, type, () -> findByUid(idempotencyKey, customerUid))
+        .map(
+            transaction ->
+                new TransactionResponse(
+                    transaction.uid(), transaction.status(), transaction.transactionDate()))
+        .orElseThrow(
+            () -> {
+              log.error("Idempotency key [{}] is used by another customer", idempotencyKey);
+              return new IdempotencyKeyConflictException(
+                  "Idempotency key [%s] is already used".formatted(idempotencyKey));
+            });
+  }
+
+  private Optional<Transaction> findByUidForUpdate(String table, UUID uid, Long customerId) {
+    return jdbcClient
+        .sql(
+            """
+                    SELECT *
+                    FROM %s
+                    WHERE uid = :uid
+                        AND customer_id = :customerId
+                        AND transaction_date =
+                            (SELECT transaction_date FROM transaction_keys WHERE uid = :uid)
+                    FOR UPDATE
+                    """
+                .formatted(table))
+        .param("uid", uid)
+        .param("customerId", customerId)
+        .query(Transaction.class)
+        .optional();
+  }
+
+  private boolean incrementRefundedAmount(
+      String table, UUID purchaseUid, Long customerId, BigDecimal amount) {
+    int updateCount =
+        jdbcClient
+            .sql(
+                """
+                        UPDATE %s
+                        SET refunded_amount = refunded_amount + :amount
+                        WHERE uid = :uid
+                            AND customer_id = :customerId
+                            AND type = 'PURCHASE'
+                            AND refunded_amount + :amount <= amount
+                            AND transaction_date =
+                                (SELECT transaction_date FROM transaction_keys WHERE uid = :uid)
+                        """
+                    .formatted(table))
+            .param("amount", amount)
+            .param("uid", purchaseUid)
+            .param("customerId", customerId)
+            .update();
+
+    return updateCount == 1;
   }
 
   private static Transaction getTransaction(
@@ -146,4 +530,6 @@ public class TransactionRepository extends AbstractBaseRepository {
         TransactionStatus.PENDING,
         request.referenceUid());
   }
+
+  public record PostingResult(BigDecimal balance, TransactionResponse response) {}
 }
@@ -5,13 +5,17 @@ import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
 import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
 import java.util.Objects;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -23,10 +27,29 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationRequestFilter extends OncePerRequestFilter {
+  public static final String AUTHENTICATION_TIMER = "security.jwt.authentication";
+
   private final JwtService jwtService;
   private final UserDetailsService userDetailsService;
+  private final TokenRevocationService tokenRevocationService;
+  private final MeterRegistry meterRegistry;
+  private final Meter.MeterProvider<Timer> authenticationTimers;
+
+  public JwtAuthenticationRequestFilter(
+      JwtService jwtService,
+      UserDetailsService userDetailsService,
+      TokenRevocationService tokenRevocationService,
+      MeterRegistry meterRegistry) {
+    this.jwtService = jwtService;
+    this.userDetailsService = userDetailsService;
+    this.tokenRevocationService = tokenRevocationService;
+    this.meterRegistry = meterRegistry;
+    this.authenticationTimers =
+        Timer.builder(AUTHENTICATION_TIMER)
+            .description("Time to authenticate a request from its bearer token")
+            .withRegistry(meterRegistry);
+  }
 
   @Override
   protected void doFilterInternal(
@@ -35,7 +58,7 @@ public class JwtAuthenticationRequestFilter extends OncePerRequestFilter {
       @NonNull FilterChain filterChain)
       throws ServletException, IOException {
 
-    Authentication authentication = getAuthentication(request);
+    Authentication authentication = timedAuthentication(request);
 
     if (Objects.isNull(authentication)) {
       filterChain.doFilter(request, response);
@@ -48,6 +71,18 @@ public class JwtAuthenticationRequestFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  private Authentication timedAuthentication(HttpServletRequest request) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "error";
+    try {
+      Authentication authentication = getAuthentication(request);
+      outcome = Objects.isNull(authentication) ? "unauthenticated" : "authenticated";
+      return authentication;
+    } finally {
+      sample.stop(authenticationTimers.withTag("outcome", outcome));
+    }
+  }
+
   private Authentication getAuthentication(HttpServletRequest request) {
     final String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
 
@@ -62,13 +97,25 @@ public class JwtAuthenticationRequestFilter extends OncePerRequestFilter {
       return null;
     }
 
-    String userName = claims.getSubject();
+    SessionUser sessionUser =
+        jwtService
+            .extractSessionUser(claims)
+            .orElseGet(() -> loadSessionUser(claims.getSubject()));
+
+    Instant issuedAt = jwtService.extractIssuedAt(claims).orElse(null);
+    if (tokenRevocationService.isRevoked(sessionUser.uid(), issuedAt)) {
+      log.warn("Revoked token used for customer: {}", sessionUser.uid());
+      return null;
+    }
+
+    ThreadLocalStorage.setSessionUser(sessionUser);
+
+    return new UsernamePasswordAuthenticationToken(sessionUser.phoneNumber(), null, List.of());
+  }
+
+  private SessionUser loadSessionUser(String userName) {
     var userDetails =
         (CustomerServiceImpl.CustomUserDetails) userDetailsService.loadUserByUsername(userName);
-    ThreadLocalStorage.setSessionUser(
-        new SessionUser(userDetails.id(), userDetails.uid(), userDetails.getUsername()));
-
-    return new UsernamePasswordAuthenticationToken(
-        userDetails.getUsername(), userDetails.getPassword(), userDetails.getAuthorities());
+    return new SessionUser(userDetails.id(), userDetails.uid(), userDetails.getUsername());
   }
 }
@@ -1,18 +1,21 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.security;
 
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 import javax.crypto.SecretKey;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -20,19 +23,25 @@ import org.springframework.stereotype.Service;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class JwtService {
+  public static final String CUSTOMER_ID_CLAIM = "id";
+  public static final String CUSTOMER_UID_CLAIM = "uid";
+  // iat has whole seconds, too coarse to tell a token from a revocation in the same second.
+  public static final String ISSUED_AT_MILLIS_CLAIM = "iatMillis";
 
   private final SecurityProperties securityProperties;
+  private final SecretKey signInKey;
+  private final JwtParser jwtParser;
+
+  public JwtService(SecurityProperties securityProperties) {
+    this.securityProperties = securityProperties;
+    this.signInKey = getSignInKey(securityProperties.getJwtProperties().secretKey());
+    this.jwtParser = Jwts.parser().verifyWith(signInKey).clockSkewSeconds(5).build();
+  }
 
   public Claims parseToken(String token) {
     try {
-      return Jwts.parser()
-          .verifyWith(getSignInKey(securityProperties.getJwtProperties().secretKey()))
-          .clockSkewSeconds(5)
-          .build()
-          .parseSignedClaims(token)
-          .getPayload();
+      return jwtParser.parseSignedClaims(token).getPayload();
     } catch (ExpiredJwtException e) {
       log.error("JWT token expired", e);
       throw new JwtException("JWT token expired");
@@ -50,62 +59,90 @@ public class JwtService {
     return claimsResolver.apply(claims);
   }
 
+  /**
+   * Builds the session user from the verified claims alone. Empty for tokens issued before the
+   * customer id and uid claims were added.
+   */
+  public Optional<SessionUser> extractSessionUser(Claims claims) {
+    Number customerId = claims.get(CUSTOMER_ID_CLAIM, Number.class);
+    String customerUid = claims.get(CUSTOMER_UID_CLAIM, String.class);
+    if (Objects.isNull(customerId) || Objects.isNull(customerUid)) {
+      return Optional.empty();
+    }
+
+    return Optional.of(
+        new SessionUser(
+            customerId.longValue(), UUID.fromString(customerUid), claims.getSubject()));
+  }
+
+  /** When the token was issued, to the millisecond for tokens that carry it. */
+  public Optional<Instant> extractIssuedAt(Claims claims) {
+    Number issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM, Number.class);
+    if (Objects.nonNull(issuedAtMillis)) {
+      return Optional.of(Instant.ofEpochMilli(issuedAtMillis.longValue()));
+    }
+    return Optional.ofNullable(claims.getIssuedAt()).map(Date::toInstant);
+  }
+
   public boolean validateToken(String jwtToken, String username) {
-    final String email = extractEmail(jwtToken);
-    return email.equals(username) && !isTokenExpired(jwtToken);
+    return validateToken(parseToken(jwtToken), username);
   }
 
-  private boolean isTokenExpired(String jwtToken) {
-    return extractExpiration(jwtToken).before(new Date());
+  public boolean validateToken(Claims claims, String username) {
+    return claims.getSubject().equals(username) && !isTokenExpired(claims);
   }
 
-  private Date extractExpiration(String jwtToken) {
-    return extractClaim(jwtToken, Claims::getExpiration);
+  private boolean isTokenExpired(Claims claims) {
+    return claims.getExpiration().before(new Date());
   }
 
   public <U extends UserDetails> String generateAccessToken(U user) {
-    return generateToken(user, securityProperties.getJwtProperties().tokenValidityInSeconds());
+    return generateToken(user, securityProperties.getJwtProperties().tokenValidity());
   }
 
   public <U extends UserDetails> String generateRefreshToken(U user) {
     return generateToken(
-        user, securityProperties.getJwtProperties().tokenValidityInSecondsForRememberMe());
+        user, securityProperties.getJwtProperties().tokenValidityForRememberMe());
   }
 
-  public <U extends UserDetails> String generateToken(U user, long expirationMs) {
-
-    Duration duration = Duration.of(expirationMs, ChronoUnit.MILLIS);
+  public <U extends UserDetails> String generateToken(U user, Duration validity) {
+    Instant issuedAt = Instant.now();
     JwtBuilder jwtBuilder =
         Jwts.builder()
             .subject(user.getUsername())
-            .issuedAt(new Date())
-            .expiration(Date.from(Instant.now().plus(duration)))
+            .issuedAt(Date.from(issuedAt))
+            .claim(ISSUED_AT_MILLIS_CLAIM, issuedAt.toEpochMilli())
+            .expiration(Date.from(issuedAt.plus(validity)))
             .header()
             .add(Map.of("type", "JWT"))
             .and()
-            .signWith(getSignInKey(securityProperties.getJwtProperties().secretKey()));
+            .signWith(signInKey);
 
     addClaims(user, jwtBuilder);
     return jwtBuilder.compact();
   }
 
   private <U extends UserDetails> void addClaims(U user, JwtBuilder jwtBuilder) {
-    Map<String, String> claimsMap = new HashMap<>();
+    Map<String, Object> claimsMap = new HashMap<>();
 
     addAuthoritiesClaims(claimsMap, user.getAuthorities());
     claimsMap.put("username", user.getUsername());
+    if (user instanceof CustomerServiceImpl.CustomUserDetails customer) {
+      claimsMap.put(CUSTOMER_ID_CLAIM, customer.id());
+      claimsMap.put(CUSTOMER_UID_CLAIM, customer.uid().toString());
+    }
 
     jwtBuilder.claims().add(claimsMap);
   }
 
   private void addAuthoritiesClaims(
-      Map<String, String> claimsMap, Collection<? extends GrantedAuthority> userAuthorities) {
+      Map<String, Object> claimsMap, Collection<? extends GrantedAuthority> userAuthorities) {
     userAuthorities.stream()
         .map(GrantedAuthority::getAuthority)
         .forEach(auth -> claimsMap.put("authority", auth));
   }
 
-  private SecretKey getSignInKey(String secret) {
+  private static SecretKey getSignInKey(String secret) {
     byte[] keyBytes = Decoders.BASE64.decode(secret);
     return Keys.hmacShaKeyFor(keyBytes);
   }
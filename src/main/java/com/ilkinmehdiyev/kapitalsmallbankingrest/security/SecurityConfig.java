@@ -8,23 +8,33 @@ import static com.ilkinmehdiyev.kapitalsmallbankingrest.common.HttpHeaders.X_IDE
 import static org.springframework.security.config.Customizer.withDefaults;
 
 import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.StringUtils;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -37,18 +47,50 @@ public class SecurityConfig {
   private final CustomerServiceImpl customerService;
   private final PasswordEncoder passwordEncoder;
   private final JwtService jwtService;
+  private final TokenRevocationService tokenRevocationService;
+  private final MeterRegistry meterRegistry;
+  private final ManagementServerProperties managementServerProperties;
+  private final SecurityProperties securityProperties;
+  private static final String MANAGEMENT_ROLE = "MANAGEMENT";
+
   private final String[] permittedUrls = {"/api/v1/auth/**"};
 
   private final List<String> allowedOrigins = List.of("http://localhost:3000");
 
+  // Actuator endpoints are served only on management.server.port. Health and metrics stay open to
+  // the scraper; the others end customer sessions or name customers, so they need the operator.
+  @Bean
+  @Order(1)
+  public SecurityFilterChain managementSecurity(HttpSecurity http) throws Exception {
+    http.securityMatcher(managementPortRequests())
+        .csrf(AbstractHttpConfigurer::disable)
+        .sessionManagement(
+            session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+        .authorizeHttpRequests(
+            auth ->
+                auth.requestMatchers(EndpointRequest.to("health", "prometheus"))
+                    .permitAll()
+                    .anyRequest()
+                    .hasRole(MANAGEMENT_ROLE))
+        .httpBasic(withDefaults())
+        .authenticationManager(managementAuthenticationManager());
+
+    return http.build();
+  }
+
   @Bean
+  @Order(2)
   public SecurityFilterChain configure(HttpSecurity http) throws Exception {
     http.csrf(AbstractHttpConfigurer::disable)
         .cors(withDefaults())
         .sessionManagement(
             session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
         .authorizeHttpRequests(
-            auth -> auth.requestMatchers(permittedUrls).permitAll().anyRequest().authenticated())
+            auth ->
+                auth.requestMatchers(permittedUrls)
+                    .permitAll()
+                    .anyRequest()
+                    .authenticated())
         .logout(AbstractHttpConfigurer::disable)
         .formLogin(AbstractHttpConfigurer::disable)
         .addFilterBefore(
@@ -57,6 +99,27 @@ public class SecurityConfig {
     return http.build();
   }
 
+  private RequestMatcher managementPortRequests() {
+    Integer managementPort = managementServerProperties.getPort();
+    return request -> Objects.nonNull(managementPort) && request.getLocalPort() == managementPort;
+  }
+
+  private AuthenticationManager managementAuthenticationManager() {
+    var management = securityProperties.getManagement();
+    var operators = new InMemoryUserDetailsManager();
+    if (StringUtils.hasText(management.password())) {
+      operators.createUser(
+          User.withUsername(management.username())
+              .password(passwordEncoder.encode(management.password()))
+              .roles(MANAGEMENT_ROLE)
+              .build());
+    }
+    var authenticationProvider = new DaoAuthenticationProvider();
+    authenticationProvider.setUserDetailsService(operators);
+    authenticationProvider.setPasswordEncoder(passwordEncoder);
+    return new ProviderManager(authenticationProvider);
+  }
+
   @Bean
   public UserDetailsService userDetailsService() {
     return customerService;
@@ -72,7 +135,8 @@ public class SecurityConfig {
 
   @Bean
   public JwtAuthenticationRequestFilter jwtAuthenticationRequestFilter() {
-    return new JwtAuthenticationRequestFilter(jwtService, userDetailsService());
+    return new JwtAuthenticationRequestFilter(
+        jwtService, userDetailsService(), tokenRevocationService, meterRegistry);
   }
 
   @Bean
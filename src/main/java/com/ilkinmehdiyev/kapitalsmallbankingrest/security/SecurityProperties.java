@@ -1,5 +1,6 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.security;
 
+import java.time.Duration;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -9,13 +10,24 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "security")
 public class SecurityProperties {
   private final JwtProperties jwtProperties;
+  private final TokenRevocation tokenRevocation;
+  private final Management management;
 
   public record JwtProperties(
       String secretKey,
-      long tokenValidityInSeconds,
-      long tokenValidityInSecondsForRememberMe,
+      Duration tokenValidity,
+      Duration tokenValidityForRememberMe,
       RefreshToken refreshToken) {
 
     public record RefreshToken(long expiration) {}
   }
+
+  public record TokenRevocation(boolean enabled, int maxEntries) {}
+
+  /**
+   * @param username operator allowed to call the actuator endpoints other than health and
+   *     prometheus
+   * @param password password of that operator; when blank, those endpoints cannot be called
+   */
+  public record Management(String username, String password) {}
 }
@@ -0,0 +1,83 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.security;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory deny list consulted by {@link JwtAuthenticationRequestFilter} instead of loading the
+ * customer on every request. A revocation rejects every token of the customer issued up to it,
+ * compared to the millisecond through {@link JwtService#ISSUED_AT_MILLIS_CLAIM}, so a token issued
+ * right after the revocation is accepted.
+ *
+ * <p>Entries are dropped once every token they could reject has expired. If the list still
+ * reaches {@code maxEntries}, it is collapsed into a global cut-off so that memory stays bounded
+ * without un-revoking anything: all tokens issued up to the newest revocation are rejected.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+  private final boolean enabled;
+  private final int maxEntries;
+  private final Duration retention;
+  private final Map<UUID, Instant> revokedBefore = new ConcurrentHashMap<>();
+  private volatile Instant globallyRevokedBefore = Instant.EPOCH;
+
+  public TokenRevocationService(SecurityProperties securityProperties) {
+    var jwtProperties = securityProperties.getJwtProperties();
+    this.enabled = securityProperties.getTokenRevocation().enabled();
+    this.maxEntries = securityProperties.getTokenRevocation().maxEntries();
+    // No entry is dropped before the longest-lived token it could reject has expired.
+    Duration tokenValidity = jwtProperties.tokenValidity();
+    Duration rememberMeValidity = jwtProperties.tokenValidityForRememberMe();
+    this.retention =
+        tokenValidity.compareTo(rememberMeValidity) >= 0 ? tokenValidity : rememberMeValidity;
+  }
+
+  public boolean isRevoked(UUID customerUid, Instant issuedAt) {
+    if (!enabled) {
+      return false;
+    }
+
+    if (Objects.isNull(issuedAt) || !issuedAt.isAfter(globallyRevokedBefore)) {
+      return true;
+    }
+
+    Instant customerRevokedBefore = revokedBefore.get(customerUid);
+    return Objects.nonNull(customerRevokedBefore) && !issuedAt.isAfter(customerRevokedBefore);
+  }
+
+  public synchronized void revokeTokensIssuedBefore(UUID customerUid, Instant instant) {
+    if (!enabled) {
+      return;
+    }
+
+    revokedBefore.merge(
+        customerUid, instant, (current, next) -> next.isAfter(current) ? next : current);
+    if (revokedBefore.size() > maxEntries) {
+      compact();
+    }
+  }
+
+  private void compact() {
+    Instant expiredBefore = Instant.now().minus(retention);
+    revokedBefore.values().removeIf(instant -> instant.isBefore(expiredBefore));
+    if (revokedBefore.size() <= maxEntries) {
+      return;
+    }
+
+    Instant cutOff =
+        revokedBefore.values().stream().max(Instant::compareTo).orElse(globallyRevokedBefore);
+    log.warn(
+        "Token revocation list exceeded {} entries, revoking all tokens issued before {}",
+        maxEntries,
+        cutOff);
+    globallyRevokedBefore = cutOff;
+    revokedBefore.clear();
+  }
+}
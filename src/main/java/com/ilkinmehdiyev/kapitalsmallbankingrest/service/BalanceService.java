@@ -0,0 +1,69 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BalanceResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerNotFoundException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.BalanceSnapshotRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceService {
+  private final CustomerRepository customerRepository;
+  private final BalanceSnapshotRepository balanceSnapshotRepository;
+
+  /**
+   * Current balance, or the balance right before {@code at}. Past balances start from the latest
+   * snapshot at or before {@code at}, so at most the transactions since that snapshot are summed;
+   * before the first snapshot the current balance is taken back instead.
+   */
+  public BalanceResponse getBalance(Instant at) {
+    SessionUser sessionUser = ThreadLocalStorage.getSessionUser();
+    if (Objects.isNull(sessionUser)) {
+      log.error("Session user is not set");
+      throw new CustomerNotFoundException("Session user is not found.");
+    }
+    Instant now = Instant.now();
+    if (Objects.nonNull(at) && at.isAfter(now)) {
+      log.error("Balance requested at future instant [{}]", at);
+      throw new TransferRequestException("Balance is not known at [%s] yet".formatted(at));
+    }
+
+    BalanceResponse response =
+        Objects.isNull(at)
+            ? new BalanceResponse(currentBalance(sessionUser), now)
+            : new BalanceResponse(balanceAt(sessionUser.userId(), at), at);
+    ThreadLocalStorage.clear();
+    return response;
+  }
+
+  private BigDecimal currentBalance(SessionUser sessionUser) {
+    return customerRepository
+        .findByUid(sessionUser.uid())
+        .map(Customer::balance)
+        .orElseThrow(() -> customerNotFound(sessionUser.uid()));
+  }
+
+  private BigDecimal balanceAt(Long customerId, Instant at) {
+    return balanceSnapshotRepository
+        .findBalanceFromSnapshot(customerId, at)
+        .or(() -> balanceSnapshotRepository.findBalanceFromCurrent(customerId, at))
+        .orElseThrow(() -> customerNotFound(customerId));
+  }
+
+  private static CustomerNotFoundException customerNotFound(Object customerId) {
+    log.error("Customer with id {} not found", customerId);
+    return new CustomerNotFoundException(
+        "Customer with id: [%s] not found".formatted(customerId));
+  }
+}
@@ -0,0 +1,54 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.BalanceProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.BalanceSnapshotRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes a balance snapshot of every customer at each UTC midnight. A day is snapshotted once its
+ * grace period has passed; earlier runs of the day, and runs on other instances, find the
+ * snapshots already there and write nothing.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BalanceSnapshotJob {
+  private final CustomerRepository customerRepository;
+  private final BalanceSnapshotRepository balanceSnapshotRepository;
+  private final BalanceProperties balanceProperties;
+
+  @Scheduled(cron = "${balance.snapshot.cron}", zone = "UTC")
+  public void takeSnapshotsIfEnabled() {
+    var snapshot = balanceProperties.getSnapshot();
+    if (snapshot.enabled()) {
+      takeSnapshots(Instant.now().minus(snapshot.grace()).truncatedTo(ChronoUnit.DAYS));
+    }
+  }
+
+  /** Snapshots all customers at {@code takenAt}, one chunk of customers per statement. */
+  public int takeSnapshots(Instant takenAt) {
+    int chunkSize = balanceProperties.getSnapshot().chunkSize();
+    int written = 0;
+    long afterId = 0;
+    List<Long> customerIds;
+    do {
+      customerIds = customerRepository.findIdsAfter(afterId, chunkSize);
+      if (customerIds.isEmpty()) {
+        break;
+      }
+      long lastId = customerIds.getLast();
+      written += balanceSnapshotRepository.insertSnapshots(takenAt, customerIds.getFirst(), lastId);
+      afterId = lastId;
+    } while (customerIds.size() == chunkSize);
+
+    log.info("Wrote {} balance snapshots at {}", written, takenAt);
+    return written;
+  }
+}
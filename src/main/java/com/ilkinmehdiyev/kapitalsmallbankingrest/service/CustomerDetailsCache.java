@@ -0,0 +1,23 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl.CustomUserDetails;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cache of customer authentication details by phone number in front of {@link
+ * CustomerServiceImpl}.
+ */
+public interface CustomerDetailsCache {
+
+  Optional<CustomUserDetails> getByPhoneNumber(String phoneNumber);
+
+  void put(CustomUserDetails customerDetails);
+
+  /** Removes every entry of the customer, to be called when its password or phone changes. */
+  void invalidate(UUID uid);
+
+  /** Registers the metrics of the cache, if it keeps any. */
+  void bindTo(MeterRegistry registry);
+}
@@ -1,7 +1,10 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
 
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerNotFoundException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.TokenRevocationService;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -18,9 +21,16 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class CustomerServiceImpl implements UserDetailsService {
   private final CustomerRepository customerRepository;
+  private final CustomerDetailsCache customerDetailsCache;
+  private final TokenRevocationService tokenRevocationService;
 
   @Override
   public CustomUserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    var cachedDetails = customerDetailsCache.getByPhoneNumber(username);
+    if (cachedDetails.isPresent()) {
+      return cachedDetails.get();
+    }
+
     var customer =
         customerRepository
             .findByPhoneNumber(username)
@@ -31,8 +41,26 @@ public class CustomerServiceImpl implements UserDetailsService {
                       "User with phone number %s not found".formatted(username));
                 });
 
-    return new CustomUserDetails(
-        customer.id(), customer.uid(), customer.password(), customer.phoneNumber());
+    return cache(customer);
+  }
+
+  /**
+   * Called through {@code CustomerSessionEndpoint} when the customer's password or phone number
+   * changes or the customer is disabled: drops the cached details and, when revocation is enabled,
+   * the tokens issued up to now.
+   */
+  public void customerCredentialsChanged(UUID uid) {
+    log.info("Credentials changed for customer: {}", uid);
+    customerDetailsCache.invalidate(uid);
+    tokenRevocationService.revokeTokensIssuedBefore(uid, Instant.now());
+  }
+
+  private CustomUserDetails cache(Customer customer) {
+    var customerDetails =
+        new CustomUserDetails(
+            customer.id(), customer.uid(), customer.password(), customer.phoneNumber());
+    customerDetailsCache.put(customerDetails);
+    return customerDetails;
   }
 
   public record CustomUserDetails(Long id, UUID uid, String password, String phoneNumber)
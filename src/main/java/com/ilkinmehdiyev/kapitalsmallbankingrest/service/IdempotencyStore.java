@@ -0,0 +1,36 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recently completed postings by idempotency key, consulted by {@link PostingCoordinator} before a
+ * retried request reaches the database, together with markers of postings still in flight so that
+ * a concurrent duplicate waits for the first result. Keys are scoped to the customer. The default
+ * implementation is in-process; the unique constraint on the transaction uid remains the guarantee
+ * across nodes.
+ */
+public interface IdempotencyStore {
+
+  Optional<TransactionResponse> getCompleted(UUID customerUid, UUID idempotencyKey);
+
+  /**
+   * Marks the posting of the key as in flight, unless another one already is.
+   *
+   * @return the posting already in flight, or empty if {@code posting} is now the marked one
+   */
+  Optional<CompletableFuture<TransactionResponse>> markInFlight(
+      UUID customerUid, UUID idempotencyKey, CompletableFuture<TransactionResponse> posting);
+
+  /** Remembers the response and removes the in-flight marker of the key. */
+  void complete(UUID customerUid, UUID idempotencyKey, TransactionResponse response);
+
+  /** Removes the in-flight marker of a posting that failed. */
+  void release(UUID customerUid, UUID idempotencyKey);
+
+  /** Registers the metrics of the store, if it keeps any. */
+  void bindTo(MeterRegistry registry);
+}
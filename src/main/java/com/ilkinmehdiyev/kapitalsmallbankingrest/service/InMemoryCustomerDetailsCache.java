@@ -0,0 +1,82 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl.CustomUserDetails;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryCustomerDetailsCache implements CustomerDetailsCache {
+  private final Cache<String, CustomUserDetails> byPhoneNumber;
+  // Phone number of each cached customer, so that invalidating by uid is a lookup; entries leave
+  // with their cache entry.
+  private final Map<UUID, String> phoneNumberByUid = new ConcurrentHashMap<>();
+
+  public InMemoryCustomerDetailsCache(int maximumSize, Duration ttl) {
+    this(maximumSize, ttl, Ticker.systemTicker());
+  }
+
+  InMemoryCustomerDetailsCache(int maximumSize, Duration ttl, Ticker ticker) {
+    this.byPhoneNumber =
+        Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .ticker(ticker)
+            .executor(Runnable::run)
+            .recordStats()
+            .removalListener(this::onRemoval)
+            .build();
+  }
+
+  @Override
+  public Optional<CustomUserDetails> getByPhoneNumber(String phoneNumber) {
+    return Optional.ofNullable(byPhoneNumber.getIfPresent(phoneNumber));
+  }
+
+  @Override
+  public void put(CustomUserDetails customerDetails) {
+    byPhoneNumber.put(customerDetails.phoneNumber(), customerDetails);
+    String previousPhoneNumber =
+        phoneNumberByUid.put(customerDetails.uid(), customerDetails.phoneNumber());
+    if (Objects.nonNull(previousPhoneNumber)
+        && !previousPhoneNumber.equals(customerDetails.phoneNumber())) {
+      byPhoneNumber.invalidate(previousPhoneNumber);
+    }
+  }
+
+  @Override
+  public void invalidate(UUID uid) {
+    String phoneNumber = phoneNumberByUid.remove(uid);
+    if (Objects.nonNull(phoneNumber)) {
+      byPhoneNumber.invalidate(phoneNumber);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, byPhoneNumber, "customerDetails");
+  }
+
+  // Runs in the removing thread, so a replaced entry is unindexed before put indexes its successor.
+  private void onRemoval(String phoneNumber, CustomUserDetails details, RemovalCause cause) {
+    if (Objects.nonNull(details)) {
+      phoneNumberByUid.remove(details.uid(), phoneNumber);
+    }
+  }
+
+  int indexedCustomers() {
+    return phoneNumberByUid.size();
+  }
+
+  void cleanUp() {
+    byPhoneNumber.cleanUp();
+  }
+}
@@ -0,0 +1,69 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+  private final Cache<Key, TransactionResponse> completed;
+  private final Map<Key, CompletableFuture<TransactionResponse>> inFlight =
+      new ConcurrentHashMap<>();
+
+  public InMemoryIdempotencyStore(int maximumSize, Duration ttl) {
+    this(maximumSize, ttl, Ticker.systemTicker());
+  }
+
+  InMemoryIdempotencyStore(int maximumSize, Duration ttl, Ticker ticker) {
+    this.completed =
+        Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .ticker(ticker)
+            .executor(Runnable::run)
+            .recordStats()
+            .build();
+  }
+
+  @Override
+  public Optional<TransactionResponse> getCompleted(UUID customerUid, UUID idempotencyKey) {
+    return Optional.ofNullable(completed.getIfPresent(new Key(customerUid, idempotencyKey)));
+  }
+
+  @Override
+  public Optional<CompletableFuture<TransactionResponse>> markInFlight(
+      UUID customerUid, UUID idempotencyKey, CompletableFuture<TransactionResponse> posting) {
+    return Optional.ofNullable(inFlight.putIfAbsent(new Key(customerUid, idempotencyKey), posting));
+  }
+
+  @Override
+  public void complete(UUID customerUid, UUID idempotencyKey, TransactionResponse response) {
+    var key = new Key(customerUid, idempotencyKey);
+    completed.put(key, response);
+    inFlight.remove(key);
+  }
+
+  @Override
+  public void release(UUID customerUid, UUID idempotencyKey) {
+    inFlight.remove(new Key(customerUid, idempotencyKey));
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, completed, "idempotency");
+  }
+
+  void cleanUp() {
+    completed.cleanUp();
+  }
+
+  private record Key(UUID customerUid, UUID idempotencyKey) {}
+}
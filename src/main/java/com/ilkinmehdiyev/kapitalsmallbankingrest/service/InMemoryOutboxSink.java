@@ -0,0 +1,23 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Keeps published events in memory, in publishing order. */
+public class InMemoryOutboxSink implements OutboxSink {
+  private final List<OutboxEvent> events = new ArrayList<>();
+
+  @Override
+  public synchronized void publish(List<OutboxEvent> events) {
+    this.events.addAll(events);
+  }
+
+  public synchronized List<OutboxEvent> events() {
+    return List.copyOf(events);
+  }
+
+  public synchronized void clear() {
+    events.clear();
+  }
+}
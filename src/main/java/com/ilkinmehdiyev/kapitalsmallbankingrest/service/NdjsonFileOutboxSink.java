@@ -0,0 +1,55 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Appends events to a file, one JSON object per line. Each batch is written with one write and
+ * forced to disk before {@link #publish} returns.
+ */
+public class NdjsonFileOutboxSink implements OutboxSink, Closeable {
+  private final ObjectWriter objectWriter;
+  private final FileChannel channel;
+
+  public NdjsonFileOutboxSink(ObjectMapper objectMapper, Path file) throws IOException {
+    this.objectWriter =
+        objectMapper.writerFor(OutboxEvent.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    Path directory = file.toAbsolutePath().getParent();
+    if (Objects.nonNull(directory)) {
+      Files.createDirectories(directory);
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  @Override
+  public synchronized void publish(List<OutboxEvent> events) throws IOException {
+    var buffer = new ByteArrayOutputStream(events.size() * 256);
+    for (OutboxEvent event : events) {
+      objectWriter.writeValue(buffer, event);
+      buffer.write('\n');
+    }
+
+    ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    channel.force(false);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+}
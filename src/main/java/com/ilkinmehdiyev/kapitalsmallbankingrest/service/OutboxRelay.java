@@ -0,0 +1,95 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.OutboxProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Publishes the events of {@code transaction_outbox} to the {@link OutboxSink} and deletes them.
+ * Each batch is locked, published and deleted in one database transaction, so a batch whose
+ * publishing fails stays in the outbox and is published again: delivery is at least once. Posting
+ * requests only insert into the outbox and never wait for the relay.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+  static final String PUBLISHED_COUNTER = "outbox.published";
+  static final String FAILED_BATCHES_COUNTER = "outbox.batches.failed";
+
+  private final OutboxRepository outboxRepository;
+  private final OutboxSink outboxSink;
+  private final OutboxProperties outboxProperties;
+  private final TransactionTemplate transactionTemplate;
+  private final Counter publishedCounter;
+  private final Counter failedBatchesCounter;
+
+  public OutboxRelay(
+      OutboxRepository outboxRepository,
+      OutboxSink outboxSink,
+      OutboxProperties outboxProperties,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
+    this.outboxRepository = outboxRepository;
+    this.outboxSink = outboxSink;
+    this.outboxProperties = outboxProperties;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.publishedCounter = meterRegistry.counter(PUBLISHED_COUNTER);
+    this.failedBatchesCounter = meterRegistry.counter(FAILED_BATCHES_COUNTER);
+  }
+
+  @Scheduled(fixedDelayString = "${outbox.relay.pollInterval}")
+  public void relayIfEnabled() {
+    if (outboxProperties.getRelay().enabled()) {
+      relay();
+    }
+  }
+
+  /**
+   * Publishes batches until the outbox is drained or a batch fails.
+   *
+   * @return the number of events published
+   */
+  public long relay() {
+    int batchSize = outboxProperties.getRelay().batchSize();
+    long published = 0;
+    int batchPublished;
+    do {
+      try {
+        batchPublished = transactionTemplate.execute(status -> publishBatch(batchSize));
+      } catch (RuntimeException e) {
+        failedBatchesCounter.increment();
+        log.error("Could not publish outbox events, they are retried on the next run", e);
+        break;
+      }
+      publishedCounter.increment(batchPublished);
+      published += batchPublished;
+    } while (batchPublished == batchSize);
+
+    return published;
+  }
+
+  private int publishBatch(int batchSize) {
+    List<OutboxEvent> events = outboxRepository.lockOldest(batchSize);
+    if (events.isEmpty()) {
+      return 0;
+    }
+
+    try {
+      outboxSink.publish(events);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    outboxRepository.delete(events.stream().map(OutboxEvent::id).toList());
+    return events.size();
+  }
+}
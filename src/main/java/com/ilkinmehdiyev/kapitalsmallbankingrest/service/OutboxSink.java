@@ -0,0 +1,15 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the events published by {@link OutboxRelay}. Events are deleted from the outbox
+ * once {@link #publish} returns, so an implementation must not return before the batch is durable
+ * on its side. A batch that fails is published again later, possibly together with other events.
+ */
+public interface OutboxSink {
+
+  void publish(List<OutboxEvent> events) throws IOException;
+}
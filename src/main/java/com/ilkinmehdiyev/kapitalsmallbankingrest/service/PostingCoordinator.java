@@ -0,0 +1,395 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItemResult;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerLockTimeoutException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionService.PostingOutcome;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Entry point for postings. Requests of the same customer are serialized on an in-JVM striped lock
+ * before they reach the transactional {@link TransactionService}, so only one of them at a time
+ * holds a pooled connection while it waits on the customer row lock. Waiting is bounded by {@code
+ * transaction.lock.timeout}; the row lock still guards against other nodes.
+ *
+ * <p>With {@code transaction.groupCommit.enabled}, single postings of a customer are queued and the
+ * first caller posts up to {@code transaction.groupCommit.maxSize} of them, in arrival order, with
+ * {@link TransactionService#processGroup}; the others park until they are handed their outcome. A
+ * group that fails for a reason other than a lock timeout is posted again request by request.
+ *
+ * <p>Retried requests are answered from the {@link IdempotencyStore}. A duplicate of a posting
+ * still in flight waits for its result, for at most {@code transaction.lock.timeout}.
+ */
+@Slf4j
+@Service
+public class PostingCoordinator {
+  public static final String SERIALIZATION_WAIT_TIMER = "customer.serialization.wait";
+  public static final String GROUP_SIZE_SUMMARY = "transaction.group.size";
+  public static final String IDEMPOTENCY_LOOKUP_COUNTER = "transaction.idempotency.lookup";
+
+  private final TransactionService transactionService;
+  private final IdempotencyStore idempotencyStore;
+  private final boolean enabled;
+  private final Duration timeout;
+  private final ReentrantLock[] stripes;
+  private final Timer waitTimer;
+  private final boolean groupCommitEnabled;
+  private final int groupMaxSize;
+  private final Map<UUID, PostingQueue> postingQueues = new ConcurrentHashMap<>();
+  private final DistributionSummary groupSize;
+  private final Counter completedReplays;
+  private final Counter inFlightReplays;
+  private final Counter idempotencyMisses;
+
+  public PostingCoordinator(
+      TransactionService transactionService,
+      IdempotencyStore idempotencyStore,
+      TransactionProperties transactionProperties,
+      MeterRegistry meterRegistry) {
+    this.transactionService = transactionService;
+    this.idempotencyStore = idempotencyStore;
+    this.enabled = transactionProperties.getSerialization().enabled();
+    this.timeout = transactionProperties.getLock().timeout();
+    this.stripes =
+        new ReentrantLock[Math.max(transactionProperties.getSerialization().stripes(), 1)];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    this.waitTimer =
+        Timer.builder(SERIALIZATION_WAIT_TIMER)
+            .description("Time a posting waits for earlier postings of the same customer")
+            .register(meterRegistry);
+    this.groupCommitEnabled = transactionProperties.getGroupCommit().enabled();
+    this.groupMaxSize = Math.max(transactionProperties.getGroupCommit().maxSize(), 1);
+    this.groupSize =
+        DistributionSummary.builder(GROUP_SIZE_SUMMARY)
+            .description("Postings committed together in one group")
+            .register(meterRegistry);
+    this.completedReplays = idempotencyLookupCounter(meterRegistry, "completed");
+    this.inFlightReplays = idempotencyLookupCounter(meterRegistry, "in_flight");
+    this.idempotencyMisses = idempotencyLookupCounter(meterRegistry, "miss");
+  }
+
+  public TransactionResponse processTransaction(TransactionRequest request, UUID idempotencyKey) {
+    SessionUser sessionUser = ThreadLocalStorage.getSessionUser();
+    if (Objects.isNull(sessionUser)) {
+      return transactionService.processTransaction(request, idempotencyKey);
+    }
+
+    UUID customerUid = sessionUser.uid();
+    try {
+      return deduplicated(
+          customerUid, idempotencyKey, () -> post(customerUid, request, idempotencyKey));
+    } finally {
+      ThreadLocalStorage.clear();
+    }
+  }
+
+  public List<BatchTransactionItemResult> processBatch(List<BatchTransactionItem> items) {
+    return serialized(() -> transactionService.processBatch(items));
+  }
+
+  private TransactionResponse post(
+      UUID customerUid, TransactionRequest request, UUID idempotencyKey) {
+    if (groupCommitEnabled) {
+      return postInGroup(customerUid, request, idempotencyKey);
+    }
+    return serialized(
+        customerUid, () -> transactionService.processTransaction(request, idempotencyKey));
+  }
+
+  private TransactionResponse deduplicated(
+      UUID customerUid, UUID idempotencyKey, Supplier<TransactionResponse> posting) {
+    while (true) {
+      Optional<TransactionResponse> completedResponse =
+          idempotencyStore.getCompleted(customerUid, idempotencyKey);
+      if (completedResponse.isPresent()) {
+        log.warn("Transaction with x-idempotency [{}] replayed from memory", idempotencyKey);
+        completedReplays.increment();
+        return completedResponse.get();
+      }
+
+      var ownPosting = new CompletableFuture<TransactionResponse>();
+      Optional<CompletableFuture<TransactionResponse>> postingInFlight =
+          idempotencyStore.markInFlight(customerUid, idempotencyKey, ownPosting);
+      if (postingInFlight.isEmpty()) {
+        idempotencyMisses.increment();
+        return postOnce(customerUid, idempotencyKey, posting, ownPosting);
+      }
+
+      Optional<TransactionResponse> inFlightResponse =
+          awaitInFlight(idempotencyKey, postingInFlight.get());
+      if (inFlightResponse.isPresent()) {
+        log.warn("Transaction with x-idempotency [{}] was in flight", idempotencyKey);
+        inFlightReplays.increment();
+        return inFlightResponse.get();
+      }
+      log.warn("Posting of x-idempotency [{}] in flight failed, posting again", idempotencyKey);
+    }
+  }
+
+  private Optional<TransactionResponse> awaitInFlight(
+      UUID idempotencyKey, CompletableFuture<TransactionResponse> postingInFlight) {
+    try {
+      return Optional.of(
+          timeout.isPositive()
+              ? postingInFlight.get(timeout.toNanos(), TimeUnit.NANOSECONDS)
+              : postingInFlight.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the posting", e);
+    } catch (ExecutionException e) {
+      return Optional.empty();
+    } catch (TimeoutException e) {
+      log.warn("Posting of x-idempotency [{}] still in flight after {}", idempotencyKey, timeout);
+      throw new CustomerLockTimeoutException(
+          "Transaction with idempotency key [%s] is still being posted, please retry"
+              .formatted(idempotencyKey),
+          e);
+    }
+  }
+
+  private TransactionResponse postOnce(
+      UUID customerUid,
+      UUID idempotencyKey,
+      Supplier<TransactionResponse> posting,
+      CompletableFuture<TransactionResponse> ownPosting) {
+    try {
+      TransactionResponse response = posting.get();
+      idempotencyStore.complete(customerUid, idempotencyKey, response);
+      ownPosting.complete(response);
+      return response;
+    } catch (RuntimeException e) {
+      idempotencyStore.release(customerUid, idempotencyKey);
+      ownPosting.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private <T> T serialized(Supplier<T> posting) {
+    SessionUser sessionUser = ThreadLocalStorage.getSessionUser();
+    if (Objects.isNull(sessionUser)) {
+      return posting.get();
+    }
+    return serialized(sessionUser.uid(), posting);
+  }
+
+  private <T> T serialized(UUID customerUid, Supplier<T> posting) {
+    if (!enabled) {
+      return posting.get();
+    }
+
+    ReentrantLock lock = stripeOf(customerUid);
+    acquire(lock, customerUid);
+    try {
+      return posting.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void acquire(ReentrantLock lock, UUID customerUid) {
+    long startedAt = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired =
+          timeout.isPositive()
+              ? lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)
+              : lockNow(lock);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CustomerLockTimeoutException(
+          "Interrupted while waiting for customer with id: [%s]".formatted(customerUid), e);
+    } finally {
+      waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    if (!acquired) {
+      log.warn("Postings of customer with uid {} still busy after {}", customerUid, timeout);
+      throw new CustomerLockTimeoutException(
+          "Customer with id: [%s] is busy, please retry".formatted(customerUid), null);
+    }
+  }
+
+  private static boolean lockNow(ReentrantLock lock) throws InterruptedException {
+    lock.lockInterruptibly();
+    return true;
+  }
+
+  private TransactionResponse postInGroup(
+      UUID customerUid, TransactionRequest request, UUID idempotencyKey) {
+    var posting =
+        new PendingPosting(
+            BatchTransactionItem.of(idempotencyKey, request), new CompletableFuture<>());
+    PostingQueue queue =
+        postingQueues.compute(
+            customerUid,
+            (uid, existing) -> {
+              PostingQueue postingQueue = Objects.isNull(existing) ? new PostingQueue() : existing;
+              postingQueue.pending().add(posting);
+              return postingQueue;
+            });
+
+    drain(customerUid, queue);
+    return await(posting.response());
+  }
+
+  /**
+   * Posts queued requests while this caller holds the leadership of the queue. Re-checks the
+   * queue after giving the leadership up, since a request added while the previous group was
+   * being posted may have found the queue busy.
+   */
+  private void drain(UUID customerUid, PostingQueue queue) {
+    while (!queue.pending().isEmpty() && queue.draining().compareAndSet(false, true)) {
+      try {
+        List<PendingPosting> group = new ArrayList<>();
+        PendingPosting posting;
+        while (group.size() < groupMaxSize && Objects.nonNull(posting = queue.pending().poll())) {
+          group.add(posting);
+        }
+        postGroup(customerUid, group);
+      } finally {
+        queue.draining().set(false);
+      }
+    }
+    postingQueues.computeIfPresent(
+        customerUid,
+        (uid, postingQueue) ->
+            postingQueue.pending().isEmpty() && !postingQueue.draining().get()
+                ? null
+                : postingQueue);
+  }
+
+  private void postGroup(UUID customerUid, List<PendingPosting> group) {
+    // Callers retrying with the same idempotency key share one posting and its response.
+    Map<UUID, List<CompletableFuture<TransactionResponse>>> waiters = new LinkedHashMap<>();
+    Map<UUID, BatchTransactionItem> items = new LinkedHashMap<>();
+    for (PendingPosting posting : group) {
+      UUID idempotencyKey = posting.item().idempotencyKey();
+      items.putIfAbsent(idempotencyKey, posting.item());
+      waiters.computeIfAbsent(idempotencyKey, key -> new ArrayList<>()).add(posting.response());
+    }
+    groupSize.record(items.size());
+
+    try {
+      List<PostingOutcome> outcomes =
+          serialized(
+              customerUid,
+              () -> transactionService.processGroup(customerUid, List.copyOf(items.values())));
+      int index = 0;
+      for (List<CompletableFuture<TransactionResponse>> responses : waiters.values()) {
+        complete(responses, outcomes.get(index++));
+      }
+    } catch (CustomerLockTimeoutException e) {
+      failAll(waiters.values(), e);
+    } catch (RuntimeException e) {
+      if (items.size() == 1) {
+        failAll(waiters.values(), e);
+        return;
+      }
+      log.warn(
+          "Group of {} postings of customer {} failed, posting them one by one",
+          items.size(),
+          customerUid,
+          e);
+      for (Map.Entry<UUID, BatchTransactionItem> item : items.entrySet()) {
+        postAlone(customerUid, item.getValue(), waiters.get(item.getKey()));
+      }
+    }
+  }
+
+  private void postAlone(
+      UUID customerUid,
+      BatchTransactionItem item,
+      List<CompletableFuture<TransactionResponse>> responses) {
+    try {
+      List<PostingOutcome> outcomes =
+          serialized(
+              customerUid, () -> transactionService.processGroup(customerUid, List.of(item)));
+      complete(responses, outcomes.getFirst());
+    } catch (RuntimeException e) {
+      responses.forEach(response -> response.completeExceptionally(e));
+    }
+  }
+
+  private static void complete(
+      List<CompletableFuture<TransactionResponse>> responses, PostingOutcome outcome) {
+    responses.forEach(
+        response -> {
+          if (Objects.isNull(outcome.error())) {
+            response.complete(outcome.response());
+          } else {
+            response.completeExceptionally(outcome.error());
+          }
+        });
+  }
+
+  private static void failAll(
+      Collection<List<CompletableFuture<TransactionResponse>>> waiters, RuntimeException e) {
+    waiters.forEach(responses -> responses.forEach(r -> r.completeExceptionally(e)));
+  }
+
+  private static Counter idempotencyLookupCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder(IDEMPOTENCY_LOOKUP_COUNTER)
+        .description("Single postings by whether their idempotency key was answered from memory")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  private static TransactionResponse await(CompletableFuture<TransactionResponse> response) {
+    try {
+      return response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the posting", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException("Posting failed", e.getCause());
+    }
+  }
+
+  private ReentrantLock stripeOf(UUID customerUid) {
+    int hash = customerUid.hashCode();
+    return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+  }
+
+  private record PendingPosting(
+      BatchTransactionItem item, CompletableFuture<TransactionResponse> response) {}
+
+  private record PostingQueue(Queue<PendingPosting> pending, AtomicBoolean draining) {
+    PostingQueue() {
+      this(new ConcurrentLinkedQueue<>(), new AtomicBoolean());
+    }
+  }
+}
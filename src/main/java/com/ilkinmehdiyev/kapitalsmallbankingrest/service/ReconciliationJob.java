@@ -0,0 +1,141 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ReconciliationProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.BalanceDiscrepancy;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.ReconciliationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares every customer's balance with the one implied by their transactions and records the
+ * mismatches in {@code balance_discrepancies}. Customers are reconciled in chunks, at most {@code
+ * reconciliation.parallelism} at a time, so the job never holds more pooled connections than that
+ * and postings keep the rest of the pool.
+ */
+@Slf4j
+@Component
+public class ReconciliationJob {
+  static final String RUN_TIMER = "reconciliation.run";
+  static final String CUSTOMERS_COUNTER = "reconciliation.customers";
+  static final String DISCREPANCIES_COUNTER = "reconciliation.discrepancies";
+  static final String LAST_RUN_DISCREPANCIES_GAUGE = "reconciliation.discrepancies.last";
+  static final String FAILED_CHUNKS_COUNTER = "reconciliation.chunks.failed";
+
+  private final CustomerRepository customerRepository;
+  private final ReconciliationRepository reconciliationRepository;
+  private final ReconciliationProperties reconciliationProperties;
+  private final TransactionTemplate readOnlyTransaction;
+  private final Timer runTimer;
+  private final Counter customersCounter;
+  private final Counter discrepanciesCounter;
+  private final Counter failedChunksCounter;
+  private final AtomicLong lastRunDiscrepancies = new AtomicLong();
+
+  public ReconciliationJob(
+      CustomerRepository customerRepository,
+      ReconciliationRepository reconciliationRepository,
+      ReconciliationProperties reconciliationProperties,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
+    this.customerRepository = customerRepository;
+    this.reconciliationRepository = reconciliationRepository;
+    this.reconciliationProperties = reconciliationProperties;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.runTimer = meterRegistry.timer(RUN_TIMER);
+    this.customersCounter = meterRegistry.counter(CUSTOMERS_COUNTER);
+    this.discrepanciesCounter = meterRegistry.counter(DISCREPANCIES_COUNTER);
+    this.failedChunksCounter = meterRegistry.counter(FAILED_CHUNKS_COUNTER);
+    meterRegistry.gauge(LAST_RUN_DISCREPANCIES_GAUGE, lastRunDiscrepancies);
+  }
+
+  @Scheduled(cron = "${reconciliation.cron}", zone = "UTC")
+  public void reconcileIfEnabled() {
+    if (reconciliationProperties.isEnabled()) {
+      reconcile();
+    }
+  }
+
+  /** @return the number of discrepancies found */
+  public long reconcile() {
+    return runTimer.record(this::reconcileAll);
+  }
+
+  private long reconcileAll() {
+    Instant detectedAt = Instant.now();
+    int chunkSize = reconciliationProperties.getChunkSize();
+    var permits = new Semaphore(reconciliationProperties.getParallelism());
+    var discrepancies = new AtomicInteger();
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      long afterId = 0;
+      List<Long> customerIds;
+      do {
+        // Waits here rather than queuing tasks, so no more than parallelism chunks are in flight.
+        // The chunk's permit is taken before its ids are read, so that query counts too.
+        permits.acquireUninterruptibly();
+        customerIds = customerRepository.findIdsAfter(afterId, chunkSize);
+        if (customerIds.isEmpty()) {
+          permits.release();
+          break;
+        }
+        long fromId = customerIds.getFirst();
+        long toId = customerIds.getLast();
+        int customers = customerIds.size();
+        executor.execute(
+            () -> {
+              try {
+                discrepancies.addAndGet(reconcileChunk(fromId, toId, detectedAt));
+                customersCounter.increment(customers);
+              } catch (RuntimeException e) {
+                failedChunksCounter.increment();
+                log.error("Could not reconcile customers [{}, {}]", fromId, toId, e);
+              } finally {
+                permits.release();
+              }
+            });
+        afterId = toId;
+      } while (customerIds.size() == chunkSize);
+    }
+
+    lastRunDiscrepancies.set(discrepancies.get());
+    log.info("Reconciliation found {} balance discrepancies", discrepancies.get());
+    return discrepancies.get();
+  }
+
+  private int reconcileChunk(long fromId, long toId, Instant detectedAt) {
+    List<BalanceDiscrepancy> discrepancies =
+        readOnlyTransaction.execute(
+            status ->
+                reconciliationRepository.findDiscrepancies(
+                    fromId, toId, reconciliationProperties.getOpeningBalance()));
+    if (discrepancies.isEmpty()) {
+      return 0;
+    }
+
+    discrepancies.forEach(
+        discrepancy ->
+            log.warn(
+                "Balance of customer [{}] is [{}], its transactions imply [{}]",
+                discrepancy.customerId(),
+                discrepancy.recordedBalance(),
+                discrepancy.ledgerBalance()));
+    reconciliationRepository.insertDiscrepancies(discrepancies, detectedAt);
+    discrepanciesCounter.increment(discrepancies.size());
+    return discrepancies.size();
+  }
+}
@@ -0,0 +1,139 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.StatementProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.StatementFormat;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerNotFoundException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.StatementRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Slf4j
+@Service
+public class StatementService {
+  static final String CSV_HEADER = "transactionUid,type,amount,status,transactionDate,referenceUid";
+
+  private final StatementRepository statementRepository;
+  private final int pageSize;
+  private final TransactionTemplate readOnlyTransaction;
+  private final ObjectWriter itemWriter;
+
+  public StatementService(
+      StatementRepository statementRepository,
+      StatementProperties statementProperties,
+      PlatformTransactionManager transactionManager,
+      ObjectMapper objectMapper) {
+    this.statementRepository = statementRepository;
+    this.pageSize = statementProperties.getPageSize();
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.itemWriter =
+        objectMapper
+            .writerFor(TransactionHistoryItem.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  /**
+   * Validates the request on the calling thread and returns the body that writes the statement
+   * page by page, so the heap holds at most one page of rows whatever the length of the range. The
+   * body runs later on an async request thread, which is why the customer is resolved here.
+   */
+  public StreamingResponseBody exportStatement(Instant from, Instant to, StatementFormat format) {
+    SessionUser sessionUser = ThreadLocalStorage.getSessionUser();
+    if (Objects.isNull(sessionUser)) {
+      log.error("Session user is not set");
+      throw new CustomerNotFoundException("Session user is not found.");
+    }
+    if (Objects.isNull(from) || Objects.isNull(to) || !from.isBefore(to)) {
+      log.error("Statement range [{}, {}) is invalid", from, to);
+      throw new TransferRequestException(
+          "Statement range is invalid, from: [%s], to: [%s]".formatted(from, to));
+    }
+    Long customerId = sessionUser.userId();
+    ThreadLocalStorage.clear();
+
+    return outputStream -> writeStatement(customerId, from, to, format, outputStream);
+  }
+
+  /**
+   * Reads each page in a read-only transaction of its own, so a pooled connection, on the replica
+   * when there is one, is only held while a page is read and not while a slow client downloads it.
+   */
+  void writeStatement(
+      Long customerId, Instant from, Instant to, StatementFormat format, OutputStream outputStream)
+      throws IOException {
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    try {
+      if (StatementFormat.CSV.equals(format)) {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+      }
+      Instant afterDate = from;
+      long afterId = Long.MIN_VALUE;
+      List<Transaction> page;
+      do {
+        Instant pageAfterDate = afterDate;
+        long pageAfterId = afterId;
+        page =
+            readOnlyTransaction.execute(
+                status ->
+                    statementRepository.findStatementPage(
+                        customerId, pageAfterDate, pageAfterId, to, pageSize));
+        for (Transaction transaction : page) {
+          write(TransactionHistoryItem.of(transaction), format, writer);
+        }
+        if (!page.isEmpty()) {
+          afterDate = page.getLast().transactionDate();
+          afterId = page.getLast().id();
+        }
+      } while (page.size() == pageSize);
+      writer.flush();
+    } catch (IOException e) {
+      // Typically the client went away; the response is already committed, so only log it.
+      log.warn("Statement export of customer [{}] was interrupted", customerId, e);
+      throw e;
+    }
+  }
+
+  private void write(TransactionHistoryItem item, StatementFormat format, Writer writer)
+      throws IOException {
+    switch (format) {
+      case NDJSON -> itemWriter.writeValue(writer, item);
+      case CSV -> writeCsvRow(item, writer);
+    }
+    writer.write('\n');
+  }
+
+  private static void writeCsvRow(TransactionHistoryItem item, Writer writer) throws IOException {
+    // Every column is a uuid, enum, number or instant, so none of them needs quoting.
+    writer.write(
+        String.join(
+            ",",
+            item.transactionUid().toString(),
+            item.type().toString(),
+            item.amount().toPlainString(),
+            item.status().toString(),
+            item.transactionDate().toString(),
+            Objects.toString(item.referenceUid(), "")));
+  }
+}
@@ -0,0 +1,100 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ArchiveProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.ArchiveRepository;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves transactions and {@code transactions_log} rows older than {@code archive.retention} out of
+ * the hot tables, so that their indexes and the buffer cache hold recent rows only. Whole monthly
+ * partitions are moved to {@code transactions_archive} without copying; rows of {@code
+ * transactions_before}, and log rows, are moved in chunks, one database transaction per chunk.
+ * Idempotency keys stay in {@code transaction_keys}, so archived keys are still never reused.
+ */
+@Slf4j
+@Component
+public class TransactionArchiver {
+  private final ArchiveRepository archiveRepository;
+  private final ArchiveProperties archiveProperties;
+  private final TransactionTemplate chunkTransaction;
+
+  public TransactionArchiver(
+      ArchiveRepository archiveRepository,
+      ArchiveProperties archiveProperties,
+      PlatformTransactionManager transactionManager) {
+    this.archiveRepository = archiveRepository;
+    this.archiveProperties = archiveProperties;
+    this.chunkTransaction = new TransactionTemplate(transactionManager);
+  }
+
+  @Scheduled(cron = "${archive.cron}", zone = "UTC")
+  public void archive() {
+    archive(Instant.now().minus(archiveProperties.getRetention()));
+  }
+
+  /** Archives what is dated or logged before {@code cutoff}. */
+  public ArchiveResult archive(Instant cutoff) {
+    int partitions = 0;
+    for (YearMonth month : archiveRepository.findTransactionsPartitionMonths()) {
+      Instant monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+      if (monthEnd.isAfter(cutoff)) {
+        break;
+      }
+      if (archivePartition(month)) {
+        partitions++;
+      }
+    }
+
+    int chunkSize = archiveProperties.getChunkSize();
+    long transactions =
+        moveInChunks(
+            () -> archiveRepository.archiveBeforePartitionTransactions(cutoff, chunkSize));
+    long logRows =
+        moveInChunks(() -> archiveRepository.archiveTransactionLogs(cutoff, chunkSize));
+
+    var result = new ArchiveResult(partitions, transactions, logRows);
+    log.info("Archived before {}: {}", cutoff, result);
+    return result;
+  }
+
+  /**
+   * Moves the partition of {@code month} to the archive. The detach and the attach are separate
+   * statements, so a failed run leaves the partition detached or pending and the next run resumes.
+   */
+  public boolean archivePartition(YearMonth month) {
+    try {
+      archiveRepository.detachTransactionsPartition(month);
+      return archiveRepository.archiveTransactionsPartition(month);
+    } catch (DataAccessException e) {
+      log.error("Could not archive transactions partition for {}", month, e);
+      return false;
+    }
+  }
+
+  private long moveInChunks(IntSupplier chunk) {
+    long moved = 0;
+    int chunkMoved;
+    do {
+      chunkMoved = Objects.requireNonNull(chunkTransaction.execute(status -> chunk.getAsInt()));
+      moved += chunkMoved;
+    } while (chunkMoved == archiveProperties.getChunkSize());
+    return moved;
+  }
+
+  /**
+   * @param partitions monthly partitions moved to the archive
+   * @param transactions transactions moved one by one from {@code transactions_before}
+   * @param logRows {@code transactions_log} rows moved
+   */
+  public record ArchiveResult(int partitions, long transactions, long logRows) {}
+}
@@ -0,0 +1,70 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryCursor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryPage;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerNotFoundException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import java.util.List;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionHistoryService {
+  public static final int MAX_PAGE_SIZE = 100;
+
+  private final TransactionRepository transactionRepository;
+
+  public TransactionHistoryPage getHistory(
+      TransactionHistoryFilter filter, String cursor, int pageSize) {
+    SessionUser sessionUser = ThreadLocalStorage.getSessionUser();
+    if (Objects.isNull(sessionUser)) {
+      log.error("Session user is not set");
+      throw new CustomerNotFoundException("Session user is not found.");
+    }
+    validate(filter, pageSize);
+
+    TransactionHistoryCursor after =
+        Objects.isNull(cursor) ? null : TransactionHistoryCursor.decode(cursor);
+    // One extra row tells whether another page follows without a count query.
+    List<Transaction> transactions =
+        transactionRepository.findHistory(sessionUser.userId(), filter, after, pageSize + 1);
+    ThreadLocalStorage.clear();
+
+    if (transactions.size() <= pageSize) {
+      return new TransactionHistoryPage(
+          transactions.stream().map(TransactionHistoryItem::of).toList(), null);
+    }
+
+    List<Transaction> page = transactions.subList(0, pageSize);
+    Transaction last = page.getLast();
+    return new TransactionHistoryPage(
+        page.stream().map(TransactionHistoryItem::of).toList(),
+        new TransactionHistoryCursor(last.transactionDate(), last.id()).encode());
+  }
+
+  private void validate(TransactionHistoryFilter filter, int pageSize) {
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+      log.error("Page size [{}] is out of range", pageSize);
+      throw new TransferRequestException(
+          "Page size must be between 1 and %d, size: %d".formatted(MAX_PAGE_SIZE, pageSize));
+    }
+
+    if (Objects.nonNull(filter.from())
+        && Objects.nonNull(filter.to())
+        && !filter.from().isBefore(filter.to())) {
+      log.error("History range [{}, {}) is empty", filter.from(), filter.to());
+      throw new TransferRequestException(
+          "from [%s] must be before to [%s]".formatted(filter.from(), filter.to()));
+    }
+  }
+}
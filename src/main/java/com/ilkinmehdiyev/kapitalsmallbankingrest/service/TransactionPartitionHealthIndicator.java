@@ -0,0 +1,28 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.PartitionRepository;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports down when the next UTC month has no partition of {@code transactions}, since postings
+ * dated in it would be rejected; {@link TransactionPartitionJob} has then failed for at least
+ * {@code partitioning.monthsAhead} months.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionPartitionHealthIndicator implements HealthIndicator {
+  private final PartitionRepository partitionRepository;
+
+  @Override
+  public Health health() {
+    YearMonth nextMonth = YearMonth.now(ZoneOffset.UTC).plusMonths(1);
+    Health.Builder health =
+        partitionRepository.hasTransactionsPartition(nextMonth) ? Health.up() : Health.down();
+    return health.withDetail("nextMonth", nextMonth.toString()).build();
+  }
+}
@@ -0,0 +1,79 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.PartitionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.PartitionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the monthly partitions of {@code transactions} created {@code partitioning.monthsAhead}
+ * months ahead. Existing partitions are skipped, so repeated runs, and runs on other instances,
+ * create nothing. The {@code partitioning.months.ahead} gauge is the number of consecutive months
+ * after the run's month that have a partition; {@link TransactionPartitionHealthIndicator} reports
+ * down once the next month has none.
+ */
+@Slf4j
+@Component
+public class TransactionPartitionJob {
+  static final String MONTHS_AHEAD_GAUGE = "partitioning.months.ahead";
+  static final String FAILED_PARTITIONS_COUNTER = "partitioning.partitions.failed";
+
+  private final PartitionRepository partitionRepository;
+  private final PartitionProperties partitionProperties;
+  private final Counter failedPartitionsCounter;
+  private final AtomicInteger monthsAhead = new AtomicInteger();
+
+  public TransactionPartitionJob(
+      PartitionRepository partitionRepository,
+      PartitionProperties partitionProperties,
+      MeterRegistry meterRegistry) {
+    this.partitionRepository = partitionRepository;
+    this.partitionProperties = partitionProperties;
+    this.failedPartitionsCounter = meterRegistry.counter(FAILED_PARTITIONS_COUNTER);
+    meterRegistry.gauge(MONTHS_AHEAD_GAUGE, monthsAhead);
+  }
+
+  @Scheduled(cron = "${partitioning.cron}", zone = "UTC")
+  public void createPartitionsIfEnabled() {
+    if (partitionProperties.isEnabled()) {
+      createPartitions(YearMonth.now(ZoneOffset.UTC));
+    }
+  }
+
+  /**
+   * Creates the missing partitions from {@code month} to {@code monthsAhead} months after it. Each
+   * one is created in its own transaction, so a month that fails, for instance on the lock timeout,
+   * does not hold back the others.
+   *
+   * @return the number of partitions created
+   */
+  public int createPartitions(YearMonth month) {
+    int created = 0;
+    // Consecutive months after month whose partition exists.
+    int covered = 0;
+    for (int i = 0; i <= partitionProperties.getMonthsAhead(); i++) {
+      YearMonth partitionMonth = month.plusMonths(i);
+      try {
+        if (partitionRepository.createTransactionsPartition(partitionMonth)) {
+          log.info("Created transactions partition for {}", partitionMonth);
+          created++;
+        }
+        if (i == covered + 1) {
+          covered = i;
+        }
+      } catch (DataAccessException e) {
+        failedPartitionsCounter.increment();
+        log.error("Could not create transactions partition for {}", partitionMonth, e);
+      }
+    }
+    monthsAhead.set(covered);
+    return created;
+  }
+}
@@ -1,11 +1,22 @@
 package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
 
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.CustomerLockMonitor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics.Stage;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.PostingMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItemResult;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerLockTimeoutException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerNotFoundException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.IdempotencyKeyConflictException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.NoDataFoundException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransactionException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
@@ -14,11 +25,24 @@ import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepositor
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,31 +52,312 @@ import org.springframework.transaction.annotation.Transactional;
 public class TransactionService {
   private final CustomerRepository customerRepository;
   private final TransactionRepository transactionRepository;
+  private final TransactionProperties transactionProperties;
+  private final TransactionMetrics transactionMetrics;
+  private final CustomerLockMonitor customerLockMonitor;
+  private final AuditLog auditLog;
 
   @Transactional
   public TransactionResponse processTransaction(TransactionRequest request, UUID idempotencyKey) {
+    UUID customerUid = getSessionUser().uid();
+    BigDecimal amount = request.amount();
+    TransactionType type = request.transactionType();
+
+    log.info("Top up customer with uid: {}", customerUid);
+    validateTransactionRequest(customerUid, amount);
+
+    if (isSingleStatementPosting(request)) {
+      return transactionMetrics.recordStage(
+          Stage.SINGLE_STATEMENT_POSTING,
+          type,
+          () -> postInSingleStatement(customerUid, request, idempotencyKey));
+    }
+
+    var customer =
+        transactionMetrics.recordStage(
+            Stage.CUSTOMER_LOCK, type, () -> getCustomerForUpdate(customerUid));
+
+    try {
+      validateCustomerBalance(customer.balance(), request);
+      if (TransactionType.PARTIAL_REFUND.equals(type)) {
+        transactionMetrics.recordStage(
+            Stage.REFUND_VALIDATION,
+            type,
+            () ->
+                validateRefundTransaction(request.amount(), request.referenceUid(), customer.id()));
+      }
+    } catch (TransactionException | TransferRequestException | NoDataFoundException e) {
+      return replayOrRethrow(idempotencyKey, customerUid, type, e);
+    }
+
+    var transactionResponse =
+        transactionRepository.processTransactionByCustomerId(
+            customer.id(), request, idempotencyKey);
+    ThreadLocalStorage.clear();
+    return transactionResponse;
+  }
+
+  /**
+   * Posts every item under a single customer lock. Items are validated in order against the
+   * running balance; rejected items are reported in their result and do not affect the others.
+   * Accepted items are inserted with one JDBC batch followed by one balance update. Items whose
+   * idempotency key already exists are answered with the stored transaction. A refund may refer to
+   * a purchase earlier in the same batch.
+   */
+  @Transactional
+  public List<BatchTransactionItemResult> processBatch(List<BatchTransactionItem> items) {
+    UUID customerUid = getSessionUser().uid();
+
+    int maxSize = transactionProperties.getBatch().maxSize();
+    if (items.size() > maxSize) {
+      log.error("Batch size [{}] exceeds the maximum of [{}]", items.size(), maxSize);
+      throw new TransferRequestException(
+          "Batch size [%d] exceeds the maximum of [%d]".formatted(items.size(), maxSize));
+    }
+
+    log.info("Batch of {} transactions for customer with uid: {}", items.size(), customerUid);
+    var customer =
+        transactionMetrics.recordBatchStage(
+            Stage.CUSTOMER_LOCK, () -> getCustomerForUpdate(customerUid));
+    var outcomes = postBatch(customer, items);
+    List<BatchTransactionItemResult> results = new ArrayList<>(items.size());
+    for (int i = 0; i < items.size(); i++) {
+      UUID idempotencyKey = items.get(i).idempotencyKey();
+      PostingOutcome outcome = outcomes.get(i);
+      results.add(
+          Objects.isNull(outcome.error())
+              ? BatchTransactionItemResult.success(idempotencyKey, outcome.response())
+              : BatchTransactionItemResult.failure(idempotencyKey, outcome.error().getMessage()));
+    }
+    ThreadLocalStorage.clear();
+    return results;
+  }
+
+  /**
+   * Posts the requests that concurrent callers made for the same customer in one transaction, as
+   * {@link #processBatch} does. Used by the group commit of {@link PostingCoordinator}; the
+   * outcomes keep the exception of rejected requests so that each caller sees the error a single
+   * posting would have raised.
+   */
+  @Transactional
+  public List<PostingOutcome> processGroup(UUID customerUid, List<BatchTransactionItem> items) {
+    log.info("Group of {} transactions for customer with uid: {}", items.size(), customerUid);
+    var customer =
+        transactionMetrics.recordBatchStage(
+            Stage.CUSTOMER_LOCK, () -> getCustomerForUpdate(customerUid));
+    return postBatch(customer, items);
+  }
+
+  /**
+   * Claims the new idempotency keys up front, so that a key posted concurrently by another request
+   * rejects only its item. A refund may refer to a purchase earlier in the same batch; refunded
+   * amounts are added once the transactions are inserted.
+   */
+  private List<PostingOutcome> postBatch(Customer customer, List<BatchTransactionItem> items) {
+    List<UUID> idempotencyKeys = items.stream().map(BatchTransactionItem::idempotencyKey).toList();
+    Map<UUID, Transaction> existingTransactions =
+        transactionMetrics
+            .recordBatchStage(
+                Stage.IDEMPOTENCY_LOOKUP,
+                () -> transactionRepository.findAllByUids(idempotencyKeys, customer.id()))
+            .stream()
+            .collect(Collectors.toMap(Transaction::uid, Function.identity()));
+
+    Instant transactionDate = Instant.now();
+    Set<UUID> newKeys = new HashSet<>(idempotencyKeys);
+    newKeys.removeAll(existingTransactions.keySet());
+    Set<UUID> claimedKeys =
+        transactionMetrics.recordBatchStage(
+            Stage.IDEMPOTENCY_LOOKUP,
+            () -> transactionRepository.claimKeys(newKeys, customer.id(), transactionDate));
+
+    Set<UUID> seenKeys = new HashSet<>();
+    List<UUID> rejectedKeys = new ArrayList<>();
+    List<Transaction> newTransactions = new ArrayList<>();
+    Map<UUID, Transaction> batchPurchases = new HashMap<>();
+    Map<UUID, BigDecimal> batchRefunds = new LinkedHashMap<>();
+    List<PostingOutcome> outcomes = new ArrayList<>(items.size());
+    BigDecimal balance = customer.balance();
+
+    for (BatchTransactionItem item : items) {
+      UUID idempotencyKey = item.idempotencyKey();
+      Transaction existingTransaction = existingTransactions.get(idempotencyKey);
+      if (Objects.nonNull(existingTransaction)) {
+        log.warn("Transaction with x-idempotency [{}] already exists", idempotencyKey);
+        outcomes.add(PostingOutcome.success(mapToTransactionResponse(existingTransaction)));
+        continue;
+      }
+
+      if (!seenKeys.add(idempotencyKey)) {
+        log.warn("Duplicate x-idempotency [{}] in batch", idempotencyKey);
+        outcomes.add(
+            PostingOutcome.failure(
+                new TransferRequestException(
+                    "Duplicate idempotency key [%s] in batch".formatted(idempotencyKey))));
+        continue;
+      }
+
+      if (!claimedKeys.contains(idempotencyKey)) {
+        outcomes.add(postedConcurrently(idempotencyKey, customer.uid()));
+        continue;
+      }
+
+      try {
+        TransactionRequest request = item.toTransactionRequest();
+        validateTransactionRequest(customer.uid(), request.amount());
+        validateCustomerBalance(balance, request);
+        UUID referenceUid = request.referenceUid();
+        if (TransactionType.PARTIAL_REFUND.equals(request.transactionType())) {
+          Transaction purchase =
+              Objects.nonNull(referenceUid) && batchPurchases.containsKey(referenceUid)
+                  ? batchPurchases.get(referenceUid)
+                  : findRefundedTransaction(referenceUid, customer.id());
+          validateRefundOf(
+              purchase,
+              batchRefunds.getOrDefault(referenceUid, BigDecimal.ZERO),
+              request.amount(),
+              customer.id());
+          batchRefunds.merge(referenceUid, request.amount(), BigDecimal::add);
+        }
+
+        TransactionType type = request.transactionType();
+        var transaction =
+            new Transaction(
+                idempotencyKey,
+                customer.id(),
+                type,
+                request.amount(),
+                type.toString(),
+                transactionDate,
+                request.completedStatus(),
+                referenceUid);
+        newTransactions.add(transaction);
+        if (TransactionType.PURCHASE.equals(type)) {
+          batchPurchases.put(idempotencyKey, transaction);
+        }
+        balance = balance.add(request.balanceDelta());
+        outcomes.add(PostingOutcome.success(mapToTransactionResponse(transaction)));
+      } catch (TransactionException | TransferRequestException | NoDataFoundException e) {
+        log.warn("Batch transaction [{}] rejected: {}", idempotencyKey, e.getMessage());
+        rejectedKeys.add(idempotencyKey);
+        outcomes.add(PostingOutcome.failure(e));
+      }
+    }
+
+    transactionRepository.releaseKeys(rejectedKeys);
+    if (!newTransactions.isEmpty()) {
+      transactionMetrics.recordBatchStage(
+          Stage.INSERT,
+          () -> {
+            transactionRepository.insertClaimedTransactions(newTransactions);
+            return newTransactions.size();
+          });
+      batchRefunds.forEach(
+          (purchaseUid, refundedAmount) -> {
+            if (!transactionMetrics.recordBatchStage(
+                Stage.REFUNDED_AMOUNT_UPDATE,
+                () ->
+                    transactionRepository.incrementRefundedAmount(
+                        purchaseUid, customer.id(), refundedAmount))) {
+              throw new TransactionException(
+                  "Refund would exceed refundable amount of Transaction: [%s]"
+                      .formatted(purchaseUid));
+            }
+          });
+      transactionMetrics.recordBatchStage(
+          Stage.OUTBOX,
+          () -> {
+            transactionRepository.insertOutboxEvents(newTransactions);
+            return newTransactions.size();
+          });
+      BigDecimal balanceDelta = balance.subtract(customer.balance());
+      if (!transactionMetrics.recordBatchStage(
+          Stage.BALANCE_UPDATE,
+          () -> customerRepository.updateCustomerBalance(customer.uid(), balanceDelta))) {
+        log.error("Could not update customer balance. Customer uid {}", customer.uid());
+        throw new TransactionException(
+            "Could not update balance of customer: [%s]".formatted(customer.uid()));
+      }
+    }
+
+    return outcomes;
+  }
+
+  /**
+   * Answers an item whose key another request inserted after the idempotency lookup: with that
+   * transaction if it is the customer's own, otherwise as a conflict.
+   */
+  private PostingOutcome postedConcurrently(UUID idempotencyKey, UUID customerUid) {
+    return getTransactionResponseByUid(idempotencyKey, customerUid)
+        .map(PostingOutcome::success)
+        .orElseGet(
+            () -> {
+              log.error("Idempotency key [{}] is used by another customer", idempotencyKey);
+              return PostingOutcome.failure(
+                  new IdempotencyKeyConflictException(
+                      "Idempotency key [%s] is already used".formatted(idempotencyKey)));
+            });
+  }
+
+  private SessionUser getSessionUser() {
     SessionUser sessionUser = ThreadLocalStorage.getSessionUser();
     if (Objects.isNull(sessionUser)) {
       log.error("Session user is not set");
       throw new CustomerNotFoundException("Session user is not found.");
     }
+    return sessionUser;
+  }
 
-    UUID customerUid = sessionUser.uid();
-    BigDecimal amount = request.amount();
-
-    log.info("Top up customer with uid: {}", customerUid);
-    validateTransactionRequest(customerUid, amount);
+  private Customer getCustomerForUpdate(UUID customerUid) {
+    return withCustomerLock(
+            customerUid, () -> customerRepository.getCustomerByUidForUpdate(customerUid))
+        .orElseThrow(
+            () -> {
+              log.error("Customer with id {} not found", customerUid);
+              return new CustomerNotFoundException(
+                  "Customer with id: [%s] not found".formatted(customerUid));
+            });
+  }
 
-    Optional<TransactionResponse> transactionResponseOptional =
-        getTransactionResponseByUid(idempotencyKey, customerUid);
+  /**
+   * Runs a statement that locks the customer row under the configured lock timeout and records how
+   * long it waited. A timeout is reported as {@link CustomerLockTimeoutException} so that callers
+   * can retry instead of queueing on a hot customer while holding a pooled connection. Every
+   * posting locks its customer before writing, so this is also where the audit log takes over the
+   * transaction.
+   */
+  private <T> T withCustomerLock(UUID customerUid, Supplier<T> lockingStatement) {
+    Duration lockTimeout = transactionProperties.getLock().timeout();
+    if (auditLog.takeOverCurrentTransaction()) {
+      customerRepository.setLocalLockTimeoutSkippingAuditTriggers(lockTimeout);
+    } else if (lockTimeout.isPositive()) {
+      customerRepository.setLocalLockTimeout(lockTimeout);
+    }
 
-    if (transactionResponseOptional.isPresent()) {
-      return transactionResponseOptional.get();
+    long startedAt = System.nanoTime();
+    try {
+      T result = lockingStatement.get();
+      customerLockMonitor.recordAcquired(customerUid, System.nanoTime() - startedAt);
+      return result;
+    } catch (CannotAcquireLockException e) {
+      customerLockMonitor.recordTimedOut(customerUid, System.nanoTime() - startedAt);
+      log.warn("Lock of customer with uid {} not acquired within {}", customerUid, lockTimeout);
+      throw new CustomerLockTimeoutException(
+          "Customer with id: [%s] is busy, please retry".formatted(customerUid), e);
     }
+  }
 
-    var customer =
-        customerRepository
-            .getCustomerByUidForUpdate(customerUid)
+  private boolean isSingleStatementPosting(TransactionRequest request) {
+    return PostingMode.SINGLE_STATEMENT.equals(transactionProperties.getPosting().mode())
+        && !TransactionType.PARTIAL_REFUND.equals(request.transactionType());
+  }
+
+  private TransactionResponse postInSingleStatement(
+      UUID customerUid, TransactionRequest request, UUID idempotencyKey) {
+    var postingResult =
+        withCustomerLock(
+                customerUid,
+                () -> transactionRepository.postTransaction(customerUid, request, idempotencyKey))
             .orElseThrow(
                 () -> {
                   log.error("Customer with id {} not found", customerUid);
@@ -60,38 +365,59 @@ public class TransactionService {
                       "Customer with id: [%s] not found".formatted(customerUid));
                 });
 
-    validateCustomerBalance(customer.balance(), request);
-    if (TransactionType.PARTIAL_REFUND.equals(request.transactionType())) {
-      validateRefundTransaction(request.amount(), request.referenceUid(), customer.id());
+    if (Objects.isNull(postingResult.response())) {
+      Optional<TransactionResponse> postedResponse =
+          transactionMetrics.recordStage(
+              Stage.IDEMPOTENCY_LOOKUP,
+              request.transactionType(),
+              () -> getTransactionResponseByUid(idempotencyKey, customerUid));
+      if (postedResponse.isPresent()) {
+        ThreadLocalStorage.clear();
+        return postedResponse.get();
+      }
+
+      validateCustomerBalance(postingResult.balance(), request);
+      log.error("Idempotency key [{}] is used by another customer", idempotencyKey);
+      throw new IdempotencyKeyConflictException(
+          "Idempotency key [%s] is already used".formatted(idempotencyKey));
     }
 
-    var transactionResponse =
-        transactionRepository.processTransactionByCustomerId(
-            customer.id(), request, idempotencyKey);
     ThreadLocalStorage.clear();
-    return transactionResponse;
+    return postingResult.response();
   }
 
   private void validateRefundTransaction(
       BigDecimal refundAmount, UUID referenceUid, Long customerId) {
+    validateRefundOf(
+        findRefundedTransaction(referenceUid, customerId),
+        BigDecimal.ZERO,
+        refundAmount,
+        customerId);
+  }
+
+  private Transaction findRefundedTransaction(UUID referenceUid, Long customerId) {
     if (Objects.isNull(referenceUid)) {
       log.error("Reference transaction ID is required for refunds");
       throw new NoDataFoundException("Reference transaction ID is required for refunds");
     }
 
-    UUID customerUid = ThreadLocalStorage.getSessionUser().uid();
-
-    Transaction originalTnx =
-        transactionRepository
-            .findByUid(referenceUid, customerUid)
-            .orElseThrow(
-                () -> {
-                  log.error("Refund transaction with Reference uid {} not found", referenceUid);
-                  return new NoDataFoundException(
-                      "Refund transaction with Reference uid %s not found".formatted(referenceUid));
-                });
+    return transactionRepository
+        .findByUidForUpdate(referenceUid, customerId)
+        .orElseThrow(
+            () -> {
+              log.error("Refund transaction with Reference uid {} not found", referenceUid);
+              return new NoDataFoundException(
+                  "Refund transaction with Reference uid %s not found".formatted(referenceUid));
+            });
+  }
 
-    validateTotalRefundAmount(referenceUid, customerUid, originalTnx.amount(), refundAmount);
+  private void validateRefundOf(
+      Transaction originalTnx,
+      BigDecimal refundedInBatch,
+      BigDecimal refundAmount,
+      Long customerId) {
+    validateTotalRefundAmount(
+        originalTnx.refundedAmount().add(refundedInBatch), originalTnx.amount(), refundAmount);
 
     if (!originalTnx.customerId().equals(customerId)) {
       log.error("Refund must be issued to the original customer");
@@ -121,8 +447,7 @@ public class TransactionService {
   }
 
   private void validateTotalRefundAmount(
-      UUID referenceUid, UUID customerUid, BigDecimal originalAmount, BigDecimal refundAmount) {
-    var refundedAmount = transactionRepository.getTotalRefundedAmountBy(referenceUid, customerUid);
+      BigDecimal refundedAmount, BigDecimal originalAmount, BigDecimal refundAmount) {
     BigDecimal totalRefAmount = refundedAmount.add(refundAmount);
     if (totalRefAmount.compareTo(originalAmount) > 0) {
       throw new TransactionException(
@@ -145,6 +470,22 @@ public class TransactionService {
     }
   }
 
+  /**
+   * A retried request can fail validation only because its first attempt already moved the balance
+   * or the refundable amount. Such a request is answered with the stored transaction; anything
+   * else keeps its rejection. Only this failure path reads the key, the happy path claims it with
+   * the insert.
+   */
+  private TransactionResponse replayOrRethrow(
+      UUID idempotencyKey, UUID customerUid, TransactionType type, RuntimeException rejection) {
+    return transactionMetrics
+        .recordStage(
+            Stage.IDEMPOTENCY_LOOKUP,
+            type,
+            () -> getTransactionResponseByUid(idempotencyKey, customerUid))
+        .orElseThrow(() -> rejection);
+  }
+
   private Optional<TransactionResponse> getTransactionResponseByUid(
       UUID idempotencyKey, UUID customerUid) {
     var transactionOptional = transactionRepository.findByUid(idempotencyKey, customerUid);
@@ -171,4 +512,15 @@ public class TransactionService {
           "Amount must be greater than zero, amount: %f".formatted(amount));
     }
   }
+
+  /** Result of one posting of a batch or group: either its response or why it was rejected. */
+  public record PostingOutcome(TransactionResponse response, RuntimeException error) {
+    static PostingOutcome success(TransactionResponse response) {
+      return new PostingOutcome(response, null);
+    }
+
+    static PostingOutcome failure(RuntimeException error) {
+      return new PostingOutcome(null, error);
+    }
+  }
 }
@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-transactions-refund-lookup-index
+-- Partial covering index for refund validation: only refund rows are indexed and the amount is
+-- included, so the refund total of a purchase is an index-only scan regardless of history size.
+CREATE INDEX idx_transactions_refund_lookup
+    ON transactions (reference_uid, customer_id) INCLUDE (amount)
+    WHERE type = 'PARTIAL_REFUND' AND status IN ('COMPLETED', 'REFUNDED', 'PENDING');
+-- rollback DROP INDEX IF EXISTS idx_transactions_refund_lookup;
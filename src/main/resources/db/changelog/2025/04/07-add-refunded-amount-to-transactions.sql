@@ -0,0 +1,24 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:add-refunded-amount-to-transactions
+ALTER TABLE transactions
+    ADD COLUMN refunded_amount DECIMAL NOT NULL DEFAULT 0;
+-- rollback ALTER TABLE transactions DROP COLUMN refunded_amount;
+
+-- changeset ilkinmehdiyev:backfill-transactions-refunded-amount
+UPDATE transactions purchase
+SET refunded_amount = refunds.total
+FROM (SELECT reference_uid, customer_id, SUM(amount) AS total
+      FROM transactions
+      WHERE type = 'PARTIAL_REFUND'
+        AND status IN ('COMPLETED', 'REFUNDED', 'PENDING')
+      GROUP BY reference_uid, customer_id) refunds
+WHERE purchase.uid = refunds.reference_uid
+  AND purchase.customer_id = refunds.customer_id
+  AND purchase.type = 'PURCHASE';
+-- rollback UPDATE transactions SET refunded_amount = 0;
+
+-- changeset ilkinmehdiyev:add-transactions-refunded-amount-check
+ALTER TABLE transactions
+    ADD CONSTRAINT chk_refunded_amount CHECK (refunded_amount >= 0 AND refunded_amount <= amount);
+-- rollback ALTER TABLE transactions DROP CONSTRAINT chk_refunded_amount;
@@ -0,0 +1,11 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-transactions-history-index
+-- Serves the transaction history pages: rows of one customer are read in (transaction_date, id)
+-- order starting right after the cursor, so a deep page costs the same as the first one. The
+-- customer_id prefix also covers what idx_transactions_customer was used for.
+CREATE INDEX idx_transactions_customer_history
+    ON transactions (customer_id, transaction_date DESC, id DESC);
+DROP INDEX IF EXISTS idx_transactions_customer;
+-- rollback CREATE INDEX idx_transactions_customer ON transactions (customer_id);
+-- rollback DROP INDEX IF EXISTS idx_transactions_customer_history;
@@ -0,0 +1,15 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-balance-snapshots-table
+-- Balance of a customer at taken_at, before any transaction dated at or after it. Snapshots are
+-- derived from customers.balance and transactions, so they go away with their customer.
+CREATE TABLE balance_snapshots
+(
+    customer_id BIGINT      NOT NULL,
+    taken_at    TIMESTAMPTZ NOT NULL,
+    balance     DECIMAL     NOT NULL,
+    created_at  TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (customer_id, taken_at),
+    CONSTRAINT fk_customer_id FOREIGN KEY (customer_id) REFERENCES customers (id) ON DELETE CASCADE
+);
+-- rollback DROP TABLE balance_snapshots;
@@ -0,0 +1,19 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-balance-discrepancies-table
+-- Customers whose balance did not match the one implied by their transactions in a
+-- reconciliation run.
+CREATE TABLE balance_discrepancies
+(
+    id               BIGSERIAL PRIMARY KEY NOT NULL,
+    customer_id      BIGINT                NOT NULL,
+    recorded_balance DECIMAL               NOT NULL,
+    ledger_balance   DECIMAL               NOT NULL,
+    detected_at      TIMESTAMPTZ           NOT NULL DEFAULT now(),
+    CONSTRAINT fk_customer_id FOREIGN KEY (customer_id) REFERENCES customers (id) ON DELETE CASCADE
+);
+-- rollback DROP TABLE balance_discrepancies;
+
+-- changeset ilkinmehdiyev:create-balance-discrepancies-customer-index
+CREATE INDEX idx_balance_discrepancies_customer ON balance_discrepancies (customer_id, detected_at);
+-- rollback DROP INDEX IF EXISTS idx_balance_discrepancies_customer;
@@ -0,0 +1,24 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:skip-transactions-log-trigger-when-audited-by-application
+-- Transactions that set audit.skip_triggers write their audit rows from the application.
+DROP TRIGGER IF EXISTS log_transactions ON transactions;
+CREATE TRIGGER log_transactions
+    AFTER INSERT OR UPDATE OR DELETE
+    ON transactions
+    FOR EACH ROW
+    WHEN (current_setting('audit.skip_triggers', true) IS DISTINCT FROM 'on')
+EXECUTE PROCEDURE insert_transactions_log_row();
+-- rollback DROP TRIGGER IF EXISTS log_transactions ON transactions;
+-- rollback CREATE TRIGGER log_transactions AFTER INSERT OR UPDATE OR DELETE ON transactions FOR EACH ROW EXECUTE PROCEDURE insert_transactions_log_row();
+
+-- changeset ilkinmehdiyev:skip-customers-log-trigger-when-audited-by-application
+DROP TRIGGER IF EXISTS log_customers ON customers;
+CREATE TRIGGER log_customers
+    AFTER INSERT OR UPDATE OR DELETE
+    ON customers
+    FOR EACH ROW
+    WHEN (current_setting('audit.skip_triggers', true) IS DISTINCT FROM 'on')
+EXECUTE PROCEDURE insert_customers_log_row();
+-- rollback DROP TRIGGER IF EXISTS log_customers ON customers;
+-- rollback CREATE TRIGGER log_customers AFTER INSERT OR UPDATE OR DELETE ON customers FOR EACH ROW EXECUTE PROCEDURE insert_customers_log_row();
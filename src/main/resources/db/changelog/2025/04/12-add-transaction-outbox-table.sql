@@ -0,0 +1,18 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-transaction-outbox-table
+-- Posted transactions waiting to be published, written in the posting's own database
+-- transaction and deleted once the relay has handed them to the sink.
+CREATE TABLE transaction_outbox
+(
+    id               BIGSERIAL PRIMARY KEY NOT NULL,
+    transaction_uid  UUID                  NOT NULL,
+    customer_id      BIGINT                NOT NULL,
+    type             VARCHAR(16)           NOT NULL,
+    amount           DECIMAL               NOT NULL,
+    status           VARCHAR(10)           NOT NULL,
+    transaction_date TIMESTAMPTZ           NOT NULL,
+    reference_uid    UUID,
+    created_at       TIMESTAMPTZ           NOT NULL DEFAULT now()
+);
+-- rollback DROP TABLE transaction_outbox;
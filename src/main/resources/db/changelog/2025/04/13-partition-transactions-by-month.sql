@@ -0,0 +1,147 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-transaction-keys-table
+-- A unique constraint on a partitioned table must include the partition key, so uid alone can no
+-- longer be unique on transactions. Every transaction registers its uid here first: the primary
+-- key keeps idempotency keys unique across all partitions, and the stored date lets uid lookups
+-- read a single partition.
+CREATE TABLE transaction_keys
+(
+    uid              UUID PRIMARY KEY NOT NULL,
+    customer_id      BIGINT           NOT NULL,
+    transaction_date TIMESTAMPTZ      NOT NULL
+);
+-- rollback DROP TABLE transaction_keys;
+
+-- changeset ilkinmehdiyev:create-transactions-partition-function runOnChange:true splitStatements:false
+-- Creates the partition of the UTC month starting at the given date unless it exists. The table is
+-- built standalone and attached, which locks transactions less than CREATE TABLE ... PARTITION OF,
+-- and rows of that month which landed in the default partition are moved into it first.
+CREATE OR REPLACE FUNCTION create_transactions_partition(partition_month DATE)
+    RETURNS BOOLEAN
+    SET lock_timeout = '5s'
+    SET audit.skip_triggers = 'on'
+AS
+$$
+DECLARE
+    partition_name TEXT        := 'transactions_' || to_char(partition_month, 'YYYY_MM');
+    -- Both bounds are UTC month starts; adding a month to a TIMESTAMPTZ would follow the session
+    -- time zone and leave gaps or overlaps around DST changes.
+    lower_bound    TIMESTAMPTZ := date_trunc('month', partition_month::TIMESTAMP) AT TIME ZONE 'UTC';
+    upper_bound    TIMESTAMPTZ := (date_trunc('month', partition_month::TIMESTAMP) + INTERVAL '1 month')
+                                      AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                   partition_name);
+    IF to_regclass('transactions_default') IS NOT NULL THEN
+        EXECUTE format('WITH moved AS (DELETE FROM transactions_default'
+                           || ' WHERE transaction_date >= %L AND transaction_date < %L RETURNING *)'
+                           || ' INSERT INTO %I SELECT * FROM moved',
+                       lower_bound, upper_bound, partition_name);
+    END IF;
+    EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, lower_bound, upper_bound);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+-- rollback DROP FUNCTION IF EXISTS create_transactions_partition(DATE);
+
+-- changeset ilkinmehdiyev:partition-transactions-by-month
+-- Rewrites transactions into a table partitioned by UTC month of transaction_date, so that old
+-- months can be vacuumed, reindexed and archived one partition at a time. The copy rewrites the
+-- whole table and must run in a maintenance window. Partitions cover the months from the oldest
+-- transaction to three months ahead; TransactionPartitionJob keeps creating the months ahead, and
+-- the default partition holds rows dated outside them. The log trigger is created after the copy,
+-- so moved rows are not logged again, and idx_transactions_date is not recreated: date ranges are
+-- served by partition pruning.
+ALTER SEQUENCE transactions_id_seq OWNED BY NONE;
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER INDEX transactions_pkey RENAME TO transactions_unpartitioned_pkey;
+
+CREATE TABLE transactions
+(
+    id               BIGINT      NOT NULL DEFAULT nextval('transactions_id_seq'),
+    uid              UUID        NOT NULL,
+    customer_id      BIGINT      NOT NULL,
+    type             VARCHAR(16) NOT NULL,
+    amount           DECIMAL     NOT NULL,
+    description      VARCHAR(255),
+    transaction_date TIMESTAMPTZ NOT NULL DEFAULT now(),
+    reference_uid    UUID,
+    status           VARCHAR(10) NOT NULL,
+    created_at       TIMESTAMPTZ NOT NULL DEFAULT now(),
+    created_by       VARCHAR(50) NOT NULL DEFAULT 'system',
+    refunded_amount  DECIMAL     NOT NULL DEFAULT 0,
+
+    CONSTRAINT transactions_pkey PRIMARY KEY (id, transaction_date),
+    CONSTRAINT fk_transactions_customer FOREIGN KEY (customer_id) REFERENCES customers (id),
+    CONSTRAINT chk_transaction_type CHECK (type IN ('TOP_UP', 'PURCHASE', 'REFUND', 'PARTIAL_REFUND')),
+    CONSTRAINT chk_transaction_status CHECK (status IN ('COMPLETED', 'FAILED', 'PENDING', 'REFUNDED')),
+    CONSTRAINT chk_refunded_amount CHECK (refunded_amount >= 0 AND refunded_amount <= amount)
+) PARTITION BY RANGE (transaction_date);
+
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+SELECT create_transactions_partition(month::DATE)
+FROM generate_series(
+             date_trunc('month', COALESCE((SELECT min(transaction_date) FROM transactions_unpartitioned), now())
+                                 AT TIME ZONE 'UTC'),
+             date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '3 months',
+             INTERVAL '1 month') AS month;
+
+INSERT INTO transactions
+(id, uid, customer_id, type, amount, description, transaction_date, reference_uid, status, created_at,
+ created_by, refunded_amount)
+SELECT id, uid, customer_id, type, amount, description, transaction_date, reference_uid, status, created_at,
+       created_by, refunded_amount
+FROM transactions_unpartitioned;
+
+INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+SELECT uid, customer_id, transaction_date
+FROM transactions_unpartitioned;
+
+DROP TABLE transactions_unpartitioned;
+ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id;
+
+CREATE INDEX idx_transactions_uid ON transactions (uid);
+CREATE INDEX idx_transactions_customer_history
+    ON transactions (customer_id, transaction_date DESC, id DESC);
+CREATE INDEX idx_transactions_refund_lookup
+    ON transactions (reference_uid, customer_id) INCLUDE (amount)
+    WHERE type = 'PARTIAL_REFUND' AND status IN ('COMPLETED', 'REFUNDED', 'PENDING');
+
+CREATE TRIGGER log_transactions
+    AFTER INSERT OR UPDATE OR DELETE
+    ON transactions
+    FOR EACH ROW
+    WHEN (current_setting('audit.skip_triggers', true) IS DISTINCT FROM 'on')
+EXECUTE PROCEDURE insert_transactions_log_row();
+-- rollback ALTER SEQUENCE transactions_id_seq OWNED BY NONE;
+-- rollback ALTER TABLE transactions RENAME TO transactions_partitioned;
+-- rollback ALTER INDEX transactions_pkey RENAME TO transactions_partitioned_pkey;
+-- rollback CREATE TABLE transactions (LIKE transactions_partitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS);
+-- rollback INSERT INTO transactions SELECT * FROM transactions_partitioned;
+-- rollback DROP TABLE transactions_partitioned;
+-- rollback ALTER TABLE transactions ADD CONSTRAINT transactions_pkey PRIMARY KEY (id), ADD CONSTRAINT uq_idempotency_key UNIQUE (uid), ADD CONSTRAINT fk_transactions_customer FOREIGN KEY (customer_id) REFERENCES customers (id);
+-- rollback ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id;
+-- rollback CREATE INDEX idx_transactions_uid ON transactions (uid);
+-- rollback CREATE INDEX idx_transactions_date ON transactions (transaction_date);
+-- rollback CREATE INDEX idx_transactions_customer_history ON transactions (customer_id, transaction_date DESC, id DESC);
+-- rollback CREATE INDEX idx_transactions_refund_lookup ON transactions (reference_uid, customer_id) INCLUDE (amount) WHERE type = 'PARTIAL_REFUND' AND status IN ('COMPLETED', 'REFUNDED', 'PENDING');
+-- rollback CREATE TRIGGER log_transactions AFTER INSERT OR UPDATE OR DELETE ON transactions FOR EACH ROW WHEN (current_setting('audit.skip_triggers', true) IS DISTINCT FROM 'on') EXECUTE PROCEDURE insert_transactions_log_row();
+
+-- changeset ilkinmehdiyev:add-transactions-key-foreign-key
+-- Every transaction must have its key with the same date, or uid lookups would miss it and its uid
+-- could be reused. The check is an index lookup per insert; it runs at the end of the statement, so
+-- the key and the transaction can still be inserted by one statement.
+ALTER TABLE transaction_keys
+    ADD CONSTRAINT uk_transaction_keys_uid_date UNIQUE (uid, transaction_date);
+ALTER TABLE transactions
+    ADD CONSTRAINT fk_transactions_key FOREIGN KEY (uid, transaction_date)
+        REFERENCES transaction_keys (uid, transaction_date);
+-- rollback ALTER TABLE transactions DROP CONSTRAINT fk_transactions_key;
+-- rollback ALTER TABLE transaction_keys DROP CONSTRAINT uk_transaction_keys_uid_date;
@@ -0,0 +1,137 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:create-transactions-archive-table
+-- Transactions past the retention. Archived monthly partitions are detached from transactions and
+-- attached here unchanged, so archiving a month copies nothing; rows of transactions_before are
+-- moved into transactions_archive_default in chunks. The indexes match those of transactions,
+-- so that attaching a partition reuses its indexes instead of building new ones.
+CREATE TABLE transactions_archive (LIKE transactions INCLUDING DEFAULTS) PARTITION BY RANGE (transaction_date);
+ALTER TABLE transactions_archive
+    ADD CONSTRAINT transactions_archive_pkey PRIMARY KEY (id, transaction_date);
+CREATE TABLE transactions_archive_default PARTITION OF transactions_archive DEFAULT;
+
+CREATE INDEX idx_transactions_archive_uid ON transactions_archive (uid);
+CREATE INDEX idx_transactions_archive_customer_history
+    ON transactions_archive (customer_id, transaction_date DESC, id DESC);
+CREATE INDEX idx_transactions_archive_refund_lookup
+    ON transactions_archive (reference_uid, customer_id) INCLUDE (amount)
+    WHERE type = 'PARTIAL_REFUND' AND status IN ('COMPLETED', 'REFUNDED', 'PENDING');
+-- rollback DROP TABLE transactions_archive;
+
+-- changeset ilkinmehdiyev:create-transactions-with-archive-view
+-- Reads that may reach past the retention: statements, balances at a point in time and
+-- reconciliation. Predicates are pushed into both branches, so date ranges still prune partitions.
+CREATE VIEW transactions_with_archive AS
+SELECT *
+FROM transactions
+UNION ALL
+SELECT *
+FROM transactions_archive;
+-- rollback DROP VIEW transactions_with_archive;
+
+-- changeset ilkinmehdiyev:create-transactions-log-archive-table
+-- Log rows past the retention, moved in chunks oldest first. Only looked up by transaction.
+CREATE TABLE transactions_log_archive (LIKE transactions_log INCLUDING DEFAULTS);
+CREATE INDEX idx_transactions_log_archive_transaction_id ON transactions_log_archive (transaction_id);
+CREATE INDEX idx_transactions_log_created ON transactions_log (log_created);
+-- rollback DROP INDEX IF EXISTS idx_transactions_log_created;
+-- rollback DROP TABLE transactions_log_archive;
+
+-- changeset ilkinmehdiyev:replace-transactions-default-partition splitStatements:false
+-- DETACH PARTITION ... CONCURRENTLY is not allowed while a table has a default partition, so the
+-- default partition of transactions becomes transactions_before, a range partition of everything
+-- before the first monthly partition. Rows of later months move to monthly partitions first. From
+-- now on a row dated after the last monthly partition is rejected, so TransactionPartitionJob must
+-- keep the months ahead created.
+DO
+$$
+DECLARE
+    first_month  DATE;
+    before_bound TIMESTAMPTZ;
+BEGIN
+    PERFORM set_config('audit.skip_triggers', 'on', true);
+    ALTER TABLE transactions DETACH PARTITION transactions_default;
+    ALTER TABLE transactions_default RENAME TO transactions_before;
+
+    SELECT COALESCE(min(to_date(substring(c.relname FROM 14), 'YYYY_MM')),
+                    date_trunc('month', now() AT TIME ZONE 'UTC')::DATE)
+    INTO first_month
+    FROM pg_inherits i
+             JOIN pg_class c ON c.oid = i.inhrelid
+    WHERE i.inhparent = 'transactions'::REGCLASS
+      AND c.relname ~ '^transactions_[0-9]{4}_[0-9]{2}$';
+    before_bound := first_month::TIMESTAMP AT TIME ZONE 'UTC';
+
+    PERFORM create_transactions_partition(month::DATE)
+    FROM (SELECT DISTINCT date_trunc('month', transaction_date AT TIME ZONE 'UTC') AS month
+          FROM transactions_before
+          WHERE transaction_date >= before_bound) months;
+    WITH moved AS (DELETE FROM transactions_before WHERE transaction_date >= before_bound RETURNING *)
+    INSERT INTO transactions
+    SELECT *
+    FROM moved;
+
+    EXECUTE format('ALTER TABLE transactions ATTACH PARTITION transactions_before'
+                       || ' FOR VALUES FROM (MINVALUE) TO (%L)', before_bound);
+END;
+$$;
+-- rollback ALTER TABLE transactions DETACH PARTITION transactions_before;
+-- rollback ALTER TABLE transactions_before RENAME TO transactions_default;
+-- rollback ALTER TABLE transactions ATTACH PARTITION transactions_default DEFAULT;
+
+-- changeset ilkinmehdiyev:replace-transactions-partition-function runOnChange:true splitStatements:false
+-- Without a default partition there are no rows to move into a new month, so the partition is only
+-- created and attached.
+CREATE OR REPLACE FUNCTION create_transactions_partition(partition_month DATE)
+    RETURNS BOOLEAN
+    SET lock_timeout = '5s'
+AS
+$$
+DECLARE
+    partition_name TEXT        := 'transactions_' || to_char(partition_month, 'YYYY_MM');
+    lower_bound    TIMESTAMPTZ := date_trunc('month', partition_month::TIMESTAMP) AT TIME ZONE 'UTC';
+    upper_bound    TIMESTAMPTZ := (date_trunc('month', partition_month::TIMESTAMP) + INTERVAL '1 month')
+                                      AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                   partition_name);
+    EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, lower_bound, upper_bound);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+-- rollback empty
+
+-- changeset ilkinmehdiyev:create-archive-transactions-partition-function runOnChange:true splitStatements:false
+-- Attaches the partition of the UTC month starting at the given date, once detached from
+-- transactions, to transactions_archive. The detach runs CONCURRENTLY, which is not possible inside
+-- a function, so TransactionArchiver issues it first. The foreign keys are dropped because archived
+-- rows outlive the rules of the hot table; the log trigger went away with the detach.
+CREATE OR REPLACE FUNCTION archive_transactions_partition(partition_month DATE)
+    RETURNS BOOLEAN
+    SET lock_timeout = '5s'
+AS
+$$
+DECLARE
+    partition_name TEXT        := 'transactions_' || to_char(partition_month, 'YYYY_MM');
+    lower_bound    TIMESTAMPTZ := date_trunc('month', partition_month::TIMESTAMP) AT TIME ZONE 'UTC';
+    upper_bound    TIMESTAMPTZ := (date_trunc('month', partition_month::TIMESTAMP) + INTERVAL '1 month')
+                                      AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition_name) IS NULL
+        OR EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = to_regclass(partition_name)) THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT IF EXISTS fk_transactions_customer', partition_name);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT IF EXISTS fk_transactions_key', partition_name);
+    EXECUTE format('ALTER TABLE transactions_archive ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, lower_bound, upper_bound);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+-- rollback DROP FUNCTION IF EXISTS archive_transactions_partition(DATE);
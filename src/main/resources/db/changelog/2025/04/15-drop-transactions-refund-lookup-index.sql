@@ -0,0 +1,10 @@
+-- liquibase formatted sql
+
+-- changeset ilkinmehdiyev:drop-transactions-refund-lookup-index
+-- Refunds are validated against refunded_amount on the purchase, so nothing sums refund rows any
+-- more and the indexes were only maintained on every posting. Dropping the partitioned parents
+-- drops their partitions' indexes as well.
+DROP INDEX IF EXISTS idx_transactions_refund_lookup;
+DROP INDEX IF EXISTS idx_transactions_archive_refund_lookup;
+-- rollback CREATE INDEX idx_transactions_refund_lookup ON transactions (reference_uid, customer_id) INCLUDE (amount) WHERE type = 'PARTIAL_REFUND' AND status IN ('COMPLETED', 'REFUNDED', 'PENDING');
+-- rollback CREATE INDEX idx_transactions_archive_refund_lookup ON transactions_archive (reference_uid, customer_id) INCLUDE (amount) WHERE type = 'PARTIAL_REFUND' AND status IN ('COMPLETED', 'REFUNDED', 'PENDING');
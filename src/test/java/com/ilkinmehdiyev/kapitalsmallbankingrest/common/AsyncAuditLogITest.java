@@ -0,0 +1,219 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.AuditLogRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionService;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs against the application's own Hikari pool, since the background writer and the postings
+ * use connections concurrently and cannot share the single connection of {@code
+ * TestLiquibaseConfig}.
+ */
+@SpringBootTest(properties = "audit.mode=ASYNC")
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+class AsyncAuditLogITest {
+  private static final int POSTINGS = 5;
+
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private TransactionService transactionService;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private AuditLogRepository auditLogRepository;
+
+  private Long customerId;
+  private UUID customerUid;
+
+  @BeforeEach
+  void setUp() {
+    customerUid = UUID.randomUUID();
+    customerId =
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    RETURNING id
+                    """)
+            .params(
+                customerUid,
+                "Nigar",
+                "Huseynova",
+                new BigDecimal("100.00"),
+                "+994557654321",
+                LocalDate.now().minusYears(25),
+                "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+            .query(Long.class)
+            .single();
+  }
+
+  @AfterEach
+  void tearDown() {
+    ThreadLocalStorage.clear();
+    jdbcClient
+        .sql("DELETE FROM transactions WHERE customer_id = :customerId")
+        .param("customerId", customerId)
+        .update();
+    jdbcClient.sql("DELETE FROM customers WHERE id = :id").param("id", customerId).update();
+  }
+
+  @Test
+  @DisplayName("Should write one log row per change of committed postings and none of rolled back")
+  void shouldWriteLogRowsOfCommittedPostingsOnly() {
+    var transactionTemplate = new TransactionTemplate(transactionManager);
+    UUID rolledBackKey = UUID.randomUUID();
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          post(rolledBackKey);
+          status.setRollbackOnly();
+        });
+
+    List<UUID> committedKeys = new ArrayList<>();
+    for (int i = 0; i < POSTINGS; i++) {
+      UUID idempotencyKey = UUID.randomUUID();
+      post(idempotencyKey);
+      committedKeys.add(idempotencyKey);
+    }
+
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .untilAsserted(() -> assertThat(customerUpdateLogRows()).isEqualTo(POSTINGS));
+    for (UUID idempotencyKey : committedKeys) {
+      assertThat(transactionLogRows(idempotencyKey))
+          .containsExactly("I:null>PENDING", "U:PENDING>COMPLETED");
+    }
+    assertThat(
+            jdbcClient
+                .sql("SELECT count(*) FROM transactions WHERE uid = :uid")
+                .param("uid", rolledBackKey)
+                .query(Long.class)
+                .single())
+        .isZero();
+    assertThat(
+            jdbcClient
+                .sql("SELECT balance FROM customers WHERE id = :id")
+                .param("id", customerId)
+                .query(BigDecimal.class)
+                .single())
+        .isEqualByComparingTo("150.00");
+  }
+
+  @Test
+  @DisplayName("Should write events in the committing transaction when nothing can be queued")
+  void shouldWriteEventsBeforeCommitWhenNothingCanBeQueued() {
+    // Never started, so there is no queue space to reserve.
+    var auditLog =
+        new AsyncAuditLog(
+            auditLogRepository,
+            transactionManager,
+            new SimpleMeterRegistry(),
+            1,
+            10,
+            Duration.ofMillis(100),
+            Duration.ofSeconds(1));
+    var transactionTemplate = new TransactionTemplate(transactionManager);
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          auditLog.takeOverCurrentTransaction();
+          auditLog.customerUpdated(customerUid);
+          status.setRollbackOnly();
+        });
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          auditLog.takeOverCurrentTransaction();
+          auditLog.customerUpdated(customerUid);
+        });
+
+    assertThat(customerUpdateLogRows()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should stop retrying a failing batch once stopped instead of blocking shutdown")
+  void shouldStopRetryingFailingBatchOnceStopped() {
+    AuditLogRepository failingRepository = mock(AuditLogRepository.class);
+    doThrow(new QueryTimeoutException("Database is down")).when(failingRepository).insert(any());
+    var auditLog =
+        new AsyncAuditLog(
+            failingRepository,
+            transactionManager,
+            new SimpleMeterRegistry(),
+            10,
+            10,
+            Duration.ofMillis(100),
+            Duration.ofSeconds(30));
+    auditLog.start();
+
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              auditLog.takeOverCurrentTransaction();
+              auditLog.customerUpdated(customerUid);
+            });
+    await()
+        .atMost(Duration.ofSeconds(5))
+        .untilAsserted(() -> verify(failingRepository, atLeastOnce()).insert(any()));
+
+    assertTimeout(Duration.ofSeconds(5), auditLog::stop);
+    assertThat(auditLog.isRunning()).isFalse();
+  }
+
+  private void post(UUID idempotencyKey) {
+    ThreadLocalStorage.setSessionUser(new SessionUser(customerId, customerUid, "+994557654321"));
+    transactionService.processTransaction(
+        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("10.00")), idempotencyKey);
+  }
+
+  private long customerUpdateLogRows() {
+    return jdbcClient
+        .sql("SELECT count(*) FROM customers_log WHERE customer_id = :id AND operation = 'U'")
+        .param("id", customerId)
+        .query(Long.class)
+        .single();
+  }
+
+  private List<String> transactionLogRows(UUID transactionUid) {
+    return jdbcClient
+        .sql(
+            """
+                SELECT l.operation || ':' || COALESCE(l.previous_status, 'null') || '>'
+                           || l.new_status
+                FROM transactions_log l
+                    JOIN transactions t ON t.id = l.transaction_id
+                WHERE t.uid = :uid
+                ORDER BY l.id
+                """)
+        .param("uid", transactionUid)
+        .query(String.class)
+        .list();
+  }
+}
@@ -0,0 +1,84 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.CustomerLockMonitor.HotCustomer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Batch;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.GroupCommit;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Lock;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Posting;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.PostingMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Serialization;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CustomerLockMonitorUTest {
+  private SimpleMeterRegistry meterRegistry;
+  private CustomerLockMonitor customerLockMonitor;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    customerLockMonitor =
+        new CustomerLockMonitor(
+            meterRegistry,
+            new TransactionProperties(
+                new Posting(PostingMode.STANDARD),
+                new Batch(500),
+                new Lock(Duration.ofSeconds(2), 100),
+                new Serialization(true, 16),
+                new GroupCommit(false, 100)));
+  }
+
+  @Test
+  @DisplayName("Should rank customers by total lock wait")
+  void shouldRankCustomersByTotalLockWait() {
+    UUID hotCustomer = UUID.randomUUID();
+    UUID coldCustomer = UUID.randomUUID();
+
+    customerLockMonitor.recordAcquired(coldCustomer, Duration.ofMillis(5).toNanos());
+    customerLockMonitor.recordAcquired(hotCustomer, Duration.ofMillis(40).toNanos());
+    customerLockMonitor.recordTimedOut(hotCustomer, Duration.ofSeconds(2).toNanos());
+
+    List<HotCustomer> hottest = customerLockMonitor.hottestCustomers(1);
+
+    assertThat(hottest)
+        .singleElement()
+        .satisfies(
+            customer -> {
+              assertThat(customer.customerUid()).isEqualTo(hotCustomer);
+              assertThat(customer.acquisitions()).isEqualTo(1);
+              assertThat(customer.timeouts()).isEqualTo(1);
+              assertThat(customer.totalWait()).isEqualTo(Duration.ofMillis(2040));
+              assertThat(customer.maxWait()).isEqualTo(Duration.ofSeconds(2));
+            });
+  }
+
+  @Test
+  @DisplayName("Should record lock waits in the histogram tagged by outcome")
+  void shouldRecordLockWaitsByOutcome() {
+    customerLockMonitor.recordAcquired(UUID.randomUUID(), 1_000);
+    customerLockMonitor.recordTimedOut(UUID.randomUUID(), 2_000);
+
+    assertThat(
+            meterRegistry
+                .get(CustomerLockMonitor.LOCK_WAIT_TIMER)
+                .tag("outcome", "acquired")
+                .timer()
+                .count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get(CustomerLockMonitor.LOCK_WAIT_TIMER)
+                .tag("outcome", "timeout")
+                .timer()
+                .count())
+        .isEqualTo(1);
+  }
+}
@@ -0,0 +1,73 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics.Stage;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TransactionMetricsUTest {
+  private SimpleMeterRegistry meterRegistry;
+  private TransactionMetrics transactionMetrics;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    transactionMetrics = new TransactionMetrics(meterRegistry);
+  }
+
+  @Test
+  @DisplayName("Should time a successful stage tagged by stage, type and outcome")
+  void shouldTimeSuccessfulStage() {
+    Integer result =
+        transactionMetrics.recordStage(Stage.CUSTOMER_LOCK, TransactionType.PURCHASE, () -> 42);
+
+    assertThat(result).isEqualTo(42);
+    Timer timer =
+        meterRegistry
+            .get(TransactionMetrics.STAGE_TIMER)
+            .tags("stage", "customer_lock", "type", "PURCHASE", "outcome", "success")
+            .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should tag a failed stage with the exception name and rethrow it")
+  void shouldTagFailedStageWithExceptionName() {
+    assertThatThrownBy(
+            () ->
+                transactionMetrics.recordStage(
+                    Stage.REFUND_VALIDATION,
+                    TransactionType.PARTIAL_REFUND,
+                    () -> {
+                      throw new TransferRequestException("Insufficient balance");
+                    }))
+        .isInstanceOf(TransferRequestException.class);
+
+    Timer timer =
+        meterRegistry
+            .get(TransactionMetrics.STAGE_TIMER)
+            .tags("stage", "refund_validation", "outcome", "TransferRequestException")
+            .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should time batch processing under the BATCH type")
+  void shouldTimeBatchProcessing() {
+    transactionMetrics.recordBatchProcessing(() -> "done");
+
+    Timer timer =
+        meterRegistry
+            .get(TransactionMetrics.PROCESSING_TIMER)
+            .tags("type", TransactionMetrics.BATCH_TYPE, "outcome", "success")
+            .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,139 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.ReplicaLagMonitor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs against the application's own pools. The container has no standby, so the replica pool
+ * connects to the same database as a role that can only read; {@code current_user} then tells which
+ * pool served a statement.
+ */
+@SpringBootTest(
+    properties = {
+      "replica.enabled=true",
+      "replica.username=" + ReplicaRoutingDataSourceITest.REPLICA_ROLE,
+      "replica.password=" + ReplicaRoutingDataSourceITest.REPLICA_ROLE,
+      "replica.lagCheckInterval=1h"
+    })
+@ContextConfiguration(
+    initializers = {
+      PostgresSQLEmbeddedContainer.Initializer.class,
+      ReplicaRoutingDataSourceITest.ReplicaInitializer.class
+    })
+class ReplicaRoutingDataSourceITest {
+  static final String REPLICA_ROLE = "replica_reader";
+
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private ReplicaLagMonitor replicaLagMonitor;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private HealthEndpoint healthEndpoint;
+
+  private TransactionTemplate readOnlyTransaction;
+  private TransactionTemplate readWriteTransaction;
+
+  @BeforeEach
+  void setUp() {
+    readOnlyTransaction = new TransactionTemplate(transactionManager);
+    readOnlyTransaction.setReadOnly(true);
+    readWriteTransaction = new TransactionTemplate(transactionManager);
+    replicaLagMonitor.checkLag();
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcClient.sql("ALTER ROLE " + REPLICA_ROLE + " LOGIN").update();
+  }
+
+  @Test
+  @DisplayName("Should serve read-only transactions from the replica and the rest from the primary")
+  void shouldServeReadOnlyTransactionsFromReplica() {
+    assertThat(replicaLagMonitor.isReplicaUsable()).isTrue();
+
+    assertThat(readOnlyTransaction.execute(status -> currentUser())).isEqualTo(REPLICA_ROLE);
+    assertThat(readWriteTransaction.execute(status -> currentUser()))
+        .isEqualTo(PostgresSQLEmbeddedContainer.INSTANCE.getUsername());
+    assertThat(currentUser()).isEqualTo(PostgresSQLEmbeddedContainer.INSTANCE.getUsername());
+  }
+
+  @Test
+  @DisplayName("Should fall back to the primary and stay up while the replica is down")
+  void shouldFallBackToPrimaryWhileReplicaIsDown() {
+    jdbcClient.sql("ALTER ROLE " + REPLICA_ROLE + " NOLOGIN").update();
+    jdbcClient
+        .sql("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE usename = :role")
+        .param("role", REPLICA_ROLE)
+        .query()
+        .listOfRows();
+
+    replicaLagMonitor.checkLag();
+
+    assertThat(replicaLagMonitor.isReplicaUsable()).isFalse();
+    assertThat(readOnlyTransaction.execute(status -> currentUser()))
+        .isEqualTo(PostgresSQLEmbeddedContainer.INSTANCE.getUsername());
+    assertThat(healthEndpoint.health().getStatus()).isEqualTo(Status.UP);
+
+    jdbcClient.sql("ALTER ROLE " + REPLICA_ROLE + " LOGIN").update();
+    replicaLagMonitor.checkLag();
+
+    assertThat(replicaLagMonitor.isReplicaUsable()).isTrue();
+    assertThat(readOnlyTransaction.execute(status -> currentUser())).isEqualTo(REPLICA_ROLE);
+  }
+
+  private String currentUser() {
+    return jdbcClient.sql("SELECT current_user").query(String.class).single();
+  }
+
+  /** Creates the replica role and points the replica pool at the container. */
+  static class ReplicaInitializer
+      implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+    @Override
+    public void initialize(ConfigurableApplicationContext applicationContext) {
+      var container = PostgresSQLEmbeddedContainer.INSTANCE;
+      container.start();
+      try (Connection connection =
+              DriverManager.getConnection(
+                  container.getJdbcUrl(), container.getUsername(), container.getPassword());
+          Statement statement = connection.createStatement()) {
+        statement.execute(
+            """
+                DO
+                $$
+                    BEGIN
+                        IF NOT EXISTS (SELECT FROM pg_roles WHERE rolname = '%1$s') THEN
+                            CREATE ROLE %1$s LOGIN PASSWORD '%1$s' IN ROLE pg_read_all_data;
+                        END IF;
+                    END
+                $$;
+                ALTER ROLE %1$s LOGIN;
+                """
+                .formatted(REPLICA_ROLE));
+      } catch (SQLException e) {
+        throw new IllegalStateException("Failed to create the replica role", e);
+      }
+
+      TestPropertyValues.of("replica.url=".concat(container.getJdbcUrl()))
+          .applyTo(applicationContext.getEnvironment());
+    }
+  }
+}
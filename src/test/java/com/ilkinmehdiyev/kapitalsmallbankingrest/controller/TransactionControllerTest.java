@@ -10,6 +10,12 @@ import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItemResult;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryPage;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
@@ -17,6 +23,7 @@ import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.security.JwtService;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl.CustomUserDetails;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionHistoryService;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionService;
 import io.restassured.RestAssured;
 import io.restassured.config.LogConfig;
@@ -25,6 +32,7 @@ import io.restassured.filter.log.LogDetail;
 import io.restassured.http.ContentType;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -49,6 +57,7 @@ class TransactionControllerTest {
   @Autowired private ObjectMapper objectMapper;
 
   @MockitoBean private TransactionService transactionService;
+  @MockitoBean private TransactionHistoryService transactionHistoryService;
   @Autowired private JwtService jwtService;
 
   private final UUID customerUid = UUID.fromString("019630c5-eccf-7b24-b814-a39c97c64b8b");
@@ -222,6 +231,98 @@ class TransactionControllerTest {
         .body("data.transactionUid", is(transactionUid.toString()));
   }
 
+  @Test
+  @DisplayName("Should return per-item results for a batch of transactions")
+  void shouldProcessBatchOfTransactions() throws Exception {
+    UUID acceptedKey = UUID.randomUUID();
+    UUID rejectedKey = UUID.randomUUID();
+    BatchTransactionRequest request =
+        new BatchTransactionRequest(
+            List.of(
+                new BatchTransactionItem(
+                    acceptedKey, TransactionType.PURCHASE, new BigDecimal("10.00"), null),
+                new BatchTransactionItem(
+                    rejectedKey, TransactionType.PURCHASE, new BigDecimal("900.00"), null)));
+
+    when(transactionService.processBatch(any()))
+        .thenReturn(
+            List.of(
+                BatchTransactionItemResult.success(
+                    acceptedKey,
+                    new TransactionResponse(
+                        transactionUid, TransactionStatus.COMPLETED, Instant.now())),
+                BatchTransactionItemResult.failure(
+                    rejectedKey, "Customer does not have sufficient balance")));
+
+    given()
+        .contentType(ContentType.JSON)
+        .header("Authorization", "Bearer " + jwtToken)
+        .body(objectMapper.writeValueAsString(request))
+        .when()
+        .post(baseUrl + "/batch")
+        .then()
+        .log()
+        .ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("data[0].idempotencyKey", is(acceptedKey.toString()))
+        .body("data[0].transaction.status", equalTo("COMPLETED"))
+        .body("data[1].error", equalTo("Customer does not have sufficient balance"));
+  }
+
+  @Test
+  @DisplayName("Should return 400 for a batch item without idempotency key")
+  void shouldReturn400ForBatchItemWithoutIdempotencyKey() throws Exception {
+    BatchTransactionRequest request =
+        new BatchTransactionRequest(
+            List.of(
+                new BatchTransactionItem(
+                    null, TransactionType.TOP_UP, new BigDecimal("10.00"), null)));
+
+    given()
+        .contentType(ContentType.JSON)
+        .header("Authorization", "Bearer " + jwtToken)
+        .body(objectMapper.writeValueAsString(request))
+        .when()
+        .post(baseUrl + "/batch")
+        .then()
+        .log()
+        .ifValidationFails()
+        .statusCode(HttpStatus.BAD_REQUEST.value());
+  }
+
+  @Test
+  @DisplayName("Should return a page of transaction history with the next cursor")
+  void shouldReturnTransactionHistoryPage() {
+    Instant from = Instant.parse("2025-04-01T00:00:00Z");
+    var filter = new TransactionHistoryFilter(TransactionType.PURCHASE, null, from, null);
+    var item =
+        new TransactionHistoryItem(
+            transactionUid,
+            TransactionType.PURCHASE,
+            new BigDecimal("50.00"),
+            TransactionStatus.COMPLETED,
+            Instant.now(),
+            null);
+
+    when(transactionHistoryService.getHistory(filter, null, 1))
+        .thenReturn(new TransactionHistoryPage(List.of(item), "next"));
+
+    given()
+        .header("Authorization", "Bearer " + jwtToken)
+        .queryParam("type", "PURCHASE")
+        .queryParam("from", from.toString())
+        .queryParam("limit", 1)
+        .when()
+        .get(baseUrl)
+        .then()
+        .log()
+        .ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("data.items[0].transactionUid", is(transactionUid.toString()))
+        .body("data.items[0].type", equalTo("PURCHASE"))
+        .body("data.nextCursor", equalTo("next"));
+  }
+
   private void generateJwtToken() {
     CustomUserDetails userDetails =
         new CustomUserDetails(1L, customerUid, "password", "+994501234567");
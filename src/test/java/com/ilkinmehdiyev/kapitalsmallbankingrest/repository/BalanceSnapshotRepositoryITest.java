@@ -0,0 +1,149 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.BalanceProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.BalanceProperties.Snapshot;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.BalanceSnapshotJob;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+
+@SpringBootTest
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+@Import(TestLiquibaseConfig.class)
+class BalanceSnapshotRepositoryITest {
+  private static final Instant DAY_ONE = Instant.parse("2019-01-01T00:00:00Z");
+  private static final Instant DAY_TWO = Instant.parse("2019-01-02T00:00:00Z");
+
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private BalanceSnapshotRepository balanceSnapshotRepository;
+
+  private Long customerId;
+
+  /**
+   * Opening balance 100: a top-up of 50 on day one, then on day two a purchase of 20, a refund of
+   * 5 and a failed purchase of 30 that never touched the balance. Current balance is 135.
+   */
+  @BeforeEach
+  void setUp() {
+    customerId =
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    RETURNING id
+                    """)
+            .params(
+                UUID.randomUUID(),
+                "Rashad",
+                "Guliyev",
+                new BigDecimal("135.00"),
+                "+994505678901",
+                LocalDate.now().minusYears(35),
+                "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+            .query(Long.class)
+            .single();
+
+    insertTransaction("TOP_UP", "50.00", DAY_ONE.plusSeconds(36_000), "COMPLETED");
+    insertTransaction("PURCHASE", "20.00", DAY_TWO.plusSeconds(36_000), "COMPLETED");
+    insertTransaction("PARTIAL_REFUND", "5.00", DAY_TWO.plusSeconds(43_200), "REFUNDED");
+    insertTransaction("PURCHASE", "30.00", DAY_TWO.plusSeconds(50_400), "FAILED");
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcClient
+        .sql("DELETE FROM balance_snapshots WHERE taken_at < :dayThree")
+        .param("dayThree", Timestamp.from(DAY_TWO.plus(Duration.ofDays(1))))
+        .update();
+    jdbcClient
+        .sql("DELETE FROM transactions WHERE customer_id = :customerId")
+        .param("customerId", customerId)
+        .update();
+    jdbcClient
+        .sql("DELETE FROM customers WHERE id = :customerId")
+        .param("customerId", customerId)
+        .update();
+  }
+
+  @Test
+  @DisplayName("Should take the current balance back past later transactions without a snapshot")
+  void shouldTakeCurrentBalanceBackWithoutSnapshot() {
+    assertThat(balanceSnapshotRepository.findBalanceFromSnapshot(customerId, DAY_TWO)).isEmpty();
+    assertThat(balanceSnapshotRepository.findBalanceFromCurrent(customerId, DAY_ONE))
+        .hasValueSatisfying(balance -> assertThat(balance).isEqualByComparingTo("100.00"));
+    assertThat(balanceSnapshotRepository.findBalanceFromCurrent(customerId, DAY_TWO))
+        .hasValueSatisfying(balance -> assertThat(balance).isEqualByComparingTo("150.00"));
+  }
+
+  @Test
+  @DisplayName("Should add the transactions since the snapshot to the snapshot balance")
+  void shouldAddTransactionsSinceSnapshot() {
+    assertThat(balanceSnapshotRepository.insertSnapshots(DAY_TWO, customerId, customerId))
+        .isEqualTo(1);
+
+    assertThat(balanceSnapshotRepository.findBalanceFromSnapshot(customerId, DAY_TWO))
+        .hasValueSatisfying(balance -> assertThat(balance).isEqualByComparingTo("150.00"));
+    assertThat(
+            balanceSnapshotRepository.findBalanceFromSnapshot(
+                customerId, DAY_TWO.plusSeconds(40_000)))
+        .hasValueSatisfying(balance -> assertThat(balance).isEqualByComparingTo("130.00"));
+    assertThat(
+            balanceSnapshotRepository.findBalanceFromSnapshot(
+                customerId, DAY_TWO.plus(Duration.ofDays(1))))
+        .hasValueSatisfying(balance -> assertThat(balance).isEqualByComparingTo("135.00"));
+  }
+
+  @Test
+  @DisplayName("Should snapshot every customer once per instant in chunks")
+  void shouldSnapshotEveryCustomerOncePerInstant() {
+    var job =
+        new BalanceSnapshotJob(
+            customerRepository,
+            balanceSnapshotRepository,
+            new BalanceProperties(new Snapshot(true, "-", Duration.ofMinutes(10), 2)));
+    long customers = jdbcClient.sql("SELECT count(*) FROM customers").query(Long.class).single();
+
+    assertThat(job.takeSnapshots(DAY_TWO)).isEqualTo(customers);
+    assertThat(job.takeSnapshots(DAY_TWO)).isZero();
+    assertThat(balanceSnapshotRepository.findBalanceFromSnapshot(customerId, DAY_TWO))
+        .hasValueSatisfying(balance -> assertThat(balance).isEqualByComparingTo("150.00"));
+  }
+
+  private void insertTransaction(String type, String amount, Instant date, String status) {
+    jdbcClient
+        .sql(
+            """
+                WITH transaction_key AS (
+                    INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+                    VALUES (gen_random_uuid(), :customerId, :date)
+                    RETURNING uid, customer_id, transaction_date)
+                INSERT INTO transactions (uid, customer_id, type, amount, transaction_date, status)
+                SELECT uid, customer_id, :type, :amount, transaction_date, :status
+                FROM transaction_key
+                """)
+        .param("customerId", customerId)
+        .param("type", type)
+        .param("amount", new BigDecimal(amount))
+        .param("date", Timestamp.from(date))
+        .param("status", status)
+        .update();
+  }
+}
@@ -0,0 +1,144 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TriggerAuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+@Import(TestLiquibaseConfig.class)
+class CustomerRepositoryConcurrencyITest {
+
+  private CustomerRepository customerRepository;
+  private TransactionTemplate transactionTemplate;
+  private UUID customerUid;
+  private String phoneNumber;
+
+  @BeforeEach
+  void setUp() {
+    // Separate physical connections, unlike the single shared connection of TestLiquibaseConfig.
+    var dataSource =
+        new DriverManagerDataSource(
+            PostgresSQLEmbeddedContainer.INSTANCE.getJdbcUrl(),
+            PostgresSQLEmbeddedContainer.INSTANCE.getUsername(),
+            PostgresSQLEmbeddedContainer.INSTANCE.getPassword());
+    var jdbcClient = JdbcClient.create(dataSource);
+    customerRepository = new CustomerRepository(jdbcClient, new TriggerAuditLog());
+    transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    customerUid = UUID.randomUUID();
+    phoneNumber = "+99470" + ThreadLocalRandom.current().nextInt(1_000_000, 9_999_999);
+    jdbcClient
+        .sql(
+            """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    """)
+        .params(
+            customerUid,
+            "Leyla",
+            "Aliyeva",
+            new BigDecimal("100.00"),
+            phoneNumber,
+            LocalDate.now().minusYears(30),
+            "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+        .update();
+  }
+
+  @Test
+  @DisplayName("Should read customer for authentication while a transfer holds its row lock")
+  void shouldReadCustomerWhileTransferHoldsRowLock() throws Exception {
+    var lockHeld = new CountDownLatch(1);
+    var releaseLock = new CountDownLatch(1);
+
+    CompletableFuture<Void> transfer =
+        CompletableFuture.runAsync(
+            () ->
+                transactionTemplate.executeWithoutResult(
+                    status -> {
+                      customerRepository.getCustomerByUidForUpdate(customerUid);
+                      lockHeld.countDown();
+                      awaitQuietly(releaseLock);
+                    }));
+
+    assertThat(lockHeld.await(5, TimeUnit.SECONDS)).isTrue();
+    try {
+      Optional<Customer> byPhoneNumber =
+          CompletableFuture.supplyAsync(() -> customerRepository.findByPhoneNumber(phoneNumber))
+              .get(2, TimeUnit.SECONDS);
+      Optional<Customer> byUid =
+          CompletableFuture.supplyAsync(() -> customerRepository.findByUid(customerUid))
+              .get(2, TimeUnit.SECONDS);
+
+      assertThat(byPhoneNumber).isPresent().get().extracting(Customer::uid).isEqualTo(customerUid);
+      assertThat(byUid).isPresent().get().extracting(Customer::phoneNumber).isEqualTo(phoneNumber);
+    } finally {
+      releaseLock.countDown();
+      transfer.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @DisplayName("Should fail to lock customer when the lock timeout elapses")
+  void shouldFailToLockCustomerWhenLockTimeoutElapses() throws Exception {
+    var lockHeld = new CountDownLatch(1);
+    var releaseLock = new CountDownLatch(1);
+
+    CompletableFuture<Void> transfer =
+        CompletableFuture.runAsync(
+            () ->
+                transactionTemplate.executeWithoutResult(
+                    status -> {
+                      customerRepository.getCustomerByUidForUpdate(customerUid);
+                      lockHeld.countDown();
+                      awaitQuietly(releaseLock);
+                    }));
+
+    assertThat(lockHeld.await(5, TimeUnit.SECONDS)).isTrue();
+    try {
+      assertThatThrownBy(
+              () ->
+                  transactionTemplate.executeWithoutResult(
+                      status -> {
+                        customerRepository.setLocalLockTimeout(Duration.ofMillis(200));
+                        customerRepository.getCustomerByUidForUpdate(customerUid);
+                      }))
+          .isInstanceOf(CannotAcquireLockException.class);
+    } finally {
+      releaseLock.countDown();
+      transfer.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
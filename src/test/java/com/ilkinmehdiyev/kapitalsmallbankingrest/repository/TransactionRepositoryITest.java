@@ -7,9 +7,15 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TriggerAuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ArchiveProperties;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryCursor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.IdempotencyKeyConflictException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransactionException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
@@ -18,16 +24,22 @@ import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
 import java.math.BigDecimal;
-import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.jdbc.Sql;
@@ -37,9 +49,13 @@ import org.springframework.test.context.jdbc.Sql;
 @Import(TestLiquibaseConfig.class)
 @Sql(scripts = "/sql/init-test-db.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS)
 class TransactionRepositoryITest {
+  private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
 
   @Autowired private JdbcClient jdbcClient;
+  @Autowired private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
   @Autowired private CustomerRepository customerRepository;
+  @Autowired private TransactionMetrics transactionMetrics;
+  @Autowired private ArchiveProperties archiveProperties;
   private TransactionRepository transactionRepository;
 
   private final UUID existingTransactionUid =
@@ -51,7 +67,14 @@ class TransactionRepositoryITest {
   @BeforeEach
   void setUp() {
     nonExistingTransactionUid = UUID.randomUUID();
-    transactionRepository = new TransactionRepository(jdbcClient, customerRepository);
+    transactionRepository =
+        new TransactionRepository(
+            jdbcClient,
+            namedParameterJdbcTemplate,
+            customerRepository,
+            transactionMetrics,
+            new TriggerAuditLog(),
+            archiveProperties);
 
     SessionUser sessionUser = new SessionUser(customerId, customerUid, "+994501234567");
     ThreadLocalStorage.setSessionUser(sessionUser);
@@ -94,9 +117,9 @@ class TransactionRepositoryITest {
             TransactionStatus.PENDING,
             null);
 
-    UUID result = transactionRepository.insertTransaction(transaction);
+    Optional<UUID> result = transactionRepository.claimTransaction(transaction);
 
-    assertThat(result).isEqualTo(newTransactionUid);
+    assertThat(result).hasValue(newTransactionUid);
 
     Optional<Transaction> savedTransaction =
         transactionRepository.findByUid(newTransactionUid, customerUid);
@@ -243,7 +266,9 @@ class TransactionRepositoryITest {
     TransactionRepository repositorySpy = spy(transactionRepository);
 
     UUID testTransactionUid = UUID.randomUUID();
-    doReturn(testTransactionUid).when(repositorySpy).insertTransaction(any(Transaction.class));
+    doReturn(Optional.of(testTransactionUid))
+        .when(repositorySpy)
+        .claimTransaction(any(Transaction.class));
     doReturn(true).when(repositorySpy).updateTransactionStatusBy(any(), any());
 
     TransactionRequest request =
@@ -270,7 +295,7 @@ class TransactionRepositoryITest {
             TransactionStatus.COMPLETED,
             null);
 
-    transactionRepository.insertTransaction(purchaseTransaction);
+    transactionRepository.claimTransaction(purchaseTransaction);
 
     var oldBalanceOptional =
         jdbcClient
@@ -312,65 +337,354 @@ class TransactionRepositoryITest {
     assertThat(savedRefundTransaction.get().type()).isEqualTo(TransactionType.PARTIAL_REFUND);
     assertThat(savedRefundTransaction.get().amount()).isEqualByComparingTo(refundAmount);
     assertThat(savedRefundTransaction.get().referenceUid()).isEqualTo(purchaseTransactionUid);
+
+    Optional<Transaction> refundedPurchase =
+        transactionRepository.findByUidForUpdate(purchaseTransactionUid, customerId);
+    assertThat(refundedPurchase).isPresent();
+    assertThat(refundedPurchase.get().refundedAmount()).isEqualByComparingTo(refundAmount);
   }
 
   @Test
-  @DisplayName("Should calculate total refunded amount correctly")
-  void shouldCalculateTotalRefundedAmountCorrectly() {
+  @DisplayName("Should not increment refunded amount beyond purchase amount")
+  void shouldNotIncrementRefundedAmountBeyondPurchaseAmount() {
     UUID purchaseTransactionUid = UUID.randomUUID();
-    Transaction purchaseTransaction =
+    transactionRepository.claimTransaction(
         new Transaction(
             purchaseTransactionUid,
             customerId,
             TransactionType.PURCHASE,
-            new BigDecimal("100.00"),
+            new BigDecimal("40.00"),
             "Purchase transaction",
             Instant.now(),
             TransactionStatus.COMPLETED,
-            null);
+            null));
+
+    assertThat(
+            transactionRepository.incrementRefundedAmount(
+                purchaseTransactionUid, customerId, new BigDecimal("25.00")))
+        .isTrue();
+    assertThat(
+            transactionRepository.incrementRefundedAmount(
+                purchaseTransactionUid, customerId, new BigDecimal("25.00")))
+        .isFalse();
+    assertThat(
+            transactionRepository.incrementRefundedAmount(
+                purchaseTransactionUid, customerId, new BigDecimal("15.00")))
+        .isTrue();
+
+    Optional<Transaction> purchase =
+        transactionRepository.findByUidForUpdate(purchaseTransactionUid, customerId);
+    assertThat(purchase).isPresent();
+    assertThat(purchase.get().refundedAmount()).isEqualByComparingTo(new BigDecimal("40.00"));
+  }
+
+  @Test
+  @DisplayName("Should post top-up in a single statement with its final status")
+  void shouldPostTopUpInSingleStatement() {
+    BigDecimal oldBalance = getBalance();
+    BigDecimal topUpAmount = new BigDecimal("40.00");
+    UUID idempotencyKey = UUID.randomUUID();
+
+    var result =
+        transactionRepository.postTransaction(
+            customerUid, new TransactionRequest(TransactionType.TOP_UP, topUpAmount), idempotencyKey);
+
+    assertThat(result).isPresent();
+    assertThat(result.get().response()).isNotNull();
+    assertThat(result.get().response().transactionUid()).isEqualTo(idempotencyKey);
+    assertThat(result.get().response().status()).isEqualTo(TransactionStatus.COMPLETED);
+    assertThat(getBalance()).isEqualByComparingTo(oldBalance.add(topUpAmount));
+
+    Optional<Transaction> saved = transactionRepository.findByUid(idempotencyKey, customerUid);
+    assertThat(saved).isPresent();
+    assertThat(saved.get().status()).isEqualTo(TransactionStatus.COMPLETED);
+
+    Integer logRows =
+        jdbcClient
+            .sql("SELECT COUNT(*) FROM transactions_log WHERE transaction_id = :id")
+            .param("id", saved.get().id())
+            .query(Integer.class)
+            .single();
+    assertThat(logRows).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should not write anything when single-statement purchase exceeds balance")
+  void shouldNotPostPurchaseInSingleStatementWhenBalanceIsInsufficient() {
+    BigDecimal oldBalance = getBalance();
+    UUID idempotencyKey = UUID.randomUUID();
+
+    var result =
+        transactionRepository.postTransaction(
+            customerUid,
+            new TransactionRequest(TransactionType.PURCHASE, oldBalance.add(BigDecimal.ONE)),
+            idempotencyKey);
+
+    assertThat(result).isPresent();
+    assertThat(result.get().response()).isNull();
+    assertThat(result.get().balance()).isEqualByComparingTo(oldBalance);
+    assertThat(getBalance()).isEqualByComparingTo(oldBalance);
+    assertThat(transactionRepository.findByUid(idempotencyKey, customerUid)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should replay the stored transaction when the idempotency key is posted again")
+  void shouldReplayStoredTransactionWhenIdempotencyKeyIsPostedAgain() {
+    BigDecimal oldBalance = getBalance();
+    BigDecimal topUpAmount = new BigDecimal("15.00");
+    TransactionRequest request = new TransactionRequest(TransactionType.TOP_UP, topUpAmount);
+    UUID idempotencyKey = UUID.randomUUID();
 
-    transactionRepository.insertTransaction(purchaseTransaction);
+    TransactionResponse first =
+        transactionRepository.processTransactionByCustomerId(customerId, request, idempotencyKey);
+    TransactionResponse replayed =
+        transactionRepository.processTransactionByCustomerId(customerId, request, idempotencyKey);
 
-    UUID firstRefundUid = UUID.randomUUID();
+    assertThat(replayed.transactionUid()).isEqualTo(first.transactionUid());
+    assertThat(replayed.status()).isEqualTo(TransactionStatus.COMPLETED);
+    assertThat(getBalance()).isEqualByComparingTo(oldBalance.add(topUpAmount));
+  }
 
-    jdbcClient
-        .sql(
-            "INSERT INTO transactions (uid, customer_id, type, amount, description, "
-                + "transaction_date, status, reference_uid) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")
-        .params(
-            firstRefundUid,
+  @Test
+  @DisplayName("Should not claim an idempotency key twice")
+  void shouldNotClaimIdempotencyKeyTwice() {
+    Transaction transaction =
+        new Transaction(
+            UUID.randomUUID(),
             customerId,
-            TransactionType.PARTIAL_REFUND.toString(),
-            new BigDecimal("30.00"),
-            "First refund",
-            Timestamp.from(Instant.now()),
-            TransactionStatus.REFUNDED.toString(),
-            purchaseTransactionUid)
-        .update();
-
-    BigDecimal totalRefunded =
-        transactionRepository.getTotalRefundedAmountBy(purchaseTransactionUid, customerUid);
-    assertThat(totalRefunded).isEqualByComparingTo(new BigDecimal("30.00"));
-
-    UUID secondRefundUid = UUID.randomUUID();
-
-    jdbcClient
-        .sql(
-            "INSERT INTO transactions (uid, customer_id, type, amount, description, "
-                + "transaction_date, status, reference_uid) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")
-        .params(
-            secondRefundUid,
+            TransactionType.TOP_UP,
+            new BigDecimal("1.00"),
+            "TOP_UP",
+            Instant.now(),
+            TransactionStatus.PENDING,
+            null);
+
+    assertThat(transactionRepository.claimTransaction(transaction)).hasValue(transaction.uid());
+    assertThat(transactionRepository.claimTransaction(transaction)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should keep an idempotency key unique across monthly partitions")
+  void shouldKeepIdempotencyKeyUniqueAcrossPartitions() {
+    Transaction transaction =
+        new Transaction(
+            UUID.randomUUID(),
             customerId,
-            TransactionType.PARTIAL_REFUND.toString(),
-            new BigDecimal("20.00"),
-            "Second refund",
-            Timestamp.from(Instant.now()),
-            TransactionStatus.REFUNDED.toString(),
-            purchaseTransactionUid)
-        .update();
-
-    BigDecimal updatedTotalRefunded =
-        transactionRepository.getTotalRefundedAmountBy(purchaseTransactionUid, customerUid);
-    assertThat(updatedTotalRefunded).isEqualByComparingTo(new BigDecimal("50.00"));
+            TransactionType.TOP_UP,
+            new BigDecimal("1.00"),
+            "TOP_UP",
+            Instant.now(),
+            TransactionStatus.PENDING,
+            null);
+    Transaction backDated =
+        transaction.toBuilder().transactionDate(Instant.parse("2003-01-01T00:00:00Z")).build();
+    transactionRepository.claimTransaction(transaction);
+
+    assertThat(transactionRepository.claimTransaction(backDated)).isEmpty();
+    assertThat(
+            transactionRepository.postTransaction(
+                customerUid,
+                new TransactionRequest(TransactionType.TOP_UP, BigDecimal.ONE),
+                transaction.uid()))
+        .hasValueSatisfying(result -> assertThat(result.response()).isNull());
+  }
+
+  @Test
+  @DisplayName("Should store transactions in the partition of their month")
+  void shouldStoreTransactionsInPartitionOfTheirMonth() {
+    Instant now = Instant.now();
+    List<UUID> uids = insertHistory(now, 1);
+    List<UUID> backDatedUids = insertHistory(Instant.parse("2004-01-01T00:00:00Z"), 1);
+
+    assertThat(partitionOf(uids.getFirst()))
+        .isEqualTo("transactions_" + YearMonth.from(now.atZone(ZoneOffset.UTC)).format(MONTH));
+    assertThat(partitionOf(backDatedUids.getFirst())).isEqualTo("transactions_before");
+    assertThat(transactionRepository.findByUid(backDatedUids.getFirst(), customerUid)).isPresent();
+  }
+
+  @Test
+  @DisplayName("Should report a conflict when the idempotency key belongs to another customer")
+  void shouldReportConflictWhenIdempotencyKeyBelongsToAnotherCustomer() {
+    ThreadLocalStorage.setSessionUser(
+        new SessionUser(customerId, UUID.randomUUID(), "+994501234567"));
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("10.00"));
+
+    assertThatThrownBy(
+            () ->
+                transactionRepository.processTransactionByCustomerId(
+                    customerId, request, existingTransactionUid))
+        .isInstanceOf(IdempotencyKeyConflictException.class)
+        .hasMessageContaining("is already used");
+  }
+
+  @Test
+  @DisplayName("Should not post a single-statement top-up twice for the same idempotency key")
+  void shouldNotPostSingleStatementTopUpTwice() {
+    BigDecimal oldBalance = getBalance();
+    BigDecimal topUpAmount = new BigDecimal("25.00");
+    TransactionRequest request = new TransactionRequest(TransactionType.TOP_UP, topUpAmount);
+    UUID idempotencyKey = UUID.randomUUID();
+
+    var first = transactionRepository.postTransaction(customerUid, request, idempotencyKey);
+    var second = transactionRepository.postTransaction(customerUid, request, idempotencyKey);
+
+    assertThat(first).isPresent();
+    assertThat(first.get().response()).isNotNull();
+    assertThat(second).isPresent();
+    assertThat(second.get().response()).isNull();
+    assertThat(getBalance()).isEqualByComparingTo(oldBalance.add(topUpAmount));
+  }
+
+  @Test
+  @DisplayName("Should return empty from single-statement posting for unknown customer")
+  void shouldReturnEmptyFromSingleStatementPostingForUnknownCustomer() {
+    var result =
+        transactionRepository.postTransaction(
+            UUID.randomUUID(),
+            new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("10.00")),
+            UUID.randomUUID());
+
+    assertThat(result).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should insert transaction with null optional columns")
+  void shouldInsertTransactionWithNullOptionalColumns() {
+    UUID transactionUid = UUID.randomUUID();
+    Transaction transaction =
+        new Transaction(
+            transactionUid,
+            customerId,
+            TransactionType.TOP_UP,
+            new BigDecimal("1.00"),
+            null,
+            null,
+            TransactionStatus.PENDING,
+            null);
+
+    Optional<UUID> insertedUid = transactionRepository.claimTransaction(transaction);
+
+    assertThat(insertedUid).hasValue(transactionUid);
+    Transaction inserted =
+        transactionRepository.findByUid(transactionUid, customerUid).orElseThrow();
+    assertThat(inserted.description()).isNull();
+    assertThat(inserted.referenceUid()).isNull();
+    assertThat(inserted.transactionDate()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Should insert claimed transactions in one batch and find them by uids")
+  void shouldInsertTransactionsInBatchAndFindThemByUids() {
+    UUID topUpUid = UUID.randomUUID();
+    UUID refundUid = UUID.randomUUID();
+    UUID referenceUid = UUID.randomUUID();
+    List<Transaction> transactions =
+        List.of(
+            new Transaction(
+                topUpUid,
+                customerId,
+                TransactionType.TOP_UP,
+                new BigDecimal("15.00"),
+                "TOP_UP",
+                Instant.now(),
+                TransactionStatus.COMPLETED,
+                null),
+            new Transaction(
+                refundUid,
+                customerId,
+                TransactionType.PARTIAL_REFUND,
+                new BigDecimal("5.00"),
+                "PARTIAL_REFUND",
+                null,
+                TransactionStatus.REFUNDED,
+                referenceUid));
+
+    Set<UUID> claimed =
+        transactionRepository.claimKeys(List.of(topUpUid, refundUid), customerId, Instant.now());
+    assertThat(claimed).containsExactlyInAnyOrder(topUpUid, refundUid);
+    transactionRepository.insertClaimedTransactions(transactions);
+
+    List<Transaction> found =
+        transactionRepository.findAllByUids(
+            List.of(topUpUid, refundUid, nonExistingTransactionUid), customerId);
+    assertThat(found).extracting(Transaction::uid).containsExactlyInAnyOrder(topUpUid, refundUid);
+    assertThat(found)
+        .filteredOn(transaction -> transaction.uid().equals(refundUid))
+        .singleElement()
+        .satisfies(
+            refund -> {
+              assertThat(refund.referenceUid()).isEqualTo(referenceUid);
+              assertThat(refund.transactionDate()).isNotNull();
+            });
+    assertThat(transactionRepository.findAllByUids(List.of(topUpUid), customerId + 1)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should page through transaction history newest first after the cursor")
+  void shouldPageThroughTransactionHistoryAfterCursor() {
+    Instant from = Instant.parse("2001-01-01T00:00:00Z");
+    List<UUID> uids = insertHistory(from, 5);
+    var filter = new TransactionHistoryFilter(null, null, from, from.plusSeconds(3600));
+
+    List<Transaction> firstPage = transactionRepository.findHistory(customerId, filter, null, 2);
+    Transaction last = firstPage.getLast();
+    var cursor = new TransactionHistoryCursor(last.transactionDate(), last.id());
+    List<Transaction> secondPage = transactionRepository.findHistory(customerId, filter, cursor, 10);
+
+    assertThat(firstPage).extracting(Transaction::uid).containsExactly(uids.get(4), uids.get(3));
+    assertThat(secondPage)
+        .extracting(Transaction::uid)
+        .containsExactly(uids.get(2), uids.get(1), uids.get(0));
+  }
+
+  @Test
+  @DisplayName("Should filter transaction history by type")
+  void shouldFilterTransactionHistoryByType() {
+    Instant from = Instant.parse("2002-01-01T00:00:00Z");
+    List<UUID> uids = insertHistory(from, 4);
+    var filter =
+        new TransactionHistoryFilter(TransactionType.PURCHASE, null, from, from.plusSeconds(3600));
+
+    List<Transaction> history = transactionRepository.findHistory(customerId, filter, null, 10);
+
+    assertThat(history).extracting(Transaction::uid).containsExactly(uids.get(3), uids.get(1));
+    assertThat(transactionRepository.findHistory(customerId + 1, filter, null, 10)).isEmpty();
+  }
+
+  /** Inserts alternating top-ups and purchases one second apart, starting with a top-up. */
+  private List<UUID> insertHistory(Instant from, int count) {
+    List<Transaction> transactions =
+        IntStream.range(0, count)
+            .mapToObj(
+                i ->
+                    new Transaction(
+                        UUID.randomUUID(),
+                        customerId,
+                        i % 2 == 0 ? TransactionType.TOP_UP : TransactionType.PURCHASE,
+                        BigDecimal.ONE,
+                        null,
+                        from.plusSeconds(i),
+                        TransactionStatus.COMPLETED,
+                        null))
+            .toList();
+    transactions.forEach(transactionRepository::claimTransaction);
+    return transactions.stream().map(Transaction::uid).toList();
+  }
+
+  private String partitionOf(UUID transactionUid) {
+    return jdbcClient
+        .sql("SELECT tableoid::regclass::text FROM transactions WHERE uid = :uid")
+        .param("uid", transactionUid)
+        .query(String.class)
+        .single();
+  }
+
+  private BigDecimal getBalance() {
+    return jdbcClient
+        .sql("SELECT balance FROM customers WHERE id = :customerId")
+        .param("customerId", customerId)
+        .query(BigDecimal.class)
+        .single();
   }
 }
@@ -0,0 +1,105 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.JwtProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.JwtProperties.RefreshToken;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.Management;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.TokenRevocation;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl.CustomUserDetails;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import io.jsonwebtoken.Claims;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+
+class JwtServiceUTest {
+  private static final String SECRET_KEY =
+      "423F4528482B4D6251655468576D597133743677397A24432646294A404E635266556A586E327234753778214125442A472D4B6150645367566B597033733676";
+
+  private SecurityProperties securityProperties;
+  private JwtService jwtService;
+  private final UUID customerUid = UUID.fromString("019630c5-eccf-7b24-b814-a39c97c64b8b");
+
+  @BeforeEach
+  void setUp() {
+    securityProperties =
+        new SecurityProperties(
+            new JwtProperties(
+                SECRET_KEY, Duration.ofDays(1), Duration.ofDays(3), new RefreshToken(604800000)),
+            new TokenRevocation(true, 10),
+            new Management("operator", ""));
+    jwtService = new JwtService(securityProperties);
+  }
+
+  @Test
+  @DisplayName("Should build session user from access token claims")
+  void shouldBuildSessionUserFromAccessTokenClaims() {
+    String token =
+        jwtService.generateAccessToken(
+            new CustomUserDetails(42L, customerUid, "password", "+994501234567"));
+
+    Claims claims = jwtService.parseToken(token);
+    Optional<SessionUser> sessionUser = jwtService.extractSessionUser(claims);
+
+    assertThat(sessionUser).hasValue(new SessionUser(42L, customerUid, "+994501234567"));
+  }
+
+  @Test
+  @DisplayName("Should return empty session user for token without customer claims")
+  void shouldReturnEmptySessionUserForTokenWithoutCustomerClaims() {
+    String token =
+        jwtService.generateAccessToken(new User("+994501234567", "password", List.of()));
+
+    Optional<SessionUser> sessionUser = jwtService.extractSessionUser(jwtService.parseToken(token));
+
+    assertThat(sessionUser).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should validate token against its subject")
+  void shouldValidateTokenAgainstItsSubject() {
+    String token =
+        jwtService.generateAccessToken(
+            new CustomUserDetails(42L, customerUid, "password", "+994501234567"));
+
+    assertThat(jwtService.validateToken(token, "+994501234567")).isTrue();
+    assertThat(jwtService.validateToken(token, "+994550000000")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should accept a token issued in the same second after the customer's revocation")
+  void shouldAcceptTokenIssuedInSameSecondAfterRevocation() throws InterruptedException {
+    var revocationService = new TokenRevocationService(securityProperties);
+    var customer = new CustomUserDetails(42L, customerUid, "password", "+994501234567");
+    // Start early in a second, so that the revocation and the new token share it.
+    while (Instant.now().get(ChronoField.MILLI_OF_SECOND) > 500) {
+      Thread.sleep(10);
+    }
+
+    Claims revokedClaims = jwtService.parseToken(jwtService.generateAccessToken(customer));
+    Instant revokedAt = jwtService.extractIssuedAt(revokedClaims).orElseThrow();
+    revocationService.revokeTokensIssuedBefore(customerUid, revokedAt);
+    Thread.sleep(5);
+    Claims newClaims = jwtService.parseToken(jwtService.generateAccessToken(customer));
+
+    assertThat(newClaims.getIssuedAt().toInstant())
+        .isEqualTo(revokedAt.truncatedTo(ChronoUnit.SECONDS));
+    assertThat(
+            revocationService.isRevoked(
+                customerUid, jwtService.extractIssuedAt(revokedClaims).orElseThrow()))
+        .isTrue();
+    assertThat(
+            revocationService.isRevoked(
+                customerUid, jwtService.extractIssuedAt(newClaims).orElseThrow()))
+        .isFalse();
+  }
+}
@@ -0,0 +1,80 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.JwtProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.JwtProperties.RefreshToken;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.Management;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.security.SecurityProperties.TokenRevocation;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TokenRevocationServiceUTest {
+
+  @Test
+  @DisplayName("Should reject tokens issued before revocation only")
+  void shouldRejectTokensIssuedBeforeRevocationOnly() {
+    TokenRevocationService service = revocationService(true, 10);
+    UUID customerUid = UUID.randomUUID();
+    Instant revokedAt = Instant.now();
+
+    service.revokeTokensIssuedBefore(customerUid, revokedAt);
+
+    assertThat(service.isRevoked(customerUid, revokedAt.minusSeconds(1))).isTrue();
+    assertThat(service.isRevoked(customerUid, revokedAt.plusSeconds(1))).isFalse();
+    assertThat(service.isRevoked(UUID.randomUUID(), revokedAt.minusSeconds(1))).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should compare issue times to the millisecond")
+  void shouldCompareIssueTimesToMillisecond() {
+    TokenRevocationService service = revocationService(true, 10);
+    UUID customerUid = UUID.randomUUID();
+    Instant revokedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusMillis(500);
+
+    service.revokeTokensIssuedBefore(customerUid, revokedAt);
+
+    assertThat(service.isRevoked(customerUid, revokedAt.minusMillis(300))).isTrue();
+    assertThat(service.isRevoked(customerUid, revokedAt)).isTrue();
+    assertThat(service.isRevoked(customerUid, revokedAt.plusMillis(1))).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should fall back to a global cut-off when the deny list is full")
+  void shouldFallBackToGlobalCutOffWhenDenyListIsFull() {
+    TokenRevocationService service = revocationService(true, 2);
+    Instant revokedAt = Instant.now();
+
+    service.revokeTokensIssuedBefore(UUID.randomUUID(), revokedAt);
+    service.revokeTokensIssuedBefore(UUID.randomUUID(), revokedAt);
+    service.revokeTokensIssuedBefore(UUID.randomUUID(), revokedAt);
+
+    assertThat(service.isRevoked(UUID.randomUUID(), revokedAt.minusSeconds(1))).isTrue();
+    assertThat(service.isRevoked(UUID.randomUUID(), revokedAt.plusSeconds(1))).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should not reject anything when revocation check is disabled")
+  void shouldNotRejectAnythingWhenDisabled() {
+    TokenRevocationService service = revocationService(false, 10);
+    UUID customerUid = UUID.randomUUID();
+    Instant revokedAt = Instant.now();
+
+    service.revokeTokensIssuedBefore(customerUid, revokedAt);
+
+    assertThat(service.isRevoked(customerUid, revokedAt.minusSeconds(1))).isFalse();
+  }
+
+  private TokenRevocationService revocationService(boolean enabled, int maxEntries) {
+    return new TokenRevocationService(
+        new SecurityProperties(
+            new JwtProperties(
+                "secret", Duration.ofDays(1), Duration.ofDays(3), new RefreshToken(604800000)),
+            new TokenRevocation(enabled, maxEntries),
+            new Management("operator", "")));
+  }
+}
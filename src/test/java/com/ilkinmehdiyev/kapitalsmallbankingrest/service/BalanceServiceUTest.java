@@ -0,0 +1,86 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BalanceResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.BalanceSnapshotRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceServiceUTest {
+  @Mock private CustomerRepository customerRepository;
+  @Mock private BalanceSnapshotRepository balanceSnapshotRepository;
+
+  @InjectMocks private BalanceService balanceService;
+
+  private final UUID customerUid = UUID.randomUUID();
+  private final Instant at = Instant.parse("2025-04-17T19:47:08Z");
+
+  @BeforeEach
+  void setUp() {
+    ThreadLocalStorage.setSessionUser(new SessionUser(1L, customerUid, "+994501234567"));
+  }
+
+  @Test
+  @DisplayName("Should return the current balance when no instant is given")
+  void shouldReturnCurrentBalanceWhenNoInstantIsGiven() {
+    when(customerRepository.findByUid(customerUid))
+        .thenReturn(
+            Optional.of(Customer.builder().uid(customerUid).balance(BigDecimal.TEN).build()));
+
+    BalanceResponse response = balanceService.getBalance(null);
+
+    assertThat(response.balance()).isEqualByComparingTo(BigDecimal.TEN);
+    verifyNoInteractions(balanceSnapshotRepository);
+  }
+
+  @Test
+  @DisplayName("Should compute a past balance from the latest snapshot")
+  void shouldComputePastBalanceFromSnapshot() {
+    when(balanceSnapshotRepository.findBalanceFromSnapshot(1L, at))
+        .thenReturn(Optional.of(new BigDecimal("42.00")));
+
+    BalanceResponse response = balanceService.getBalance(at);
+
+    assertThat(response).isEqualTo(new BalanceResponse(new BigDecimal("42.00"), at));
+  }
+
+  @Test
+  @DisplayName("Should take the current balance back when no snapshot precedes the instant")
+  void shouldTakeCurrentBalanceBackWithoutSnapshot() {
+    when(balanceSnapshotRepository.findBalanceFromSnapshot(1L, at)).thenReturn(Optional.empty());
+    when(balanceSnapshotRepository.findBalanceFromCurrent(1L, at))
+        .thenReturn(Optional.of(new BigDecimal("7.00")));
+
+    assertThat(balanceService.getBalance(at).balance()).isEqualByComparingTo("7.00");
+  }
+
+  @Test
+  @DisplayName("Should reject a balance in the future")
+  void shouldRejectBalanceInFuture() {
+    Instant future = Instant.now().plus(Duration.ofHours(1));
+
+    assertThatThrownBy(() -> balanceService.getBalance(future))
+        .isInstanceOf(TransferRequestException.class);
+    verifyNoInteractions(customerRepository, balanceSnapshotRepository);
+  }
+}
@@ -0,0 +1,104 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.CustomerServiceImpl.CustomUserDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class InMemoryCustomerDetailsCacheUTest {
+  private final AtomicLong nanos = new AtomicLong();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private InMemoryCustomerDetailsCache cache;
+  private CustomUserDetails customerDetails;
+
+  @BeforeEach
+  void setUp() {
+    cache = new InMemoryCustomerDetailsCache(2, Duration.ofMinutes(10), nanos::get);
+    cache.bindTo(registry);
+    customerDetails = new CustomUserDetails(1L, UUID.randomUUID(), "password", "+994501234567");
+  }
+
+  @Test
+  @DisplayName("Should serve cached details by phone number and record hits and misses")
+  void shouldServeCachedDetailsByPhoneNumber() {
+    assertThat(cache.getByPhoneNumber(customerDetails.phoneNumber())).isEmpty();
+
+    cache.put(customerDetails);
+
+    assertThat(cache.getByPhoneNumber(customerDetails.phoneNumber())).hasValue(customerDetails);
+    assertThat(gets("hit")).isEqualTo(1);
+    assertThat(gets("miss")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should expire entries after ttl")
+  void shouldExpireEntriesAfterTtl() {
+    cache.put(customerDetails);
+
+    nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+    assertThat(cache.getByPhoneNumber(customerDetails.phoneNumber())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should evict entries beyond maximum size")
+  void shouldEvictEntriesBeyondMaximumSize() {
+    for (int i = 0; i < 5; i++) {
+      cache.put(new CustomUserDetails((long) i, UUID.randomUUID(), "password", "+99450000000" + i));
+    }
+    cache.cleanUp();
+
+    assertThat(registry.get("cache.size").gauge().value()).isLessThanOrEqualTo(2);
+    assertThat(registry.get("cache.evictions").functionCounter().count()).isPositive();
+  }
+
+  @Test
+  @DisplayName("Should invalidate the details of a customer by uid")
+  void shouldInvalidateDetailsOfCustomerByUid() {
+    cache.put(customerDetails);
+
+    cache.invalidate(customerDetails.uid());
+
+    assertThat(cache.getByPhoneNumber(customerDetails.phoneNumber())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should drop the previous phone number when a customer is cached with a new one")
+  void shouldDropPreviousPhoneNumberOfCustomer() {
+    cache.put(customerDetails);
+    var changedPhoneNumber =
+        new CustomUserDetails(
+            customerDetails.id(), customerDetails.uid(), "password", "+994507654321");
+
+    cache.put(changedPhoneNumber);
+    cache.invalidate(customerDetails.uid());
+
+    assertThat(cache.getByPhoneNumber(customerDetails.phoneNumber())).isEmpty();
+    assertThat(cache.getByPhoneNumber(changedPhoneNumber.phoneNumber())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should keep the uid index no larger than the cache")
+  void shouldKeepUidIndexNoLargerThanCache() {
+    for (int i = 0; i < 5; i++) {
+      cache.put(new CustomUserDetails((long) i, UUID.randomUUID(), "password", "+99450000000" + i));
+    }
+    cache.put(customerDetails);
+    cache.put(customerDetails);
+    cache.cleanUp();
+
+    assertThat((double) cache.indexedCustomers())
+        .isEqualTo(registry.get("cache.size").gauge().value())
+        .isLessThanOrEqualTo(2);
+  }
+
+  private double gets(String result) {
+    return registry.get("cache.gets").tag("result", result).functionCounter().count();
+  }
+}
@@ -0,0 +1,96 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class InMemoryIdempotencyStoreUTest {
+  private final AtomicLong nanos = new AtomicLong();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private InMemoryIdempotencyStore store;
+  private UUID customerUid;
+  private UUID idempotencyKey;
+  private TransactionResponse response;
+
+  @BeforeEach
+  void setUp() {
+    store = new InMemoryIdempotencyStore(2, Duration.ofMinutes(10), nanos::get);
+    store.bindTo(registry);
+    customerUid = UUID.randomUUID();
+    idempotencyKey = UUID.randomUUID();
+    response = new TransactionResponse(idempotencyKey, TransactionStatus.COMPLETED, Instant.now());
+  }
+
+  @Test
+  @DisplayName("Should serve completed responses only to the same customer")
+  void shouldServeCompletedResponsesOnlyToSameCustomer() {
+    store.complete(customerUid, idempotencyKey, response);
+
+    assertThat(store.getCompleted(customerUid, idempotencyKey)).hasValue(response);
+    assertThat(store.getCompleted(UUID.randomUUID(), idempotencyKey)).isEmpty();
+    assertThat(gets("hit")).isEqualTo(1);
+    assertThat(gets("miss")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should return the posting already in flight until it completes")
+  void shouldReturnPostingInFlightUntilItCompletes() {
+    var first = new CompletableFuture<TransactionResponse>();
+    var duplicate = new CompletableFuture<TransactionResponse>();
+
+    assertThat(store.markInFlight(customerUid, idempotencyKey, first)).isEmpty();
+    assertThat(store.markInFlight(customerUid, idempotencyKey, duplicate)).hasValue(first);
+
+    store.complete(customerUid, idempotencyKey, response);
+
+    assertThat(store.markInFlight(customerUid, idempotencyKey, duplicate)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should drop the in-flight marker of a failed posting without remembering it")
+  void shouldDropMarkerOfFailedPosting() {
+    store.markInFlight(customerUid, idempotencyKey, new CompletableFuture<>());
+
+    store.release(customerUid, idempotencyKey);
+
+    assertThat(store.markInFlight(customerUid, idempotencyKey, new CompletableFuture<>()))
+        .isEmpty();
+    assertThat(store.getCompleted(customerUid, idempotencyKey)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should expire completed responses after ttl")
+  void shouldExpireCompletedResponsesAfterTtl() {
+    store.complete(customerUid, idempotencyKey, response);
+
+    nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+    assertThat(store.getCompleted(customerUid, idempotencyKey)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should evict completed responses beyond maximum size")
+  void shouldEvictCompletedResponsesBeyondMaximumSize() {
+    for (int i = 0; i < 5; i++) {
+      store.complete(customerUid, UUID.randomUUID(), response);
+    }
+    store.cleanUp();
+
+    assertThat(registry.get("cache.size").gauge().value()).isLessThanOrEqualTo(2);
+    assertThat(registry.get("cache.evictions").functionCounter().count()).isPositive();
+  }
+
+  private double gets(String result) {
+    return registry.get("cache.gets").tag("result", result).functionCounter().count();
+  }
+}
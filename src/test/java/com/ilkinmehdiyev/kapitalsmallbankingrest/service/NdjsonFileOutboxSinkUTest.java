@@ -0,0 +1,59 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NdjsonFileOutboxSinkUTest {
+  private final ObjectMapper objectMapper =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  @TempDir private Path directory;
+
+  @Test
+  @DisplayName("Should append each event as one JSON line across batches and reopenings")
+  void shouldAppendEachEventAsOneJsonLine() throws IOException {
+    Path file = directory.resolve("events/transactions.ndjson");
+
+    try (var sink = new NdjsonFileOutboxSink(objectMapper, file)) {
+      sink.publish(List.of(event(1L), event(2L)));
+    }
+    try (var sink = new NdjsonFileOutboxSink(objectMapper, file)) {
+      sink.publish(List.of(event(3L)));
+    }
+
+    List<String> lines = Files.readAllLines(file);
+    assertThat(lines).hasSize(3);
+    assertThat(objectMapper.readValue(lines.get(2), OutboxEvent.class)).isEqualTo(event(3L));
+    assertThat(lines.getFirst()).contains("\"transactionDate\":\"2025-04-17T19:47:08Z\"");
+  }
+
+  private static OutboxEvent event(long id) {
+    return new OutboxEvent(
+        id,
+        new UUID(0, id),
+        1L,
+        TransactionType.PURCHASE,
+        new BigDecimal("50.00"),
+        TransactionStatus.COMPLETED,
+        Instant.parse("2025-04-17T19:47:08Z"),
+        null);
+  }
+}
@@ -0,0 +1,179 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.OutboxProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.OutboxProperties.Relay;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.OutboxProperties.Sink;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.OutboxProperties.SinkType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.OutboxEvent;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.OutboxRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs against the application's own Hikari pool, since relays lock batches concurrently and
+ * cannot share the single connection of {@code TestLiquibaseConfig}.
+ */
+@SpringBootTest(properties = {"outbox.relay.enabled=false", "outbox.sink.type=MEMORY"})
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+class OutboxRelayITest {
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private TransactionService transactionService;
+  @Autowired private TransactionRepository transactionRepository;
+  @Autowired private OutboxRepository outboxRepository;
+  @Autowired private OutboxRelay outboxRelay;
+  @Autowired private InMemoryOutboxSink outboxSink;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate transactionTemplate;
+  private Long customerId;
+  private UUID customerUid;
+
+  @BeforeEach
+  void setUp() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    jdbcClient.sql("DELETE FROM transaction_outbox").update();
+    outboxSink.clear();
+
+    customerUid = UUID.randomUUID();
+    customerId =
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    RETURNING id
+                    """)
+            .params(
+                customerUid,
+                "Rashad",
+                "Aliyev",
+                new BigDecimal("100.00"),
+                "+994703456789",
+                LocalDate.now().minusYears(35),
+                "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+            .query(Long.class)
+            .single();
+  }
+
+  @AfterEach
+  void tearDown() {
+    ThreadLocalStorage.clear();
+    jdbcClient.sql("DELETE FROM transaction_outbox").update();
+    jdbcClient
+        .sql("DELETE FROM transactions WHERE customer_id = :customerId")
+        .param("customerId", customerId)
+        .update();
+    jdbcClient.sql("DELETE FROM customers WHERE id = :id").param("id", customerId).update();
+  }
+
+  @Test
+  @DisplayName("Should publish every committed posting once and nothing of rolled back ones")
+  void shouldPublishCommittedPostingsOnce() {
+    UUID standardKey = UUID.randomUUID();
+    post(standardKey, new TransactionRequest(TransactionType.PURCHASE, new BigDecimal("30.00")));
+    UUID singleStatementKey = UUID.randomUUID();
+    transactionTemplate.executeWithoutResult(
+        status ->
+            transactionRepository.postTransaction(
+                customerUid,
+                new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("5.00")),
+                singleStatementKey));
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          post(
+              UUID.randomUUID(),
+              new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("1.00")));
+          status.setRollbackOnly();
+        });
+
+    assertThat(outboxRelay.relay()).isEqualTo(2);
+
+    assertThat(outboxSink.events())
+        .extracting(OutboxEvent::transactionUid)
+        .containsExactly(standardKey, singleStatementKey);
+    assertThat(outboxSink.events().getFirst())
+        .satisfies(
+            event -> {
+              assertThat(event.customerId()).isEqualTo(customerId);
+              assertThat(event.type()).isEqualTo(TransactionType.PURCHASE);
+              assertThat(event.amount()).isEqualByComparingTo("30.00");
+              assertThat(event.status()).isEqualTo(TransactionStatus.COMPLETED);
+            });
+    assertThat(outboxRelay.relay()).isZero();
+    assertThat(outboxSink.events()).hasSize(2);
+  }
+
+  @Test
+  @DisplayName("Should publish each event once when relays drain the outbox concurrently")
+  void shouldPublishEachEventOnceWithConcurrentRelays() {
+    for (int i = 0; i < 20; i++) {
+      post(UUID.randomUUID(), new TransactionRequest(TransactionType.TOP_UP, BigDecimal.ONE));
+    }
+    OutboxRelay first = relayWithBatchSize(3, outboxSink);
+    OutboxRelay second = relayWithBatchSize(3, outboxSink);
+
+    var firstRun = CompletableFuture.supplyAsync(first::relay);
+    var secondRun = CompletableFuture.supplyAsync(second::relay);
+
+    assertThat(firstRun.join() + secondRun.join()).isEqualTo(20);
+    assertThat(outboxSink.events()).extracting(OutboxEvent::id).doesNotHaveDuplicates().hasSize(20);
+    assertThat(outboxRepository.lockOldest(1)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should keep the events of a batch whose publishing fails")
+  void shouldKeepEventsOfFailedBatch() {
+    post(UUID.randomUUID(), new TransactionRequest(TransactionType.TOP_UP, BigDecimal.ONE));
+    OutboxRelay failingRelay =
+        relayWithBatchSize(
+            10,
+            events -> {
+              throw new IOException("sink is down");
+            });
+
+    assertThat(failingRelay.relay()).isZero();
+
+    assertThat(outboxRelay.relay()).isEqualTo(1);
+    assertThat(outboxSink.events()).hasSize(1);
+  }
+
+  private void post(UUID idempotencyKey, TransactionRequest request) {
+    ThreadLocalStorage.setSessionUser(new SessionUser(customerId, customerUid, "+994703456789"));
+    transactionService.processTransaction(request, idempotencyKey);
+  }
+
+  private OutboxRelay relayWithBatchSize(int batchSize, OutboxSink sink) {
+    return new OutboxRelay(
+        outboxRepository,
+        sink,
+        new OutboxProperties(
+            new Relay(false, Duration.ofSeconds(1), batchSize), new Sink(SinkType.MEMORY, null)),
+        transactionManager,
+        new SimpleMeterRegistry());
+  }
+}
@@ -0,0 +1,139 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Customer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Runs against the application's own Hikari pool of ten connections, not the single shared
+ * connection of {@code TestLiquibaseConfig}, so that pool starvation is observable.
+ */
+@SpringBootTest(properties = "transaction.lock.timeout=30s")
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+class PostingCoordinatorLoadITest {
+  private static final int CONCURRENT_REQUESTS = 100;
+
+  @Autowired private PostingCoordinator postingCoordinator;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private DataSource dataSource;
+  @Autowired private JdbcClient jdbcClient;
+
+  private Customer hotCustomer;
+  private Customer otherCustomer;
+
+  @BeforeEach
+  void setUp() {
+    hotCustomer = insertCustomer();
+    otherCustomer = insertCustomer();
+  }
+
+  @Test
+  @DisplayName("Should not starve the pool with 100 concurrent postings for one customer")
+  void shouldNotStarvePoolWithConcurrentPostingsForOneCustomer() throws Exception {
+    HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+    var sampling = new AtomicBoolean(true);
+    var maxActiveConnections = new AtomicInteger();
+    var maxThreadsAwaitingConnection = new AtomicInteger();
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<?> sampler =
+          executor.submit(
+              () -> {
+                while (sampling.get()) {
+                  maxActiveConnections.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                  maxThreadsAwaitingConnection.accumulateAndGet(
+                      pool.getThreadsAwaitingConnection(), Math::max);
+                  Thread.sleep(1);
+                }
+                return null;
+              });
+
+      List<Future<TransactionResponse>> postings = new ArrayList<>();
+      for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+        postings.add(executor.submit(() -> topUp(hotCustomer, new BigDecimal("1.00"))));
+      }
+
+      Optional<Customer> otherCustomerRead =
+          CompletableFuture.supplyAsync(
+                  () -> customerRepository.findByUid(otherCustomer.uid()), executor)
+              .get(2, TimeUnit.SECONDS);
+
+      for (Future<TransactionResponse> posting : postings) {
+        assertThat(posting.get(60, TimeUnit.SECONDS).status())
+            .isEqualTo(TransactionStatus.COMPLETED);
+      }
+      sampling.set(false);
+      sampler.get(5, TimeUnit.SECONDS);
+
+      assertThat(otherCustomerRead).isPresent();
+    }
+
+    // The read of the other customer may briefly take a second connection.
+    assertThat(maxActiveConnections.get()).isLessThanOrEqualTo(2);
+    assertThat(maxThreadsAwaitingConnection.get()).isZero();
+    assertThat(customerRepository.findByUid(hotCustomer.uid()))
+        .get()
+        .extracting(Customer::balance)
+        .satisfies(
+            balance -> assertThat(balance).isEqualByComparingTo(new BigDecimal("200.00")));
+  }
+
+  private TransactionResponse topUp(Customer customer, BigDecimal amount) {
+    ThreadLocalStorage.setSessionUser(
+        new SessionUser(customer.id(), customer.uid(), customer.phoneNumber()));
+    return postingCoordinator.processTransaction(
+        new TransactionRequest(TransactionType.TOP_UP, amount), UUID.randomUUID());
+  }
+
+  private Customer insertCustomer() {
+    UUID uid = UUID.randomUUID();
+    jdbcClient
+        .sql(
+            """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    """)
+        .params(
+            uid,
+            "Leyla",
+            "Aliyeva",
+            new BigDecimal("100.00"),
+            "+99470" + ThreadLocalRandom.current().nextInt(1_000_000, 9_999_999),
+            LocalDate.now().minusYears(30),
+            "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+        .update();
+    return customerRepository.findByUid(uid).orElseThrow();
+  }
+}
@@ -0,0 +1,407 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Batch;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.GroupCommit;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Lock;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Posting;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.PostingMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Serialization;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerLockTimeoutException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionService.PostingOutcome;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+@ExtendWith(MockitoExtension.class)
+class PostingCoordinatorUTest {
+  private static final TransactionRequest TOP_UP =
+      new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("10.00"));
+
+  @Mock private TransactionService transactionService;
+
+  private SimpleMeterRegistry meterRegistry;
+  private IdempotencyStore idempotencyStore;
+  private PostingCoordinator postingCoordinator;
+  private SessionUser sessionUser;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    idempotencyStore = new InMemoryIdempotencyStore(100, Duration.ofMinutes(10));
+    postingCoordinator = postingCoordinator(false);
+    sessionUser = new SessionUser(1L, UUID.randomUUID(), "+994501234567");
+  }
+
+  @AfterEach
+  void tearDown() {
+    ThreadLocalStorage.clear();
+  }
+
+  @Test
+  @DisplayName("Should delegate the posting and record the serialization wait")
+  void shouldDelegatePostingAndRecordWait() {
+    UUID idempotencyKey = UUID.randomUUID();
+    var response =
+        new TransactionResponse(idempotencyKey, TransactionStatus.COMPLETED, Instant.now());
+    when(transactionService.processTransaction(TOP_UP, idempotencyKey)).thenReturn(response);
+    ThreadLocalStorage.setSessionUser(sessionUser);
+
+    assertThat(postingCoordinator.processTransaction(TOP_UP, idempotencyKey)).isEqualTo(response);
+    assertThat(meterRegistry.get(PostingCoordinator.SERIALIZATION_WAIT_TIMER).timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should fail with a retryable error while another posting of the customer runs")
+  void shouldFailWhileAnotherPostingOfCustomerRuns() throws Exception {
+    var postingStarted = new CountDownLatch(1);
+    var releasePosting = new CountDownLatch(1);
+    when(transactionService.processTransaction(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              postingStarted.countDown();
+              releasePosting.await(5, TimeUnit.SECONDS);
+              return null;
+            });
+
+    CompletableFuture<TransactionResponse> firstPosting =
+        CompletableFuture.supplyAsync(
+            () -> {
+              ThreadLocalStorage.setSessionUser(sessionUser);
+              return postingCoordinator.processTransaction(TOP_UP, UUID.randomUUID());
+            });
+    assertThat(postingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+    try {
+      ThreadLocalStorage.setSessionUser(sessionUser);
+      assertThatThrownBy(() -> postingCoordinator.processTransaction(TOP_UP, UUID.randomUUID()))
+          .isInstanceOf(CustomerLockTimeoutException.class)
+          .hasMessageContaining("is busy");
+    } finally {
+      releasePosting.countDown();
+      firstPosting.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  @DisplayName("Should post without serialization when there is no session user")
+  void shouldPostWithoutSerializationWhenNoSessionUser() {
+    UUID idempotencyKey = UUID.randomUUID();
+
+    postingCoordinator.processTransaction(TOP_UP, idempotencyKey);
+
+    verify(transactionService).processTransaction(TOP_UP, idempotencyKey);
+    assertThat(meterRegistry.get(PostingCoordinator.SERIALIZATION_WAIT_TIMER).timer().count())
+        .isZero();
+  }
+
+  @Test
+  @DisplayName("Should replay a completed posting from memory")
+  void shouldReplayCompletedPostingFromMemory() {
+    UUID idempotencyKey = UUID.randomUUID();
+    when(transactionService.processTransaction(TOP_UP, idempotencyKey))
+        .thenReturn(completed(idempotencyKey));
+
+    TransactionResponse first = postAsSessionUser(postingCoordinator, idempotencyKey);
+    TransactionResponse replayed = postAsSessionUser(postingCoordinator, idempotencyKey);
+
+    assertThat(replayed).isEqualTo(first);
+    verify(transactionService).processTransaction(TOP_UP, idempotencyKey);
+    assertThat(idempotencyLookups("completed")).isEqualTo(1);
+    assertThat(idempotencyLookups("miss")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should let a duplicate wait for the posting of its key in flight")
+  void shouldLetDuplicateWaitForPostingInFlight() throws Exception {
+    UUID idempotencyKey = UUID.randomUUID();
+    var postingStarted = new CountDownLatch(1);
+    var releasePosting = new CountDownLatch(1);
+    when(transactionService.processTransaction(TOP_UP, idempotencyKey))
+        .thenAnswer(
+            invocation -> {
+              postingStarted.countDown();
+              releasePosting.await(5, TimeUnit.SECONDS);
+              return completed(idempotencyKey);
+            });
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<TransactionResponse> first =
+          executor.submit(() -> postAsSessionUser(postingCoordinator, idempotencyKey));
+      assertThat(postingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+      List<Thread> duplicateThreads = new CopyOnWriteArrayList<>();
+      Future<TransactionResponse> duplicate =
+          executor.submit(
+              () -> {
+                duplicateThreads.add(Thread.currentThread());
+                return postAsSessionUser(postingCoordinator, idempotencyKey);
+              });
+      awaitParked(duplicateThreads, 1);
+      releasePosting.countDown();
+
+      assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+    }
+
+    verify(transactionService).processTransaction(TOP_UP, idempotencyKey);
+    assertThat(idempotencyLookups("in_flight")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should stop waiting for a posting of the same key in flight after the timeout")
+  void shouldStopWaitingForPostingInFlightAfterTimeout() throws Exception {
+    UUID idempotencyKey = UUID.randomUUID();
+    var postingStarted = new CountDownLatch(1);
+    var releasePosting = new CountDownLatch(1);
+    when(transactionService.processTransaction(TOP_UP, idempotencyKey))
+        .thenAnswer(
+            invocation -> {
+              postingStarted.countDown();
+              releasePosting.await(5, TimeUnit.SECONDS);
+              return completed(idempotencyKey);
+            });
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<TransactionResponse> first =
+          executor.submit(() -> postAsSessionUser(postingCoordinator, idempotencyKey));
+      assertThat(postingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+      try {
+        assertThatThrownBy(() -> postAsSessionUser(postingCoordinator, idempotencyKey))
+            .isInstanceOf(CustomerLockTimeoutException.class)
+            .hasMessageContaining("still being posted");
+      } finally {
+        releasePosting.countDown();
+      }
+      assertThat(first.get(5, TimeUnit.SECONDS).transactionUid()).isEqualTo(idempotencyKey);
+    }
+  }
+
+  @Test
+  @DisplayName("Should post a retry again when the first posting of its key failed")
+  void shouldPostRetryAgainWhenFirstPostingFailed() {
+    UUID idempotencyKey = UUID.randomUUID();
+    when(transactionService.processTransaction(TOP_UP, idempotencyKey))
+        .thenThrow(new CustomerLockTimeoutException("Customer is busy, please retry", null))
+        .thenReturn(completed(idempotencyKey));
+
+    assertThatThrownBy(() -> postAsSessionUser(postingCoordinator, idempotencyKey))
+        .isInstanceOf(CustomerLockTimeoutException.class);
+    assertThat(postAsSessionUser(postingCoordinator, idempotencyKey).transactionUid())
+        .isEqualTo(idempotencyKey);
+    assertThat(idempotencyLookups("miss")).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should post a single request as a group when group commit is enabled")
+  void shouldPostSingleRequestAsGroup() {
+    PostingCoordinator groupCommitCoordinator = postingCoordinator(true);
+    UUID idempotencyKey = UUID.randomUUID();
+    when(transactionService.processGroup(
+            sessionUser.uid(), List.of(BatchTransactionItem.of(idempotencyKey, TOP_UP))))
+        .thenReturn(List.of(PostingOutcome.success(completed(idempotencyKey))));
+    ThreadLocalStorage.setSessionUser(sessionUser);
+
+    var response = groupCommitCoordinator.processTransaction(TOP_UP, idempotencyKey);
+
+    assertThat(response.transactionUid()).isEqualTo(idempotencyKey);
+    assertThat(ThreadLocalStorage.getSessionUser()).isNull();
+    verify(transactionService, never()).processTransaction(any(), any());
+  }
+
+  @Test
+  @DisplayName("Should raise the error of a request rejected within its group")
+  void shouldRaiseErrorOfRequestRejectedWithinGroup() {
+    PostingCoordinator groupCommitCoordinator = postingCoordinator(true);
+    when(transactionService.processGroup(any(), any()))
+        .thenReturn(
+            List.of(
+                PostingOutcome.failure(
+                    new TransferRequestException("Customer does not have sufficient balance"))));
+    ThreadLocalStorage.setSessionUser(sessionUser);
+
+    assertThatThrownBy(() -> groupCommitCoordinator.processTransaction(TOP_UP, UUID.randomUUID()))
+        .isInstanceOf(TransferRequestException.class)
+        .hasMessageContaining("sufficient balance");
+  }
+
+  @Test
+  @DisplayName("Should coalesce requests queued behind a running group into the next group")
+  void shouldCoalesceQueuedRequestsIntoNextGroup() throws Exception {
+    PostingCoordinator groupCommitCoordinator = postingCoordinator(true);
+    var firstGroupStarted = new CountDownLatch(1);
+    var releaseFirstGroup = new CountDownLatch(1);
+    List<Integer> groupSizes = new CopyOnWriteArrayList<>();
+    when(transactionService.processGroup(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              List<BatchTransactionItem> items = invocation.getArgument(1);
+              groupSizes.add(items.size());
+              if (groupSizes.size() == 1) {
+                firstGroupStarted.countDown();
+                releaseFirstGroup.await(5, TimeUnit.SECONDS);
+              }
+              return items.stream()
+                  .map(item -> PostingOutcome.success(completed(item.idempotencyKey())))
+                  .toList();
+            });
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<TransactionResponse> leader =
+          executor.submit(() -> postAsSessionUser(groupCommitCoordinator, UUID.randomUUID()));
+      assertThat(firstGroupStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+      List<UUID> followerKeys = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+      List<Thread> followerThreads = new CopyOnWriteArrayList<>();
+      List<Future<TransactionResponse>> followers =
+          followerKeys.stream()
+              .map(
+                  key ->
+                      executor.submit(
+                          () -> {
+                            followerThreads.add(Thread.currentThread());
+                            return postAsSessionUser(groupCommitCoordinator, key);
+                          }))
+              .toList();
+      awaitParked(followerThreads, followerKeys.size());
+      releaseFirstGroup.countDown();
+
+      assertThat(leader.get(5, TimeUnit.SECONDS)).isNotNull();
+      for (int i = 0; i < followerKeys.size(); i++) {
+        assertThat(followers.get(i).get(5, TimeUnit.SECONDS).transactionUid())
+            .isEqualTo(followerKeys.get(i));
+      }
+    }
+
+    assertThat(groupSizes).containsExactly(1, 3);
+    assertThat(meterRegistry.get(PostingCoordinator.GROUP_SIZE_SUMMARY).summary().count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should post the requests of a failed group one by one so only the faulty one fails")
+  void shouldPostRequestsOfFailedGroupOneByOne() throws Exception {
+    PostingCoordinator groupCommitCoordinator = postingCoordinator(true);
+    UUID faultyKey = UUID.randomUUID();
+    UUID validKey = UUID.randomUUID();
+    var firstGroupStarted = new CountDownLatch(1);
+    var releaseFirstGroup = new CountDownLatch(1);
+    List<Integer> groupSizes = new CopyOnWriteArrayList<>();
+    when(transactionService.processGroup(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              List<BatchTransactionItem> items = invocation.getArgument(1);
+              groupSizes.add(items.size());
+              if (groupSizes.size() == 1) {
+                firstGroupStarted.countDown();
+                releaseFirstGroup.await(5, TimeUnit.SECONDS);
+              }
+              if (items.stream().anyMatch(item -> item.idempotencyKey().equals(faultyKey))) {
+                throw new DuplicateKeyException("duplicate key value violates unique constraint");
+              }
+              return items.stream()
+                  .map(item -> PostingOutcome.success(completed(item.idempotencyKey())))
+                  .toList();
+            });
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<TransactionResponse> leader =
+          executor.submit(() -> postAsSessionUser(groupCommitCoordinator, UUID.randomUUID()));
+      assertThat(firstGroupStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+      List<Thread> followerThreads = new CopyOnWriteArrayList<>();
+      List<Future<TransactionResponse>> followers =
+          List.of(faultyKey, validKey).stream()
+              .map(
+                  key ->
+                      executor.submit(
+                          () -> {
+                            followerThreads.add(Thread.currentThread());
+                            return postAsSessionUser(groupCommitCoordinator, key);
+                          }))
+              .toList();
+      awaitParked(followerThreads, 2);
+      releaseFirstGroup.countDown();
+
+      assertThat(leader.get(5, TimeUnit.SECONDS)).isNotNull();
+      assertThatThrownBy(() -> followers.get(0).get(5, TimeUnit.SECONDS))
+          .hasCauseInstanceOf(DuplicateKeyException.class);
+      assertThat(followers.get(1).get(5, TimeUnit.SECONDS).transactionUid()).isEqualTo(validKey);
+    }
+
+    assertThat(groupSizes).containsExactly(1, 2, 1, 1);
+  }
+
+  private TransactionResponse postAsSessionUser(PostingCoordinator coordinator, UUID key) {
+    ThreadLocalStorage.setSessionUser(sessionUser);
+    return coordinator.processTransaction(TOP_UP, key);
+  }
+
+  private static void awaitParked(List<Thread> threads, int expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (threads.size() < expected
+        || threads.stream().anyMatch(thread -> thread.getState() != Thread.State.WAITING)) {
+      assertThat(System.nanoTime()).isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private double idempotencyLookups(String result) {
+    return meterRegistry
+        .get(PostingCoordinator.IDEMPOTENCY_LOOKUP_COUNTER)
+        .tag("result", result)
+        .counter()
+        .count();
+  }
+
+  private static TransactionResponse completed(UUID transactionUid) {
+    return new TransactionResponse(transactionUid, TransactionStatus.COMPLETED, Instant.now());
+  }
+
+  private PostingCoordinator postingCoordinator(boolean groupCommitEnabled) {
+    return new PostingCoordinator(
+        transactionService,
+        idempotencyStore,
+        new TransactionProperties(
+            new Posting(PostingMode.STANDARD),
+            new Batch(500),
+            new Lock(Duration.ofMillis(200), 100),
+            new Serialization(true, 16),
+            new GroupCommit(groupCommitEnabled, 100)),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,145 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ReconciliationProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.BalanceDiscrepancy;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.ReconciliationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Runs against the application's own Hikari pool, since chunks are reconciled concurrently and
+ * cannot share the single connection of {@code TestLiquibaseConfig}.
+ */
+@SpringBootTest
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+class ReconciliationJobITest {
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private ReconciliationRepository reconciliationRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private ReconciliationJob reconciliationJob;
+  private Long balancedCustomerId;
+  private Long driftedCustomerId;
+
+  @BeforeEach
+  void setUp() {
+    reconciliationJob =
+        new ReconciliationJob(
+            customerRepository,
+            reconciliationRepository,
+            new ReconciliationProperties(true, "-", new BigDecimal("100.0"), 2, 2),
+            transactionManager,
+            meterRegistry);
+
+    balancedCustomerId = insertCustomer("130.00");
+    insertTransaction(balancedCustomerId, "TOP_UP", "50.00", "COMPLETED");
+    insertTransaction(balancedCustomerId, "PURCHASE", "25.00", "COMPLETED");
+    insertTransaction(balancedCustomerId, "PARTIAL_REFUND", "5.00", "REFUNDED");
+    insertTransaction(balancedCustomerId, "PURCHASE", "70.00", "FAILED");
+
+    driftedCustomerId = insertCustomer("90.00");
+    insertTransaction(driftedCustomerId, "PURCHASE", "20.00", "COMPLETED");
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcClient.sql("DELETE FROM balance_discrepancies").update();
+    for (Long customerId : List.of(balancedCustomerId, driftedCustomerId)) {
+      jdbcClient
+          .sql("DELETE FROM transactions WHERE customer_id = :customerId")
+          .param("customerId", customerId)
+          .update();
+      jdbcClient
+          .sql("DELETE FROM customers WHERE id = :customerId")
+          .param("customerId", customerId)
+          .update();
+    }
+  }
+
+  @Test
+  @DisplayName("Should record customers whose balance differs from their transactions")
+  void shouldRecordCustomersWhoseBalanceDiffersFromTransactions() {
+    long found = reconciliationJob.reconcile();
+
+    List<BalanceDiscrepancy> recorded =
+        jdbcClient
+            .sql("SELECT * FROM balance_discrepancies WHERE customer_id IN (:ids)")
+            .param("ids", List.of(balancedCustomerId, driftedCustomerId))
+            .query(BalanceDiscrepancy.class)
+            .list();
+    assertThat(recorded)
+        .singleElement()
+        .satisfies(
+            discrepancy -> {
+              assertThat(discrepancy.customerId()).isEqualTo(driftedCustomerId);
+              assertThat(discrepancy.recordedBalance()).isEqualByComparingTo("90.00");
+              assertThat(discrepancy.ledgerBalance()).isEqualByComparingTo("80.00");
+            });
+    assertThat(found).isPositive();
+    assertThat(meterRegistry.get(ReconciliationJob.DISCREPANCIES_COUNTER).counter().count())
+        .isEqualTo(found);
+    assertThat(meterRegistry.get(ReconciliationJob.LAST_RUN_DISCREPANCIES_GAUGE).gauge().value())
+        .isEqualTo(found);
+    assertThat(meterRegistry.get(ReconciliationJob.CUSTOMERS_COUNTER).counter().count())
+        .isEqualTo(jdbcClient.sql("SELECT count(*) FROM customers").query(Long.class).single());
+    assertThat(meterRegistry.get(ReconciliationJob.FAILED_CHUNKS_COUNTER).counter().count())
+        .isZero();
+  }
+
+  private Long insertCustomer(String balance) {
+    return jdbcClient
+        .sql(
+            """
+                INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                RETURNING id
+                """)
+        .params(
+            UUID.randomUUID(),
+            "Aysel",
+            "Ismayilova",
+            new BigDecimal(balance),
+            "+994556789012",
+            LocalDate.now().minusYears(30),
+            "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+        .query(Long.class)
+        .single();
+  }
+
+  private void insertTransaction(Long customerId, String type, String amount, String status) {
+    jdbcClient
+        .sql(
+            """
+                WITH transaction_key AS (
+                    INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+                    VALUES (gen_random_uuid(), :customerId, now())
+                    RETURNING uid, customer_id, transaction_date)
+                INSERT INTO transactions (uid, customer_id, type, amount, transaction_date, status)
+                SELECT uid, customer_id, :type, :amount, transaction_date, :status
+                FROM transaction_key
+                """)
+        .param("customerId", customerId)
+        .param("type", type)
+        .param("amount", new BigDecimal(amount))
+        .param("status", status)
+        .update();
+  }
+}
@@ -0,0 +1,205 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.StatementFormat;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+
+@SpringBootTest
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+@Import(TestLiquibaseConfig.class)
+class StatementServiceITest {
+  private static final Instant FROM = Instant.parse("2020-01-01T00:00:00Z");
+  private static final Instant TO = Instant.parse("2021-01-01T00:00:00Z");
+
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private ObjectMapper objectMapper;
+  @Autowired private StatementService statementService;
+
+  private Long customerId;
+
+  @BeforeEach
+  void setUp() {
+    customerId =
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    RETURNING id
+                    """)
+            .params(
+                UUID.randomUUID(),
+                "Leyla",
+                "Aliyeva",
+                BigDecimal.ZERO,
+                "+994504567890",
+                LocalDate.now().minusYears(30),
+                "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+            .query(Long.class)
+            .single();
+    ThreadLocalStorage.setSessionUser(new SessionUser(customerId, UUID.randomUUID(), ""));
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcClient.sql("SET session_replication_role = replica").update();
+    jdbcClient
+        .sql("DELETE FROM transactions WHERE customer_id = :customerId")
+        .param("customerId", customerId)
+        .update();
+    jdbcClient.sql("SET session_replication_role = DEFAULT").update();
+    jdbcClient
+        .sql("DELETE FROM customers WHERE id = :customerId")
+        .param("customerId", customerId)
+        .update();
+  }
+
+  @Test
+  @DisplayName("Should export the transactions of the range oldest first as NDJSON")
+  void shouldExportTransactionsOfRangeAsNdjson() throws Exception {
+    seed(3, TO.minusSeconds(2));
+
+    var output = new ByteArrayOutputStream();
+    statementService.exportStatement(FROM, TO, StatementFormat.NDJSON).writeTo(output);
+
+    String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(2);
+    TransactionHistoryItem first = objectMapper.readValue(lines[0], TransactionHistoryItem.class);
+    TransactionHistoryItem second = objectMapper.readValue(lines[1], TransactionHistoryItem.class);
+    assertThat(first.transactionDate()).isEqualTo(TO.minusSeconds(2));
+    assertThat(second.transactionDate()).isEqualTo(TO.minusSeconds(1));
+    assertThat(first.type()).isEqualTo(TransactionType.PURCHASE);
+  }
+
+  @Test
+  @DisplayName("Should export the transactions of the range as CSV with a header")
+  void shouldExportTransactionsOfRangeAsCsv() throws Exception {
+    seed(2, FROM);
+
+    var output = new ByteArrayOutputStream();
+    statementService.exportStatement(FROM, TO, StatementFormat.CSV).writeTo(output);
+
+    String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(3);
+    assertThat(lines[0]).isEqualTo(StatementService.CSV_HEADER);
+    assertThat(lines[1]).endsWith(",PURCHASE,1.00,COMPLETED,2020-01-01T00:00:00Z,");
+  }
+
+  @Test
+  @DisplayName("Should export every transaction of a range spanning several pages once")
+  void shouldExportRangeSpanningSeveralPages() throws Exception {
+    int rows = 2_500;
+    seed(rows, FROM);
+
+    var output = new ByteArrayOutputStream();
+    statementService.exportStatement(FROM, TO, StatementFormat.NDJSON).writeTo(output);
+
+    String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(rows);
+    TransactionHistoryItem last =
+        objectMapper.readValue(lines[rows - 1], TransactionHistoryItem.class);
+    assertThat(last.transactionDate()).isEqualTo(FROM.plusSeconds(rows - 1));
+  }
+
+  @Test
+  @DisplayName("Should reject a statement range that is empty")
+  void shouldRejectEmptyStatementRange() {
+    assertThatThrownBy(() -> statementService.exportStatement(TO, FROM, StatementFormat.CSV))
+        .isInstanceOf(TransferRequestException.class);
+  }
+
+  /**
+   * Exports more bytes than the whole heap of the {@code cappedHeapTest} task. Run with {@code
+   * ./gradlew cappedHeapTest}; it fails with an {@link OutOfMemoryError} if the rows are
+   * materialised instead of streamed.
+   */
+  @Test
+  @Tag("capped-heap")
+  @DisplayName("Should stream a statement larger than the heap")
+  void shouldStreamStatementLargerThanHeap() throws Exception {
+    int rows = 2_000_000;
+    seed(rows, FROM);
+
+    var output = new CountingOutputStream();
+    statementService.exportStatement(FROM, TO, StatementFormat.NDJSON).writeTo(output);
+
+    assertThat(output.lines).isEqualTo(rows);
+    assertThat(output.bytes).isGreaterThan(Runtime.getRuntime().maxMemory());
+  }
+
+  /** Seeds {@code rows} purchases one second apart from {@code start}, skipping the triggers. */
+  private void seed(int rows, Instant start) {
+    jdbcClient.sql("SET session_replication_role = replica").update();
+    try {
+      jdbcClient
+          .sql(
+              """
+                  WITH transaction_key AS (
+                      INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+                      SELECT gen_random_uuid(), :customerId, :start + (g - 1) * INTERVAL '1 second'
+                      FROM generate_series(1, :rows) g
+                      RETURNING uid, customer_id, transaction_date)
+                  INSERT INTO transactions
+                      (uid, customer_id, type, amount, description, transaction_date, status)
+                  SELECT uid, customer_id, 'PURCHASE', 1.00, 'statement', transaction_date, 'COMPLETED'
+                  FROM transaction_key
+                  """)
+          .param("customerId", customerId)
+          .param("start", Timestamp.from(start))
+          .param("rows", rows)
+          .update();
+    } finally {
+      jdbcClient.sql("SET session_replication_role = DEFAULT").update();
+    }
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+    private long bytes;
+    private long lines;
+
+    @Override
+    public void write(int b) {
+      bytes++;
+      if (b == '\n') {
+        lines++;
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      bytes += len;
+      for (int i = off; i < off + len; i++) {
+        if (b[i] == '\n') {
+          lines++;
+        }
+      }
+    }
+  }
+}
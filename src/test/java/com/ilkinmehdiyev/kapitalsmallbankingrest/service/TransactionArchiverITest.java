@@ -0,0 +1,210 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.ArchiveProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.ArchiveRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.PartitionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionArchiver.ArchiveResult;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@SpringBootTest
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+@Import(TestLiquibaseConfig.class)
+class TransactionArchiverITest {
+  private static final Instant CUTOFF = Instant.parse("2007-01-01T00:00:00Z");
+
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private ArchiveRepository archiveRepository;
+  @Autowired private PartitionRepository partitionRepository;
+  @Autowired private TransactionRepository transactionRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionArchiver transactionArchiver;
+  private Long customerId;
+  private UUID customerUid;
+
+  @BeforeEach
+  void setUp() {
+    // A chunk size of one makes every chunked move take several rounds.
+    transactionArchiver =
+        new TransactionArchiver(
+            archiveRepository,
+            new ArchiveProperties("-", Duration.ofDays(400), 1),
+            transactionManager);
+    customerUid = UUID.randomUUID();
+    customerId =
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    RETURNING id
+                    """)
+            .params(
+                customerUid,
+                "Aysel",
+                "Karimova",
+                new BigDecimal("100.00"),
+                "+994552345678",
+                LocalDate.now().minusYears(31),
+                "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+            .query(Long.class)
+            .single();
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcClient
+        .sql(
+            """
+                DELETE FROM transactions_log_archive
+                WHERE transaction_id IN (SELECT id FROM transactions_archive
+                                         WHERE customer_id = :id)
+                """)
+        .param("id", customerId)
+        .update();
+    for (String table : List.of("transactions", "transactions_archive")) {
+      jdbcClient
+          .sql("DELETE FROM " + table + " WHERE customer_id = :id")
+          .param("id", customerId)
+          .update();
+    }
+    jdbcClient.sql("DROP TABLE IF EXISTS transactions_2091_05").update();
+    jdbcClient.sql("DELETE FROM customers WHERE id = :id").param("id", customerId).update();
+  }
+
+  @Test
+  @DisplayName(
+      "Should archive old rows and log rows and still find archived purchases and their history")
+  void shouldArchiveOldTransactionsAndStillFindThem() {
+    UUID purchase = insertPurchase(Instant.parse("2006-03-10T12:00:00Z"));
+    UUID olderPurchase = insertPurchase(Instant.parse("2005-06-10T12:00:00Z"));
+    UUID recentPurchase = insertPurchase(Instant.now());
+    jdbcClient
+        .sql(
+            """
+                UPDATE transactions_log SET log_created = '2005-06-10T12:00:00Z'
+                WHERE transaction_id IN (SELECT id FROM transactions
+                                         WHERE customer_id = :id AND transaction_date < :cutoff)
+                """)
+        .param("id", customerId)
+        .param("cutoff", Timestamp.from(CUTOFF))
+        .update();
+
+    ArchiveResult result = transactionArchiver.archive(CUTOFF);
+
+    assertThat(result.transactions()).isGreaterThanOrEqualTo(2);
+    assertThat(result.logRows()).isGreaterThanOrEqualTo(2);
+    assertThat(partitionOf("transactions_archive", purchase))
+        .isEqualTo("transactions_archive_default");
+    assertThat(partitionOf("transactions_archive", olderPurchase))
+        .isEqualTo("transactions_archive_default");
+    assertThat(partitionOf("transactions", recentPurchase)).matches("transactions_\\d{4}_\\d{2}");
+    assertThat(
+            jdbcClient
+                .sql(
+                    """
+                        SELECT count(*) FROM transactions_log_archive
+                        WHERE transaction_id IN (SELECT id FROM transactions_archive
+                                                 WHERE customer_id = :id)
+                        """)
+                .param("id", customerId)
+                .query(Long.class)
+                .single())
+        .isEqualTo(2);
+
+    assertThat(transactionRepository.findByUid(olderPurchase, customerUid)).isPresent();
+    assertThat(
+            transactionRepository.findHistory(
+                customerId, new TransactionHistoryFilter(null, null, null, null), null, 10))
+        .extracting(Transaction::uid)
+        .containsExactly(recentPurchase, purchase, olderPurchase);
+    Instant lastDay = Instant.now().minus(Duration.ofDays(1));
+    assertThat(
+            transactionRepository.findHistory(
+                customerId, new TransactionHistoryFilter(null, null, lastDay, null), null, 10))
+        .extracting(Transaction::uid)
+        .containsExactly(recentPurchase);
+    assertThat(transactionRepository.claimTransaction(purchase(purchase, Instant.now()))).isEmpty();
+    assertThat(
+            transactionRepository.incrementRefundedAmount(
+                purchase, customerId, new BigDecimal("10.00")))
+        .isTrue();
+    assertThat(transactionRepository.findByUidForUpdate(purchase, customerId))
+        .hasValueSatisfying(
+            archived -> assertThat(archived.refundedAmount()).isEqualByComparingTo("10.00"));
+  }
+
+  @Test
+  @DisplayName("Should move a whole monthly partition to the archive once")
+  void shouldMoveMonthlyPartitionToArchive() {
+    // A far future month, so that archiving it leaves the months other tests post in alone.
+    YearMonth month = YearMonth.of(2091, 5);
+    partitionRepository.createTransactionsPartition(month);
+    UUID purchase = insertPurchase(Instant.parse("2091-05-10T12:00:00Z"));
+
+    assertThat(transactionArchiver.archivePartition(month)).isTrue();
+    assertThat(transactionArchiver.archivePartition(month)).isFalse();
+
+    assertThat(partitionOf("transactions_archive", purchase)).isEqualTo("transactions_2091_05");
+    assertThat(
+            jdbcClient
+                .sql("SELECT count(*) FROM transactions WHERE uid = :uid")
+                .param("uid", purchase)
+                .query(Long.class)
+                .single())
+        .isZero();
+    assertThat(transactionRepository.findByUid(purchase, customerUid)).isPresent();
+  }
+
+  private UUID insertPurchase(Instant transactionDate) {
+    UUID uid = UUID.randomUUID();
+    transactionRepository.claimTransaction(purchase(uid, transactionDate));
+    return uid;
+  }
+
+  private Transaction purchase(UUID uid, Instant transactionDate) {
+    return new Transaction(
+        uid,
+        customerId,
+        TransactionType.PURCHASE,
+        new BigDecimal("40.00"),
+        "PURCHASE",
+        transactionDate,
+        TransactionStatus.COMPLETED,
+        null);
+  }
+
+  private String partitionOf(String table, UUID transactionUid) {
+    return jdbcClient
+        .sql("SELECT tableoid::regclass::text FROM " + table + " WHERE uid = :uid")
+        .param("uid", transactionUid)
+        .query(String.class)
+        .single();
+  }
+}
@@ -0,0 +1,126 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryCursor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryFilter;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionHistoryPage;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionHistoryServiceUTest {
+  private static final TransactionHistoryFilter NO_FILTER =
+      new TransactionHistoryFilter(null, null, null, null);
+
+  @Mock private TransactionRepository transactionRepository;
+
+  @InjectMocks private TransactionHistoryService transactionHistoryService;
+
+  private final Instant now = Instant.parse("2025-04-17T19:47:08.123456Z");
+
+  @BeforeEach
+  void setUp() {
+    ThreadLocalStorage.setSessionUser(new SessionUser(1L, UUID.randomUUID(), "+994501234567"));
+  }
+
+  @Test
+  @DisplayName("Should return the cursor of the last item when another page follows")
+  void shouldReturnCursorOfLastItemWhenAnotherPageFollows() {
+    List<Transaction> transactions = transactions(3);
+    when(transactionRepository.findHistory(1L, NO_FILTER, null, 3)).thenReturn(transactions);
+
+    TransactionHistoryPage page = transactionHistoryService.getHistory(NO_FILTER, null, 2);
+
+    assertThat(page.items())
+        .extracting(TransactionHistoryItem::transactionUid)
+        .containsExactly(transactions.get(0).uid(), transactions.get(1).uid());
+    assertThat(TransactionHistoryCursor.decode(page.nextCursor()))
+        .isEqualTo(new TransactionHistoryCursor(now.minusSeconds(1), 2));
+  }
+
+  @Test
+  @DisplayName("Should not return a cursor on the last page")
+  void shouldNotReturnCursorOnLastPage() {
+    var cursor = new TransactionHistoryCursor(now, 42);
+    when(transactionRepository.findHistory(1L, NO_FILTER, cursor, 21))
+        .thenReturn(transactions(2));
+
+    TransactionHistoryPage page =
+        transactionHistoryService.getHistory(NO_FILTER, cursor.encode(), 20);
+
+    assertThat(page.items()).hasSize(2);
+    assertThat(page.nextCursor()).isNull();
+  }
+
+  @Test
+  @DisplayName("Should reject a malformed cursor")
+  void shouldRejectMalformedCursor() {
+    assertThatThrownBy(() -> transactionHistoryService.getHistory(NO_FILTER, "not-a-cursor", 20))
+        .isInstanceOf(TransferRequestException.class)
+        .hasMessageContaining("Invalid cursor");
+
+    verifyNoInteractions(transactionRepository);
+  }
+
+  @Test
+  @DisplayName("Should reject a page size above the maximum")
+  void shouldRejectPageSizeAboveMaximum() {
+    assertThatThrownBy(
+            () ->
+                transactionHistoryService.getHistory(
+                    NO_FILTER, null, TransactionHistoryService.MAX_PAGE_SIZE + 1))
+        .isInstanceOf(TransferRequestException.class);
+
+    verifyNoInteractions(transactionRepository);
+  }
+
+  @Test
+  @DisplayName("Should reject an empty date range")
+  void shouldRejectEmptyDateRange() {
+    var filter = new TransactionHistoryFilter(null, null, now, now);
+
+    assertThatThrownBy(() -> transactionHistoryService.getHistory(filter, null, 20))
+        .isInstanceOf(TransferRequestException.class);
+
+    verifyNoInteractions(transactionRepository);
+  }
+
+  /** Transactions with ids 1..count, newest first as the repository returns them. */
+  private List<Transaction> transactions(int count) {
+    return LongStream.rangeClosed(1, count)
+        .mapToObj(
+            id ->
+                Transaction.builder()
+                    .id(id)
+                    .uid(UUID.randomUUID())
+                    .customerId(1L)
+                    .type(TransactionType.TOP_UP)
+                    .amount(BigDecimal.TEN)
+                    .transactionDate(now.minusSeconds(id - 1))
+                    .status(TransactionStatus.COMPLETED)
+                    .build())
+        .toList();
+  }
+}
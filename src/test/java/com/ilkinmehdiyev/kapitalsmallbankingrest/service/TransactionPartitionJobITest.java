@@ -0,0 +1,130 @@
+package com.ilkinmehdiyev.kapitalsmallbankingrest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.PartitionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TestLiquibaseConfig;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.initalizer.PostgresSQLEmbeddedContainer;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.Transaction;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.PartitionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ContextConfiguration;
+
+@SpringBootTest
+@ContextConfiguration(initializers = {PostgresSQLEmbeddedContainer.Initializer.class})
+@Import(TestLiquibaseConfig.class)
+class TransactionPartitionJobITest {
+  private static final YearMonth FIRST_MONTH = YearMonth.of(2091, 1);
+  private static final List<String> PARTITIONS =
+      List.of("transactions_2091_01", "transactions_2091_02");
+
+  @Autowired private JdbcClient jdbcClient;
+  @Autowired private PartitionRepository partitionRepository;
+  @Autowired private TransactionRepository transactionRepository;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private TransactionPartitionJob transactionPartitionJob;
+  private Long customerId;
+
+  @BeforeEach
+  void setUp() {
+    transactionPartitionJob =
+        new TransactionPartitionJob(
+            partitionRepository, new PartitionProperties(true, "-", 1), meterRegistry);
+    customerId =
+        jdbcClient
+            .sql(
+                """
+                    INSERT INTO customers (uid, name, surname, balance, phone_number, birth_date, password)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    RETURNING id
+                    """)
+            .params(
+                UUID.randomUUID(),
+                "Leyla",
+                "Quliyeva",
+                new BigDecimal("100.00"),
+                "+994512345678",
+                LocalDate.now().minusYears(28),
+                "$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.")
+            .query(Long.class)
+            .single();
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcClient
+        .sql("DELETE FROM transactions WHERE customer_id = :customerId")
+        .param("customerId", customerId)
+        .update();
+    for (String partition : PARTITIONS) {
+      jdbcClient.sql("DROP TABLE IF EXISTS " + partition).update();
+    }
+    jdbcClient.sql("DELETE FROM customers WHERE id = :id").param("id", customerId).update();
+  }
+
+  @Test
+  @DisplayName("Should create missing partitions once and reject rows of months without one")
+  void shouldCreateMissingPartitionsOnce() {
+    assertThat(transactionPartitionJob.createPartitions(FIRST_MONTH)).isEqualTo(2);
+    assertThat(transactionPartitionJob.createPartitions(FIRST_MONTH)).isZero();
+    assertThat(meterRegistry.get(TransactionPartitionJob.MONTHS_AHEAD_GAUGE).gauge().value())
+        .isEqualTo(1);
+    assertThat(partitionRepository.hasTransactionsPartition(FIRST_MONTH.plusMonths(1))).isTrue();
+    assertThat(partitionRepository.hasTransactionsPartition(FIRST_MONTH.plusMonths(2))).isFalse();
+
+    UUID transactionUid = UUID.randomUUID();
+    transactionRepository.claimTransaction(
+        topUp(transactionUid, Instant.parse("2091-02-15T10:00:00Z")));
+
+    assertThat(partitionOf(transactionUid)).isEqualTo("transactions_2091_02");
+    assertThat(transactionRepository.findAllByUids(List.of(transactionUid), customerId))
+        .singleElement()
+        .extracting(Transaction::status)
+        .isEqualTo(TransactionStatus.COMPLETED);
+    assertThatThrownBy(
+            () ->
+                transactionRepository.claimTransaction(
+                    topUp(UUID.randomUUID(), Instant.parse("2091-03-15T10:00:00Z"))))
+        .isInstanceOf(DataIntegrityViolationException.class);
+  }
+
+  private Transaction topUp(UUID transactionUid, Instant transactionDate) {
+    return new Transaction(
+        transactionUid,
+        customerId,
+        TransactionType.TOP_UP,
+        BigDecimal.ONE,
+        "TOP_UP",
+        transactionDate,
+        TransactionStatus.COMPLETED,
+        null);
+  }
+
+  private String partitionOf(UUID transactionUid) {
+    return jdbcClient
+        .sql("SELECT tableoid::regclass::text FROM transactions WHERE uid = :uid")
+        .param("uid", transactionUid)
+        .query(String.class)
+        .single();
+  }
+}
@@ -7,9 +7,23 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.AuditLog;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.CustomerLockMonitor;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.common.TransactionMetrics;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Batch;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.GroupCommit;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Lock;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Posting;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.PostingMode;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.config.TransactionProperties.Serialization;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItem;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.BatchTransactionItemResult;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionRequest;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.dto.TransactionResponse;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerLockTimeoutException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.CustomerNotFoundException;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.IdempotencyKeyConflictException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.NoDataFoundException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransactionException;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.exception.TransferRequestException;
@@ -19,26 +33,50 @@ import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionStatus;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.model.enums.TransactionType;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.CustomerRepository;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.repository.TransactionRepository.PostingResult;
+import com.ilkinmehdiyev.kapitalsmallbankingrest.service.TransactionService.PostingOutcome;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.SessionUser;
 import com.ilkinmehdiyev.kapitalsmallbankingrest.utils.ThreadLocalStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
 
 @ExtendWith(MockitoExtension.class)
 class TransactionServiceUTest {
+  private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(2);
 
   @Mock private CustomerRepository customerRepository;
   @Mock private TransactionRepository transactionRepository;
+  @Mock private AuditLog auditLog;
+
+  @Spy
+  private TransactionProperties transactionProperties =
+      transactionProperties(PostingMode.STANDARD);
+
+  @Spy
+  private TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+
+  @Spy
+  private CustomerLockMonitor customerLockMonitor =
+      new CustomerLockMonitor(new SimpleMeterRegistry(), transactionProperties);
+
   @InjectMocks private TransactionService transactionService;
 
   private UUID customerUid;
@@ -86,7 +124,6 @@ class TransactionServiceUTest {
 
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
-    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
     when(transactionRepository.processTransactionByCustomerId(
             testCustomer.id(), request, idempotencyKey))
         .thenReturn(
@@ -99,11 +136,32 @@ class TransactionServiceUTest {
     assertThat(response.status()).isEqualTo(TransactionStatus.COMPLETED);
 
     verify(customerRepository).getCustomerByUidForUpdate(customerUid);
-    verify(transactionRepository).findByUid(idempotencyKey, customerUid);
+    verify(transactionRepository, never()).findByUid(any(), any());
     verify(transactionRepository)
         .processTransactionByCustomerId(testCustomer.id(), request, idempotencyKey);
   }
 
+  @Test
+  @DisplayName("Should turn the audit triggers off when the audit log takes over the posting")
+  void shouldSkipAuditTriggersWhenAuditLogTakesOver() {
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("50.00"), null);
+    UUID idempotencyKey = UUID.randomUUID();
+
+    when(auditLog.takeOverCurrentTransaction()).thenReturn(true);
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.processTransactionByCustomerId(
+            testCustomer.id(), request, idempotencyKey))
+        .thenReturn(
+            new TransactionResponse(transactionUid, TransactionStatus.COMPLETED, Instant.now()));
+
+    transactionService.processTransaction(request, idempotencyKey);
+
+    verify(customerRepository).setLocalLockTimeoutSkippingAuditTriggers(LOCK_TIMEOUT);
+    verify(customerRepository, never()).setLocalLockTimeout(any());
+  }
+
   @Test
   @DisplayName("Should successfully process a purchase transaction with sufficient balance")
   void shouldProcessPurchaseTransactionWithSufficientBalance() {
@@ -113,7 +171,6 @@ class TransactionServiceUTest {
 
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
-    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
     when(transactionRepository.processTransactionByCustomerId(
             testCustomer.id(), request, idempotencyKey))
         .thenReturn(
@@ -156,13 +213,16 @@ class TransactionServiceUTest {
   }
 
   @Test
-  @DisplayName("Should return existing transaction when processing with same idempotency key")
-  void shouldReturnExistingTransactionWhenProcessingWithSameIdempotencyKey() {
+  @DisplayName("Should return existing transaction when a retry no longer passes validation")
+  void shouldReturnExistingTransactionWhenRetryNoLongerPassesValidation() {
     TransactionRequest request =
-        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("50.00"), null);
+        new TransactionRequest(TransactionType.PURCHASE, new BigDecimal("150.00"), null);
     UUID idempotencyKey = transactionUid;
 
-    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.of(testTransaction));
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.findByUid(idempotencyKey, customerUid))
+        .thenReturn(Optional.of(testTransaction));
 
     TransactionResponse response = transactionService.processTransaction(request, idempotencyKey);
 
@@ -170,7 +230,6 @@ class TransactionServiceUTest {
     assertThat(response.transactionUid()).isEqualTo(transactionUid);
     assertThat(response.status()).isEqualTo(TransactionStatus.COMPLETED);
 
-    verify(customerRepository, never()).getCustomerByUidForUpdate(any());
     verify(transactionRepository, never()).processTransactionByCustomerId(any(), any(), any());
   }
 
@@ -182,7 +241,6 @@ class TransactionServiceUTest {
     UUID idempotencyKey = UUID.randomUUID();
 
     when(customerRepository.getCustomerByUidForUpdate(customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
 
     assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
         .isInstanceOf(CustomerNotFoundException.class)
@@ -248,11 +306,8 @@ class TransactionServiceUTest {
 
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
-    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(referenceTransactionUid, customerUid))
+    when(transactionRepository.findByUidForUpdate(referenceTransactionUid, testCustomer.id()))
         .thenReturn(Optional.of(referenceTransaction));
-    when(transactionRepository.getTotalRefundedAmountBy(referenceTransactionUid, customerUid))
-        .thenReturn(BigDecimal.ZERO);
     when(transactionRepository.processTransactionByCustomerId(
             testCustomer.id(), request, idempotencyKey))
         .thenReturn(
@@ -263,8 +318,7 @@ class TransactionServiceUTest {
     assertThat(response).isNotNull();
     assertThat(response.status()).isEqualTo(TransactionStatus.REFUNDED);
 
-    verify(transactionRepository).findByUid(referenceTransactionUid, customerUid);
-    verify(transactionRepository).getTotalRefundedAmountBy(referenceTransactionUid, customerUid);
+    verify(transactionRepository).findByUidForUpdate(referenceTransactionUid, testCustomer.id());
     verify(transactionRepository)
         .processTransactionByCustomerId(testCustomer.id(), request, idempotencyKey);
   }
@@ -293,10 +347,8 @@ class TransactionServiceUTest {
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
     when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(referenceTransactionUid, customerUid))
+    when(transactionRepository.findByUidForUpdate(referenceTransactionUid, testCustomer.id()))
         .thenReturn(Optional.of(referenceTransaction));
-    when(transactionRepository.getTotalRefundedAmountBy(referenceTransactionUid, customerUid))
-        .thenReturn(BigDecimal.ZERO);
 
     assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
         .isInstanceOf(TransactionException.class)
@@ -328,10 +380,8 @@ class TransactionServiceUTest {
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
     when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(referenceTransactionUid, customerUid))
+    when(transactionRepository.findByUidForUpdate(referenceTransactionUid, testCustomer.id()))
         .thenReturn(Optional.of(referenceTransaction));
-    when(transactionRepository.getTotalRefundedAmountBy(referenceTransactionUid, customerUid))
-        .thenReturn(BigDecimal.ZERO);
 
     assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
         .isInstanceOf(TransactionException.class)
@@ -363,10 +413,8 @@ class TransactionServiceUTest {
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
     when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(referenceTransactionUid, customerUid))
+    when(transactionRepository.findByUidForUpdate(referenceTransactionUid, testCustomer.id()))
         .thenReturn(Optional.of(referenceTransaction));
-    when(transactionRepository.getTotalRefundedAmountBy(referenceTransactionUid, customerUid))
-        .thenReturn(BigDecimal.ZERO);
 
     assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
         .isInstanceOf(TransactionException.class)
@@ -377,18 +425,20 @@ class TransactionServiceUTest {
   @DisplayName("Should throw exception when total refunds would exceed original amount")
   void shouldThrowExceptionWhenTotalRefundsExceedOriginalAmount() {
     UUID referenceTransactionUid = UUID.randomUUID();
+    BigDecimal previousRefunds = new BigDecimal("80.00");
     Transaction referenceTransaction =
         new Transaction(
-            referenceTransactionUid,
-            1L,
-            TransactionType.PURCHASE,
-            new BigDecimal("100.00"),
-            "Original purchase",
-            Instant.now(),
-            TransactionStatus.COMPLETED,
-            null);
-
-    BigDecimal previousRefunds = new BigDecimal("80.00");
+                referenceTransactionUid,
+                1L,
+                TransactionType.PURCHASE,
+                new BigDecimal("100.00"),
+                "Original purchase",
+                Instant.now(),
+                TransactionStatus.COMPLETED,
+                null)
+            .toBuilder()
+            .refundedAmount(previousRefunds)
+            .build();
     BigDecimal refundAmount = new BigDecimal("30.00");
 
     TransactionRequest request =
@@ -399,10 +449,8 @@ class TransactionServiceUTest {
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
     when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(referenceTransactionUid, customerUid))
+    when(transactionRepository.findByUidForUpdate(referenceTransactionUid, testCustomer.id()))
         .thenReturn(Optional.of(referenceTransaction));
-    when(transactionRepository.getTotalRefundedAmountBy(referenceTransactionUid, customerUid))
-        .thenReturn(previousRefunds);
 
     assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
         .isInstanceOf(TransactionException.class)
@@ -424,7 +472,8 @@ class TransactionServiceUTest {
     when(customerRepository.getCustomerByUidForUpdate(customerUid))
         .thenReturn(Optional.of(testCustomer));
     when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
-    when(transactionRepository.findByUid(nonExistentReferenceUid, customerUid)).thenReturn(Optional.empty());
+    when(transactionRepository.findByUidForUpdate(nonExistentReferenceUid, testCustomer.id()))
+        .thenReturn(Optional.empty());
 
     assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
         .isInstanceOf(NoDataFoundException.class)
@@ -447,4 +496,368 @@ class TransactionServiceUTest {
         .isInstanceOf(NoDataFoundException.class)
         .hasMessageContaining("Reference transaction ID is required");
   }
+
+  @Test
+  @DisplayName("Should post a purchase in a single statement when single-statement mode is on")
+  void shouldPostPurchaseInSingleStatement() {
+    TransactionService singleStatementService = singleStatementTransactionService();
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.PURCHASE, new BigDecimal("50.00"), null);
+    UUID idempotencyKey = UUID.randomUUID();
+    TransactionResponse postedResponse =
+        new TransactionResponse(idempotencyKey, TransactionStatus.COMPLETED, Instant.now());
+
+    when(transactionRepository.postTransaction(customerUid, request, idempotencyKey))
+        .thenReturn(Optional.of(new PostingResult(new BigDecimal("100.00"), postedResponse)));
+
+    TransactionResponse response =
+        singleStatementService.processTransaction(request, idempotencyKey);
+
+    assertThat(response).isEqualTo(postedResponse);
+    verify(customerRepository, never()).getCustomerByUidForUpdate(any());
+    verify(transactionRepository, never()).processTransactionByCustomerId(any(), any(), any());
+  }
+
+  @Test
+  @DisplayName("Should reject single-statement purchase when balance check fails")
+  void shouldRejectSingleStatementPurchaseWithInsufficientBalance() {
+    TransactionService singleStatementService = singleStatementTransactionService();
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.PURCHASE, new BigDecimal("150.00"), null);
+    UUID idempotencyKey = UUID.randomUUID();
+
+    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
+    when(transactionRepository.postTransaction(customerUid, request, idempotencyKey))
+        .thenReturn(Optional.of(new PostingResult(new BigDecimal("100.00"), null)));
+
+    assertThatThrownBy(() -> singleStatementService.processTransaction(request, idempotencyKey))
+        .isInstanceOf(TransferRequestException.class)
+        .hasMessageContaining("Customer does not have sufficient balance");
+  }
+
+  @Test
+  @DisplayName("Should return existing transaction when single-statement posting finds key taken")
+  void shouldReturnExistingTransactionWhenSingleStatementKeyTaken() {
+    TransactionService singleStatementService = singleStatementTransactionService();
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("50.00"), null);
+    UUID idempotencyKey = transactionUid;
+
+    when(transactionRepository.postTransaction(customerUid, request, idempotencyKey))
+        .thenReturn(Optional.of(new PostingResult(new BigDecimal("150.00"), null)));
+    when(transactionRepository.findByUid(idempotencyKey, customerUid))
+        .thenReturn(Optional.of(testTransaction));
+
+    TransactionResponse response =
+        singleStatementService.processTransaction(request, idempotencyKey);
+
+    assertThat(response.transactionUid()).isEqualTo(transactionUid);
+  }
+
+  @Test
+  @DisplayName("Should report a conflict when the idempotency key belongs to another customer")
+  void shouldReportConflictWhenKeyBelongsToAnotherCustomer() {
+    TransactionService singleStatementService = singleStatementTransactionService();
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("50.00"), null);
+    UUID idempotencyKey = UUID.randomUUID();
+
+    when(transactionRepository.postTransaction(customerUid, request, idempotencyKey))
+        .thenReturn(Optional.of(new PostingResult(new BigDecimal("100.00"), null)));
+    when(transactionRepository.findByUid(idempotencyKey, customerUid)).thenReturn(Optional.empty());
+
+    assertThatThrownBy(() -> singleStatementService.processTransaction(request, idempotencyKey))
+        .isInstanceOf(IdempotencyKeyConflictException.class)
+        .hasMessageContaining("is already used");
+  }
+
+  @Test
+  @DisplayName("Should throw exception when single-statement posting finds no customer")
+  void shouldThrowExceptionWhenSingleStatementPostingFindsNoCustomer() {
+    TransactionService singleStatementService = singleStatementTransactionService();
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.TOP_UP, new BigDecimal("50.00"), null);
+    UUID idempotencyKey = UUID.randomUUID();
+
+    when(transactionRepository.postTransaction(customerUid, request, idempotencyKey))
+        .thenReturn(Optional.empty());
+
+    assertThatThrownBy(() -> singleStatementService.processTransaction(request, idempotencyKey))
+        .isInstanceOf(CustomerNotFoundException.class)
+        .hasMessageContaining("Customer with id");
+  }
+
+  @Test
+  @DisplayName("Should post accepted batch items with one insert and one balance update")
+  void shouldPostBatchWithOneInsertAndOneBalanceUpdate() {
+    UUID topUpKey = UUID.randomUUID();
+    UUID purchaseKey = UUID.randomUUID();
+    List<BatchTransactionItem> items =
+        List.of(
+            new BatchTransactionItem(
+                topUpKey, TransactionType.TOP_UP, new BigDecimal("20.00"), null),
+            new BatchTransactionItem(
+                purchaseKey, TransactionType.PURCHASE, new BigDecimal("110.00"), null));
+
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.findAllByUids(List.of(topUpKey, purchaseKey), testCustomer.id()))
+        .thenReturn(List.of());
+    when(transactionRepository.claimKeys(any(), any(), any()))
+        .thenAnswer(invocation -> new HashSet<UUID>(invocation.getArgument(0)));
+    when(customerRepository.updateCustomerBalance(customerUid, new BigDecimal("-90.00")))
+        .thenReturn(true);
+
+    List<BatchTransactionItemResult> results = transactionService.processBatch(items);
+
+    assertThat(results)
+        .extracting(BatchTransactionItemResult::idempotencyKey)
+        .containsExactly(topUpKey, purchaseKey);
+    assertThat(results).allSatisfy(result -> assertThat(result.error()).isNull());
+    assertThat(results.get(1).transaction().status()).isEqualTo(TransactionStatus.COMPLETED);
+
+    ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.captor();
+    verify(transactionRepository).insertClaimedTransactions(inserted.capture());
+    assertThat(inserted.getValue())
+        .extracting(Transaction::uid)
+        .containsExactly(topUpKey, purchaseKey);
+    verify(transactionRepository).insertOutboxEvents(inserted.getValue());
+    verify(customerRepository).updateCustomerBalance(customerUid, new BigDecimal("-90.00"));
+  }
+
+  @Test
+  @DisplayName("Should report per-item failures and replays without failing the batch")
+  void shouldReportPerItemFailuresInBatch() {
+    UUID replayedKey = UUID.randomUUID();
+    UUID rejectedKey = UUID.randomUUID();
+    UUID acceptedKey = UUID.randomUUID();
+    List<BatchTransactionItem> items =
+        List.of(
+            new BatchTransactionItem(
+                replayedKey, TransactionType.TOP_UP, new BigDecimal("50.00"), null),
+            new BatchTransactionItem(
+                rejectedKey, TransactionType.PURCHASE, new BigDecimal("150.00"), null),
+            new BatchTransactionItem(
+                acceptedKey, TransactionType.PURCHASE, new BigDecimal("60.00"), null),
+            new BatchTransactionItem(
+                acceptedKey, TransactionType.PURCHASE, new BigDecimal("60.00"), null));
+    Transaction replayed = testTransaction.toBuilder().uid(replayedKey).build();
+
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.findAllByUids(
+            List.of(replayedKey, rejectedKey, acceptedKey, acceptedKey), testCustomer.id()))
+        .thenReturn(List.of(replayed));
+    when(transactionRepository.claimKeys(any(), any(), any()))
+        .thenAnswer(invocation -> new HashSet<UUID>(invocation.getArgument(0)));
+    when(customerRepository.updateCustomerBalance(customerUid, new BigDecimal("-60.00")))
+        .thenReturn(true);
+
+    List<BatchTransactionItemResult> results = transactionService.processBatch(items);
+
+    assertThat(results.get(0).transaction().transactionUid()).isEqualTo(replayedKey);
+    assertThat(results.get(1).error()).contains("Customer does not have sufficient balance");
+    assertThat(results.get(2).error()).isNull();
+    assertThat(results.get(3).error()).contains("Duplicate idempotency key");
+
+    ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.captor();
+    verify(transactionRepository).insertClaimedTransactions(inserted.capture());
+    assertThat(inserted.getValue()).extracting(Transaction::uid).containsExactly(acceptedKey);
+    verify(transactionRepository).releaseKeys(List.of(rejectedKey));
+  }
+
+  @Test
+  @DisplayName("Should answer a batch item whose key was posted concurrently on its own")
+  void shouldAnswerBatchItemPostedConcurrently() {
+    UUID concurrentKey = UUID.randomUUID();
+    UUID foreignKey = UUID.randomUUID();
+    UUID acceptedKey = UUID.randomUUID();
+    List<BatchTransactionItem> items =
+        List.of(
+            new BatchTransactionItem(
+                concurrentKey, TransactionType.TOP_UP, new BigDecimal("50.00"), null),
+            new BatchTransactionItem(
+                foreignKey, TransactionType.TOP_UP, new BigDecimal("50.00"), null),
+            new BatchTransactionItem(
+                acceptedKey, TransactionType.TOP_UP, new BigDecimal("10.00"), null));
+    Transaction concurrent = testTransaction.toBuilder().uid(concurrentKey).build();
+
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.findAllByUids(
+            List.of(concurrentKey, foreignKey, acceptedKey), testCustomer.id()))
+        .thenReturn(List.of());
+    when(transactionRepository.claimKeys(any(), any(), any())).thenReturn(Set.of(acceptedKey));
+    when(transactionRepository.findByUid(concurrentKey, customerUid))
+        .thenReturn(Optional.of(concurrent));
+    when(transactionRepository.findByUid(foreignKey, customerUid))
+        .thenReturn(Optional.empty());
+    when(customerRepository.updateCustomerBalance(customerUid, new BigDecimal("10.00")))
+        .thenReturn(true);
+
+    List<BatchTransactionItemResult> results = transactionService.processBatch(items);
+
+    assertThat(results.get(0).transaction().transactionUid()).isEqualTo(concurrentKey);
+    assertThat(results.get(1).error()).contains("is already used");
+    assertThat(results.get(2).error()).isNull();
+
+    ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.captor();
+    verify(transactionRepository).insertClaimedTransactions(inserted.capture());
+    assertThat(inserted.getValue()).extracting(Transaction::uid).containsExactly(acceptedKey);
+  }
+
+  @Test
+  @DisplayName("Should refund a purchase posted earlier in the same batch")
+  void shouldRefundPurchaseOfSameBatch() {
+    UUID purchaseKey = UUID.randomUUID();
+    UUID firstRefundKey = UUID.randomUUID();
+    UUID secondRefundKey = UUID.randomUUID();
+    UUID excessRefundKey = UUID.randomUUID();
+    List<BatchTransactionItem> items =
+        List.of(
+            new BatchTransactionItem(
+                purchaseKey, TransactionType.PURCHASE, new BigDecimal("40.00"), null),
+            new BatchTransactionItem(
+                firstRefundKey,
+                TransactionType.PARTIAL_REFUND,
+                new BigDecimal("15.00"),
+                purchaseKey),
+            new BatchTransactionItem(
+                secondRefundKey,
+                TransactionType.PARTIAL_REFUND,
+                new BigDecimal("15.00"),
+                purchaseKey),
+            new BatchTransactionItem(
+                excessRefundKey,
+                TransactionType.PARTIAL_REFUND,
+                new BigDecimal("15.00"),
+                purchaseKey));
+
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.findAllByUids(
+            List.of(purchaseKey, firstRefundKey, secondRefundKey, excessRefundKey),
+            testCustomer.id()))
+        .thenReturn(List.of());
+    when(transactionRepository.claimKeys(any(), any(), any()))
+        .thenAnswer(invocation -> new HashSet<UUID>(invocation.getArgument(0)));
+    when(transactionRepository.incrementRefundedAmount(
+            purchaseKey, testCustomer.id(), new BigDecimal("30.00")))
+        .thenReturn(true);
+    when(customerRepository.updateCustomerBalance(customerUid, new BigDecimal("-10.00")))
+        .thenReturn(true);
+
+    List<BatchTransactionItemResult> results = transactionService.processBatch(items);
+
+    assertThat(results.subList(0, 3)).allSatisfy(result -> assertThat(result.error()).isNull());
+    assertThat(results.get(3).error()).contains("exceed");
+
+    ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.captor();
+    verify(transactionRepository).insertClaimedTransactions(inserted.capture());
+    assertThat(inserted.getValue())
+        .extracting(Transaction::uid)
+        .containsExactly(purchaseKey, firstRefundKey, secondRefundKey);
+    verify(transactionRepository, never()).findByUidForUpdate(any(), any());
+    verify(transactionRepository).releaseKeys(List.of(excessRefundKey));
+  }
+
+  @Test
+  @DisplayName("Should keep the exception of each rejected request of a group")
+  void shouldKeepExceptionOfRejectedRequestsInGroup() {
+    UUID firstPurchaseKey = UUID.randomUUID();
+    UUID secondPurchaseKey = UUID.randomUUID();
+    List<BatchTransactionItem> items =
+        List.of(
+            new BatchTransactionItem(
+                firstPurchaseKey, TransactionType.PURCHASE, new BigDecimal("70.00"), null),
+            new BatchTransactionItem(
+                secondPurchaseKey, TransactionType.PURCHASE, new BigDecimal("70.00"), null));
+
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenReturn(Optional.of(testCustomer));
+    when(transactionRepository.findAllByUids(
+            List.of(firstPurchaseKey, secondPurchaseKey), testCustomer.id()))
+        .thenReturn(List.of());
+    when(transactionRepository.claimKeys(any(), any(), any()))
+        .thenAnswer(invocation -> new HashSet<UUID>(invocation.getArgument(0)));
+    when(customerRepository.updateCustomerBalance(customerUid, new BigDecimal("-70.00")))
+        .thenReturn(true);
+
+    List<PostingOutcome> outcomes = transactionService.processGroup(customerUid, items);
+
+    assertThat(outcomes.get(0).response().transactionUid()).isEqualTo(firstPurchaseKey);
+    assertThat(outcomes.get(1).error())
+        .isInstanceOf(TransferRequestException.class)
+        .hasMessageContaining("Customer does not have sufficient balance");
+    assertThat(ThreadLocalStorage.getSessionUser()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Should reject a batch larger than the configured maximum")
+  void shouldRejectOversizedBatch() {
+    TransactionService smallBatchService =
+        new TransactionService(
+            customerRepository,
+            transactionRepository,
+            new TransactionProperties(
+                new Posting(PostingMode.STANDARD),
+                new Batch(1),
+                new Lock(LOCK_TIMEOUT, 100),
+                new Serialization(true, 16),
+                new GroupCommit(false, 100)),
+            transactionMetrics,
+            customerLockMonitor,
+            auditLog);
+    List<BatchTransactionItem> items =
+        List.of(
+            new BatchTransactionItem(
+                UUID.randomUUID(), TransactionType.TOP_UP, new BigDecimal("1.00"), null),
+            new BatchTransactionItem(
+                UUID.randomUUID(), TransactionType.TOP_UP, new BigDecimal("1.00"), null));
+
+    assertThatThrownBy(() -> smallBatchService.processBatch(items))
+        .isInstanceOf(TransferRequestException.class)
+        .hasMessageContaining("exceeds the maximum");
+    verify(customerRepository, never()).getCustomerByUidForUpdate(any());
+  }
+
+  @Test
+  @DisplayName("Should fail with a retryable error when the customer lock times out")
+  void shouldFailWithRetryableErrorWhenCustomerLockTimesOut() {
+    TransactionRequest request =
+        new TransactionRequest(TransactionType.PURCHASE, new BigDecimal("10.00"), null);
+    UUID idempotencyKey = UUID.randomUUID();
+
+    when(customerRepository.getCustomerByUidForUpdate(customerUid))
+        .thenThrow(new CannotAcquireLockException("canceling statement due to lock timeout"));
+
+    assertThatThrownBy(() -> transactionService.processTransaction(request, idempotencyKey))
+        .isInstanceOf(CustomerLockTimeoutException.class)
+        .hasMessageContaining("is busy");
+
+    verify(customerRepository).setLocalLockTimeout(LOCK_TIMEOUT);
+    verify(transactionRepository, never()).processTransactionByCustomerId(any(), any(), any());
+    assertThat(customerLockMonitor.hottestCustomers(1))
+        .singleElement()
+        .satisfies(hotCustomer -> assertThat(hotCustomer.timeouts()).isEqualTo(1));
+  }
+
+  private TransactionService singleStatementTransactionService() {
+    return new TransactionService(
+        customerRepository,
+        transactionRepository,
+        transactionProperties(PostingMode.SINGLE_STATEMENT),
+        transactionMetrics,
+        customerLockMonitor,
+        auditLog);
+  }
+
+  private static TransactionProperties transactionProperties(PostingMode postingMode) {
+    return new TransactionProperties(
+        new Posting(postingMode),
+        new Batch(500),
+        new Lock(LOCK_TIMEOUT, 100),
+        new Serialization(true, 16),
+        new GroupCommit(false, 100));
+  }
 }
@@ -2,6 +2,9 @@
 DELETE
 FROM transactions;
 
+DELETE
+FROM transaction_keys;
+
 DELETE
 FROM customers
 WHERE uid = '019630c5-eccf-7b24-b814-a39c97c64b8b';
@@ -12,7 +15,12 @@ VALUES (1, '019630c5-eccf-7b24-b814-a39c97c64b8b', 'Eldar', 'Mammadov', '1985-03
         '$2a$10$f0zqjKXV4MEwHinjHcWUpeeVpeGH55k4FsHqDQhuAxCUmMrV.CmD.');
 
 -- Initialize test transaction data
+WITH transaction_key AS (
+    INSERT INTO transaction_keys (uid, customer_id, transaction_date)
+    VALUES ('f47ac10b-58cc-4372-a567-0e02b2c3d479', 1, CURRENT_TIMESTAMP)
+    RETURNING uid, customer_id, transaction_date)
 INSERT INTO transactions
 (uid, customer_id, type, amount, description, transaction_date, status, reference_uid)
-VALUES ('f47ac10b-58cc-4372-a567-0e02b2c3d479', 1, 'TOP_UP', 100.00, 'Test transaction',
-        CURRENT_TIMESTAMP, 'PENDING', '01963a14-965b-7a23-afdd-475d4cde0cfe');
+SELECT uid, customer_id, 'TOP_UP', 100.00, 'Test transaction', transaction_date, 'PENDING',
+       '01963a14-965b-7a23-afdd-475d4cde0cfe'
+FROM transaction_key;